@@ -0,0 +1,74 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CubeStateBenchmark {
+
+    // Private fields
+
+    private final List<MoveType> scramble =
+        MoveType.parseSequence("R U F' D2 L B R2 U' F L2 D B' R U2 F x M' S E z");
+    private CubeState state;
+
+    // Public methods
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        state = new CubeState();
+        state.apply(scramble);
+    }
+
+    @Benchmark
+    public CubeState applyMove() {
+        state.apply(MoveType.RIGHT_C);
+        return state;
+    }
+
+    @Benchmark
+    public CubeState applySequence() {
+        state.apply(scramble);
+        return state;
+    }
+
+    @Benchmark
+    public CubeState reoriented() {
+        return state.reoriented();
+    }
+
+    @Benchmark
+    public int coordinates() {
+        return CubeCoordinates.twist(state) + CubeCoordinates.flip(state) + CubeCoordinates.slice(state)
+             + CubeCoordinates.cornerPermutation(state);
+    }
+
+}
@@ -0,0 +1,94 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CubieBenchmark {
+
+    // Private fields
+
+    private Cubie cubie;
+    private Renderer renderer;
+    private final float[] models = new float[16];
+
+    // Public methods
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cubie = new Cubie(3, 2, 2, 2, Renderer.FaceColor.WHITE, Renderer.FaceColor.RED,
+                          Renderer.FaceColor.ORANGE, Renderer.FaceColor.BLUE,
+                          Renderer.FaceColor.GREEN, Renderer.FaceColor.YELLOW);
+        cubie.getModel(models, 0);
+        renderer = new Renderer(null, "Benchmark", 1, 1);
+        renderer.startHeadless();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        renderer.stopHeadless();
+    }
+
+    @Benchmark
+    public Cubie commitTurn() {
+        cubie.commitTurn(Axis.Y, 1);
+        return cubie;
+    }
+
+    @Benchmark
+    public int getPosition() {
+        return cubie.getX() + cubie.getY() + cubie.getZ();
+    }
+
+    // What PuzzleCubeGame does for each cubie when it publishes a new pose
+    @Benchmark
+    public float[] getModel() {
+        cubie.getModel(models, 0);
+        return models;
+    }
+
+    // The instances of a pose; a turn in progress only sets the renderer's
+    // turn uniforms on top
+    @Benchmark
+    public Renderer drawAtRest() {
+        cubie.draw(renderer, models, 0);
+        renderer.discardFrame();
+        return renderer;
+    }
+
+    @Benchmark
+    public Renderer drawTurning() {
+        cubie.draw(renderer, models, 0);
+        renderer.setTurn(Axis.Z, 0.05f, 0.15f, 37.0);
+        renderer.discardFrame();
+        return renderer;
+    }
+
+}
@@ -0,0 +1,76 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import static org.lwjgl.glfw.GLFW.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// The per-frame game paths, with a renderer that packs draw calls on the CPU
+// but has no window or GL context
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    // Private fields
+
+    private PuzzleCubeGame game;
+    private Renderer renderer;
+
+    // Public methods
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        game = new PuzzleCubeGame();
+        renderer = new Renderer(game, "Benchmark", 1, 1);
+        renderer.startHeadless();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        renderer.stopHeadless();
+    }
+
+    // A whole quarter turn, one update() per frame until the turn locks
+    @Benchmark
+    public PuzzleCubeGame quarterTurn() {
+        game.keyPressed(renderer, GLFW_KEY_R);
+        while (game.isAnimating()) {
+            game.update(renderer, 1.0 / 60.0);
+        }
+        return game;
+    }
+
+    @Benchmark
+    public Renderer draw() {
+        game.draw(renderer);
+        renderer.discardFrame();
+        return renderer;
+    }
+
+}
@@ -0,0 +1,87 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Solves a fixed set of random-move scrambles in turn. Table construction
+// happens in setup and is not measured.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Thread)
+public class SolverBenchmark {
+
+    // Private fields
+
+    private static final int stateCount = 64;
+
+    private final CubeState[] twoPhaseStates = new CubeState[stateCount];
+    private final CubeState[] optimalStates = new CubeState[stateCount];
+    private TwoPhaseSolver twoPhaseSolver;
+    private OptimalSolver optimalSolver;
+    private int next;
+
+    // Private methods
+
+    private static CubeState scramble(SplittableRandom random, int length) {
+        final MoveType[] moves = MoveType.getFaceTurns();
+        final CubeState state = new CubeState();
+        for (int i = 0; i < length; i++) {
+            state.apply(moves[random.nextInt(moves.length)]);
+        }
+        return state;
+    }
+
+    // Public methods
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < stateCount; i++) {
+            twoPhaseStates[i] = scramble(random, 30);
+            optimalStates[i] = scramble(random, 10);
+        }
+        twoPhaseSolver = new TwoPhaseSolver();
+        optimalSolver = new OptimalSolver(1);
+    }
+
+    @Benchmark
+    public List<MoveType> twoPhase() {
+        next = (next + 1) % stateCount;
+        return twoPhaseSolver.solve(twoPhaseStates[next]);
+    }
+
+    // Optimal solutions of ten-move scrambles on one thread
+    @Benchmark
+    public OptimalSolver.Result optimal() {
+        next = (next + 1) % stateCount;
+        return optimalSolver.solve(optimalStates[next]);
+    }
+
+}
@@ -22,10 +22,487 @@
 
 package org.puzzlecube;
 
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
 public class App {
 
-    public static void main(String[] args) {
-        new Renderer(new PuzzleCubeGame(), "Puzzle Cube", 2000, 2000).run();
+    // Private methods
+
+    private static String getOption(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+
+    private static void printUsage() {
+        System.err.println("Usage: puzzlecube [--size N] [--turns-per-second N] [--fast-forward DEPTH]");
+        System.err.println("                  [--tick-rate N] [--metrics-interval S] [--metrics-csv file]");
+        System.err.println("                  [--metrics-port P] [--record file] [--snapshot-interval K]");
+        System.err.println("                  [--replay file] [--replay-speed S] [--seek-move N] [--seek-seconds T]");
+        System.err.println("                  [--seed N]");
+        System.err.println("       puzzlecube --solve-optimal <scramble> [--threads N] [--seconds S]");
+        System.err.println("       puzzlecube --optimal-speedup <scramble> [--threads N] [--seconds S]");
+        System.err.println("       puzzlecube --solve-batch <in.txt|-> <out.txt|-> [--threads N]");
+        System.err.println("       puzzlecube --render <scramble> <out.png> [image options]");
+        System.err.println("       puzzlecube --render-batch <in.txt|-> <directory> [--threads N] [image options]");
+        System.err.println("       puzzlecube --net <scramble> <out.png|out.svg> [net options]");
+        System.err.println("       puzzlecube --net-batch <in.txt|-> <directory> [--threads N] [--format png|svg]");
+        System.err.println("                  [--cache-entries N] [--cache-dir D] [net options]");
+        System.err.println("       puzzlecube --scramble [count] [--seed N] [--threads N]");
+        System.err.println("       puzzlecube --solver-server [--port P | --socket path] [--threads N] [--batch N]");
+        System.err.println("                  [--batch-micros U] [--cache-entries N] [--cache-off-heap]");
+        System.err.println("                  [--stats-interval S]");
+        System.err.println("       puzzlecube --solve-remote <scramble> [--port P | --socket path]");
+        System.err.println("       puzzlecube --session-info <file> [--seek-move N] [--seek-seconds T]");
+        System.err.println("                  [--image out.png|out.svg]");
+        System.err.println("Image options: [--size N] [--width W] [--height H] [--camera-x A] [--camera-y A]");
+        System.err.println("Net options: [--size N] [--cell PX]");
+    }
+
+    private static String formatResult(OptimalSolver.Result result) {
+        return String.format("%d threads, %d nodes, %.1f ms, %.0f nodes/s/thread",
+                             result.getThreadCount(), result.getNodeCount(),
+                             result.getElapsedNanos() / 1e6, result.getNodesPerSecondPerThread());
+    }
+
+    private static void solveOptimal(CubeState state, int threadCount, long timeoutMillis) {
+        final OptimalSolver.Result result = new OptimalSolver(threadCount).solve(state, timeoutMillis);
+        if (result.isOptimal()) {
+            System.out.println("Optimal solution (" + result.getMoves().size() + " moves): "
+                               + MoveType.toNotation(result.getMoves()));
+        } else {
+            System.out.println("No solution within the time budget; optimal length is at least "
+                               + result.getLowerBound());
+        }
+        System.out.println(formatResult(result));
+    }
+
+    // Solves the same state with 1, 2, 4, ... threads up to the given count
+    private static void measureOptimalSpeedup(CubeState state, int maxThreadCount, long timeoutMillis) {
+        // Warm up the JIT so the single-threaded baseline is not penalized
+        new OptimalSolver(1).solve(state, timeoutMillis);
+        double baseline = 0;
+        int threadCount = 1;
+        while (true) {
+            final OptimalSolver.Result result = new OptimalSolver(threadCount).solve(state, timeoutMillis);
+            if (threadCount == 1) {
+                baseline = result.getElapsedNanos();
+            }
+            System.out.println(String.format("%s, speedup %.2f%s", formatResult(result),
+                                             baseline / result.getElapsedNanos(),
+                                             result.isOptimal() ? "" : " (timed out)"));
+            if (threadCount >= maxThreadCount) {
+                break;
+            }
+            threadCount = Math.min(threadCount * 2, maxThreadCount);
+        }
+    }
+
+    // Peak usage summed over the heap pools since the last reset
+    private static long getPeakHeapBytes(boolean isReset) {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                if (isReset) {
+                    pool.resetPeakUsage();
+                }
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static void solveBatch(String input, String output, int threadCount)
+        throws IOException, InterruptedException {
+        final BatchSolver solver = new BatchSolver(threadCount);
+        getPeakHeapBytes(true);
+        try (BufferedReader reader = input.equals("-")
+                 ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                 : Files.newBufferedReader(Paths.get(input));
+             Writer writer = output.equals("-")
+                 ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                 : Files.newBufferedWriter(Paths.get(output))) {
+            solver.run(reader, writer);
+        }
+        final LatencyHistogram latencies = solver.getLatencies();
+        System.err.println(String.format(
+            "%d lines (%d errors) in %.1f s on %d threads: %.0f solves/s, "
+            + "latency p50 %.2f ms, p99 %.2f ms, max %.2f ms, peak heap %d MiB",
+            solver.getLineCount(), solver.getErrorCount(), solver.getElapsedNanos() / 1e9, threadCount,
+            solver.getSolvesPerSecond(), latencies.getPercentile(0.5) / 1e6,
+            latencies.getPercentile(0.99) / 1e6, latencies.getMax() / 1e6,
+            getPeakHeapBytes(false) / (1024 * 1024)));
+    }
+
+    private static void renderImage(String scramble, String output, int size, int width, int height,
+                                    double cameraAngleX, double cameraAngleY) throws IOException {
+        final PuzzleCubeGame game = new PuzzleCubeGame(size);
+        game.apply(Turn.parseSequence(scramble, size));
+        final Renderer renderer = new Renderer(game, "Puzzle Cube", width, height);
+        final BufferedImage image;
+        Renderer.initOffscreen();
+        try {
+            renderer.createOffscreen();
+            renderer.startOffscreen();
+            try {
+                renderer.setBackgroundColor(0.25f, 0.25f, 0.25f, 1.f);
+                renderer.setCameraAngles(cameraAngleX, cameraAngleY);
+                image = renderer.renderImage();
+            } finally {
+                renderer.stopOffscreen();
+            }
+        } finally {
+            renderer.destroyOffscreen();
+            Renderer.terminateOffscreen();
+        }
+        if (!ImageIO.write(image, "png", Paths.get(output).toFile())) {
+            throw new IOException("No PNG writer available");
+        }
+    }
+
+    private static void renderBatch(String input, String output, int threadCount, int size, int width,
+                                    int height, double cameraAngleX, double cameraAngleY)
+        throws IOException, InterruptedException {
+        final BatchRenderer batchRenderer = new BatchRenderer(threadCount, size, width, height);
+        batchRenderer.setCameraAngles(cameraAngleX, cameraAngleY);
+        try (BufferedReader reader = input.equals("-")
+                 ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                 : Files.newBufferedReader(Paths.get(input))) {
+            batchRenderer.run(reader, Paths.get(output));
+        }
+        final LatencyHistogram latencies = batchRenderer.getLatencies();
+        System.err.println(String.format(
+            "%d lines (%d errors) in %.1f s on %d threads: %.0f images/s, "
+            + "latency p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+            batchRenderer.getLineCount(), batchRenderer.getErrorCount(), batchRenderer.getElapsedNanos() / 1e9,
+            threadCount, batchRenderer.getImagesPerSecond(), latencies.getPercentile(0.5) / 1e6,
+            latencies.getPercentile(0.99) / 1e6, latencies.getMax() / 1e6));
+    }
+
+    private static void drawNet(String scramble, String output, int size, int cellSize) throws IOException {
+        final String format = output.endsWith(".svg") ? "svg" : "png";
+        final StickerCube cube = new StickerCube(size);
+        cube.apply(Turn.parseSequence(scramble, size));
+        Files.write(Paths.get(output), new NetImage(cellSize).draw(cube, format));
+    }
+
+    private static void drawNetBatch(String input, String output, int threadCount, int size, int cellSize,
+                                     String format, NetImageCache cache)
+        throws IOException, InterruptedException {
+        final NetImageBatch batch = new NetImageBatch(threadCount, size, format, cellSize, cache);
+        try (BufferedReader reader = input.equals("-")
+                 ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                 : Files.newBufferedReader(Paths.get(input))) {
+            batch.run(reader, Paths.get(output));
+        }
+        final LatencyHistogram latencies = batch.getLatencies();
+        System.err.println(String.format(
+            "%d lines (%d errors) in %.1f s on %d threads: %.0f images/s, "
+            + "latency p50 %.1f us, p99 %.1f us, max %.1f us, "
+            + "cache %d memory hits, %d disk hits, %d misses (%.1f%% hit rate)",
+            batch.getLineCount(), batch.getErrorCount(), batch.getElapsedNanos() / 1e9, threadCount,
+            batch.getImagesPerSecond(), latencies.getPercentile(0.5) / 1e3, latencies.getPercentile(0.99) / 1e3,
+            latencies.getMax() / 1e3, cache.getMemoryHits(), cache.getDiskHits(), cache.getMisses(),
+            cache.getHitRate() * 100));
+    }
+
+    private static boolean isPlayOption(String arg) {
+        return arg.startsWith("--metrics") || arg.equals("--size") || arg.equals("--turns-per-second")
+            || arg.equals("--fast-forward") || arg.equals("--tick-rate") || arg.equals("--record")
+            || arg.equals("--snapshot-interval") || arg.startsWith("--replay") || arg.startsWith("--seek")
+            || arg.equals("--seed");
+    }
+
+    // Seeks to --seek-move or --seek-seconds, or else to the start, or to
+    // the end when the session is shown instantly
+    private static void seekSession(String[] args, SessionReplay replay, PuzzleCubeGame game, boolean isInstant) {
+        final String move = getOption(args, "--seek-move", null);
+        final String seconds = getOption(args, "--seek-seconds", null);
+        if (move != null) {
+            replay.seekToMove(Long.parseLong(move), game);
+        } else if (seconds != null) {
+            replay.seekToTime((long) (Double.parseDouble(seconds) * 1e9), game);
+        } else if (isInstant) {
+            replay.seekToTime(Long.MAX_VALUE, game);
+        } else {
+            replay.seekToMove(0, game);
+        }
+    }
+
+    // Metrics are reported only when one of the --metrics options is given
+    private static void run(String[] args, Renderer renderer) throws IOException {
+        final String interval = getOption(args, "--metrics-interval", null);
+        final String csvFile = getOption(args, "--metrics-csv", null);
+        final String port = getOption(args, "--metrics-port", null);
+        if (interval == null && csvFile == null && port == null) {
+            renderer.run();
+            return;
+        }
+        final Path csvPath = csvFile == null ? null : Paths.get(csvFile);
+        final MetricsReporter reporter = new MetricsReporter(
+            Double.parseDouble(interval == null ? "5" : interval), csvPath,
+            port == null ? 0 : Integer.parseInt(port));
+        reporter.start();
+        renderer.setMetricsReporter(reporter);
+        try {
+            renderer.run();
+        } finally {
+            reporter.stop();
+        }
+    }
+
+    // A replayed session sets the cube size; turns play faster along with it
+    private static void play(String[] args) throws IOException {
+        final String replayFile = getOption(args, "--replay", null);
+        final SessionReplay replay = replayFile == null ? null : new SessionReplay(Paths.get(replayFile));
+        final PuzzleCubeGame game = new PuzzleCubeGame(replay != null ? replay.getSize() : Integer.parseInt(
+            getOption(args, "--size", String.valueOf(PuzzleCubeGame.DEFAULT_SIZE))));
+        double turnsPerSecond = Double.parseDouble(
+            getOption(args, "--turns-per-second", String.valueOf(PuzzleCubeGame.DEFAULT_TURNS_PER_SECOND)));
+        if (replay != null) {
+            final double speed = Double.parseDouble(getOption(args, "--replay-speed", "1"));
+            seekSession(args, replay, game, speed == 0);
+            game.setReplay(replay, speed);
+            if (speed > 0) {
+                turnsPerSecond *= speed;
+            }
+        }
+        game.setTurnsPerSecond(turnsPerSecond);
+        final String seed = getOption(args, "--seed", null);
+        if (seed != null) {
+            game.setSeed(Long.parseLong(seed));
+        }
+        game.setFastForward(Integer.parseInt(
+            getOption(args, "--fast-forward", String.valueOf(PuzzleCubeGame.DEFAULT_FAST_FORWARD_DEPTH))),
+                            PuzzleCubeGame.DEFAULT_FAST_FORWARD_TAIL);
+        final Renderer renderer = new Renderer(game, "Puzzle Cube", 2000, 2000);
+        renderer.setTickRate(Double.parseDouble(getOption(args, "--tick-rate", "0")));
+
+        final String recordFile = getOption(args, "--record", null);
+        if (recordFile == null) {
+            run(args, renderer);
+            return;
+        }
+        final SessionRecorder recorder = new SessionRecorder(
+            Paths.get(recordFile), game.getSize(), Integer.parseInt(
+                getOption(args, "--snapshot-interval", String.valueOf(SessionRecorder.DEFAULT_SNAPSHOT_INTERVAL))));
+        game.setRecorder(recorder);
+        try {
+            run(args, renderer);
+        } finally {
+            game.setRecorder(null);
+            recorder.close();
+        }
+        System.err.println("Recorded " + recorder.getMoveCount() + " moves in " + recorder.getByteCount()
+                           + " bytes");
+    }
+
+    private static void printScrambles(long count, long seed, int threadCount) throws InterruptedException {
+        final ScramblePool pool = new ScramblePool(ScramblePool.DEFAULT_CAPACITY * threadCount, threadCount, seed);
+        pool.start();
+        final long startTime = System.nanoTime();
+        long moveCount = 0;
+        for (long i = 0; i < count; i++) {
+            final List<MoveType> scramble = pool.take();
+            moveCount += scramble.size();
+            System.out.println(MoveType.toNotation(scramble));
+        }
+        pool.stop();
+        System.err.println(String.format("%d scrambles, %.1f moves on average, %.0f scrambles/s on %d threads",
+                                         count, (double) moveCount / Math.max(1, count),
+                                         count * 1e9 / (System.nanoTime() - startTime), threadCount));
+    }
+
+    private static SocketAddress getSolverAddress(String[] args) {
+        final String socket = getOption(args, "--socket", null);
+        return socket != null ? UnixDomainSocketAddress.of(socket) : SolverServer.getLocalAddress(
+            Integer.parseInt(getOption(args, "--port", String.valueOf(SolverServer.DEFAULT_PORT))));
+    }
+
+    // Serves until the process is stopped, printing the figures every
+    // interval
+    private static void serveSolver(String[] args) throws IOException, InterruptedException {
+        final SolverServer server = new SolverServer(
+            getSolverAddress(args),
+            Integer.parseInt(getOption(args, "--threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+            Integer.parseInt(getOption(args, "--batch", String.valueOf(SolverServer.DEFAULT_BATCH_SIZE))),
+            Long.parseLong(getOption(args, "--batch-micros", String.valueOf(SolverServer.DEFAULT_BATCH_WINDOW_MICROS))),
+            new SolutionCache(
+                Integer.parseInt(getOption(args, "--cache-entries", String.valueOf(SolutionCache.DEFAULT_MAX_ENTRIES))),
+                Arrays.asList(args).contains("--cache-off-heap")));
+        final long intervalMillis = (long) (Double.parseDouble(getOption(args, "--stats-interval", "10")) * 1000);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.println("Could not close the solver server: " + e.getMessage());
+            }
+            System.err.println(server.getStats());
+        }));
+        System.err.println("Solver server listening on " + server.getAddress());
+        while (true) {
+            Thread.sleep(intervalMillis);
+            System.err.println(server.getStats());
+        }
+    }
+
+    // Prints a session's figures and, with a seek option, the state there
+    private static void showSession(String[] args) throws IOException {
+        final SessionReplay replay = new SessionReplay(Paths.get(args[1]));
+        System.out.println(String.format(
+            "%dx%d cube, %d moves over %.1f s, %d snapshots every %d moves, %d bytes (%.2f bytes per move)",
+            replay.getSize(), replay.getSize(), replay.getMoveCount(), replay.getDuration() / 1e9,
+            replay.getSnapshotCount(), replay.getSnapshotInterval(), replay.getByteCount(),
+            (double) replay.getByteCount() / Math.max(1, replay.getMoveCount())));
+        final PuzzleCubeGame game = new PuzzleCubeGame(replay.getSize());
+        final long startTime = System.nanoTime();
+        seekSession(args, replay, game, true);
+        final long elapsedTime = System.nanoTime() - startTime;
+        System.out.println(String.format(
+            "Seeked to move %d at %.3f s in %.2f ms: camera %.1f, %.1f, %s", replay.getMoveIndex(),
+            replay.getTime() / 1e9, elapsedTime / 1e6, replay.getCameraX(), replay.getCameraY(),
+            game.isSolved() ? "solved" : "not solved"));
+        final String image = getOption(args, "--image", null);
+        if (image != null) {
+            final StickerCube cube = game.getTargetStickers();
+            Files.write(Paths.get(image), new NetImage(NetImage.getDefaultCellSize(cube.getSize())).draw(
+                cube, image.endsWith(".svg") ? "svg" : "png"));
+        }
+    }
+
+    // Public methods
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        final String mode = args.length > 0 && !isPlayOption(args[0]) ? args[0] : "";
+        switch (mode) {
+        case "":
+            play(args);
+            break;
+        case "--solve-optimal":
+        case "--optimal-speedup":
+            if (args.length < 2) {
+                printUsage();
+                System.exit(1);
+            }
+            final CubeState state = new CubeState();
+            state.apply(MoveType.parseSequence(args[1]));
+            final int threadCount = Integer.parseInt(
+                getOption(args, "--threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+            final long timeoutMillis = Long.parseLong(
+                getOption(args, "--seconds", String.valueOf(OptimalSolver.DEFAULT_TIMEOUT_MILLIS / 1000))) * 1000;
+            final long tableStartTime = System.nanoTime();
+            System.err.println("Pattern databases: " + OptimalSolver.getTableMemoryBytes() / 1024 + " KiB in "
+                               + (System.nanoTime() - tableStartTime) / 1000000 + " ms");
+            if (mode.equals("--solve-optimal")) {
+                solveOptimal(state, threadCount, timeoutMillis);
+            } else {
+                measureOptimalSpeedup(state, threadCount, timeoutMillis);
+            }
+            break;
+        case "--solve-batch":
+            if (args.length < 3) {
+                printUsage();
+                System.exit(1);
+            }
+            solveBatch(args[1], args[2], Integer.parseInt(
+                getOption(args, "--threads", String.valueOf(Runtime.getRuntime().availableProcessors()))));
+            break;
+        case "--render":
+        case "--render-batch":
+            if (args.length < 3) {
+                printUsage();
+                System.exit(1);
+            }
+            final int size = Integer.parseInt(
+                getOption(args, "--size", String.valueOf(PuzzleCubeGame.DEFAULT_SIZE)));
+            final int width = Integer.parseInt(getOption(args, "--width", "256"));
+            final int height = Integer.parseInt(getOption(args, "--height", "256"));
+            final double cameraAngleX = Double.parseDouble(
+                getOption(args, "--camera-x", String.valueOf(BatchRenderer.DEFAULT_CAMERA_ANGLE_X)));
+            final double cameraAngleY = Double.parseDouble(
+                getOption(args, "--camera-y", String.valueOf(BatchRenderer.DEFAULT_CAMERA_ANGLE_Y)));
+            if (mode.equals("--render")) {
+                renderImage(args[1], args[2], size, width, height, cameraAngleX, cameraAngleY);
+            } else {
+                renderBatch(args[1], args[2], Integer.parseInt(
+                    getOption(args, "--threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                            size, width, height, cameraAngleX, cameraAngleY);
+            }
+            break;
+        case "--net":
+        case "--net-batch":
+            if (args.length < 3) {
+                printUsage();
+                System.exit(1);
+            }
+            final int netSize = Integer.parseInt(
+                getOption(args, "--size", String.valueOf(PuzzleCubeGame.DEFAULT_SIZE)));
+            final int cellSize = Integer.parseInt(
+                getOption(args, "--cell", String.valueOf(NetImage.getDefaultCellSize(netSize))));
+            if (mode.equals("--net")) {
+                drawNet(args[1], args[2], netSize, cellSize);
+            } else {
+                final String cacheDirectory = getOption(args, "--cache-dir", null);
+                final NetImageCache cache = new NetImageCache(
+                    Integer.parseInt(getOption(args, "--cache-entries", "4096")),
+                    cacheDirectory == null ? null : Paths.get(cacheDirectory));
+                drawNetBatch(args[1], args[2], Integer.parseInt(
+                    getOption(args, "--threads", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                             netSize, cellSize, getOption(args, "--format", "png"), cache);
+            }
+            break;
+        case "--scramble":
+            printScrambles(args.length > 1 && !args[1].startsWith("--") ? Long.parseLong(args[1]) : 1,
+                           Long.parseLong(getOption(args, "--seed", String.valueOf(System.nanoTime()))),
+                           Integer.parseInt(getOption(args, "--threads", String.valueOf(
+                               Runtime.getRuntime().availableProcessors()))));
+            break;
+        case "--solver-server":
+            serveSolver(args);
+            break;
+        case "--solve-remote":
+            if (args.length < 2) {
+                printUsage();
+                System.exit(1);
+            }
+            try (SolverClient client = new SolverClient(getSolverAddress(args))) {
+                System.out.println(client.solve(args[1]));
+            }
+            break;
+        case "--session-info":
+            if (args.length < 2) {
+                printUsage();
+                System.exit(1);
+            }
+            showSession(args);
+            break;
+        default:
+            printUsage();
+            System.exit(1);
+        }
     }
 
 }
@@ -0,0 +1,245 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+
+// Renders a stream of scrambles, one per line, to PNG files on a pool of
+// worker threads, each with its own game and offscreen GL context. GLFW only
+// runs on the thread that calls run(), which must be the main thread: the
+// contexts are all created there, and each worker only makes its own
+// current. Line n (counting from 1) becomes n.png, zero-padded to six
+// digits, in the output directory. Lines reach the workers through a
+// bounded queue, so memory stays bounded however long the input is. Lines
+// that do not parse are reported on standard error and skipped.
+public class BatchRenderer {
+
+    // Public fields
+
+    public static final double DEFAULT_CAMERA_ANGLE_X = 30.0;
+    public static final double DEFAULT_CAMERA_ANGLE_Y = -45.0;
+
+    // Private local types
+
+    private static final class Job {
+        final long index;
+        final String line;
+
+        Job(long index, String line) {
+            this.index = index;
+            this.line = line;
+        }
+    }
+
+    // Private fields
+
+    private static final int linesPerThread = 64;
+    private static final Job endOfInput = new Job(-1, null);
+
+    private final int threadCount, size, width, height;
+    private double cameraAngleX, cameraAngleY;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong errorCount = new AtomicLong();
+    private long lineCount, elapsedNanos;
+
+    private volatile RuntimeException startError;
+    private volatile IOException writeError;
+
+    // Private methods
+
+    private void renderLine(Renderer renderer, PuzzleCubeGame game, Path directory, Job job) {
+        final long startTime = System.nanoTime();
+        final List<Turn> turns;
+        try {
+            turns = Turn.parseSequence(job.line, size);
+        } catch (IllegalArgumentException e) {
+            errorCount.incrementAndGet();
+            System.err.println("Line " + (job.index + 1) + ": " + e.getMessage());
+            return;
+        }
+        game.reset();
+        game.apply(turns);
+        final BufferedImage image;
+        try {
+            image = renderer.renderImage();
+        } catch (RuntimeException e) {
+            errorCount.incrementAndGet();
+            System.err.println("Line " + (job.index + 1) + ": " + e);
+            return;
+        }
+        final Path file = directory.resolve(String.format("%06d.png", job.index + 1));
+        try {
+            if (!ImageIO.write(image, "png", file.toFile())) {
+                throw new IOException("No PNG writer available");
+            }
+        } catch (IOException e) {
+            writeError = e;
+            return;
+        }
+        latencies.record(System.nanoTime() - startTime);
+    }
+
+    private void work(Renderer renderer, PuzzleCubeGame game, BlockingQueue<Job> jobs, Path directory,
+                      CountDownLatch started) {
+        try {
+            renderer.startOffscreen();
+        } catch (RuntimeException e) {
+            startError = e;
+            started.countDown();
+            return;
+        }
+        try {
+            renderer.setBackgroundColor(0.25f, 0.25f, 0.25f, 1.f);
+            renderer.setCameraAngles(cameraAngleX, cameraAngleY);
+            started.countDown();
+            Job job;
+            while ((job = jobs.take()) != endOfInput) {
+                if (writeError == null) {
+                    renderLine(renderer, game, directory, job);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            renderer.stopOffscreen();
+        }
+    }
+
+    // Public methods
+
+    public BatchRenderer(int threadCount, int size, int width, int height) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+        if (width < 1 || height < 1) {
+            throw new IllegalArgumentException("Invalid image size " + width + "x" + height);
+        }
+        if (size < PuzzleCubeGame.MIN_SIZE || size > PuzzleCubeGame.MAX_SIZE) {
+            throw new IllegalArgumentException("Cube size must be from " + PuzzleCubeGame.MIN_SIZE + " to "
+                                               + PuzzleCubeGame.MAX_SIZE + ": " + size);
+        }
+        this.threadCount = threadCount;
+        this.size = size;
+        this.width = width;
+        this.height = height;
+        cameraAngleX = DEFAULT_CAMERA_ANGLE_X;
+        cameraAngleY = DEFAULT_CAMERA_ANGLE_Y;
+    }
+
+    public void setCameraAngles(double x, double y) {
+        cameraAngleX = x;
+        cameraAngleY = y;
+    }
+
+    public void run(BufferedReader reader, Path directory) throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        startError = null;
+        writeError = null;
+        lineCount = 0;
+        latencies.reset();
+        errorCount.set(0);
+
+        final long startTime = System.nanoTime();
+        final BlockingQueue<Job> jobs = new ArrayBlockingQueue<Job>(threadCount * linesPerThread);
+        final CountDownLatch started = new CountDownLatch(threadCount);
+        final List<Renderer> renderers = new ArrayList<Renderer>();
+        final List<Thread> workers = new ArrayList<Thread>();
+        Renderer.initOffscreen();
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                final PuzzleCubeGame game = new PuzzleCubeGame(size);
+                final Renderer renderer = new Renderer(game, "Puzzle Cube", width, height);
+                renderers.add(renderer);
+                renderer.createOffscreen();
+                workers.add(new Thread(() -> work(renderer, game, jobs, directory, started),
+                                       "BatchRenderer-" + i));
+            }
+            for (Thread worker : workers) {
+                worker.start();
+            }
+            try {
+                started.await();
+                if (startError == null) {
+                    String line;
+                    while ((line = reader.readLine()) != null && writeError == null) {
+                        jobs.put(new Job(lineCount++, line));
+                    }
+                }
+            } finally {
+                // Workers that failed to start take nothing, so the queue always
+                // has room for the rest to see the end of input
+                for (int i = 0; i < threadCount; i++) {
+                    jobs.put(endOfInput);
+                }
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+            }
+        } finally {
+            for (Renderer renderer : renderers) {
+                renderer.destroyOffscreen();
+            }
+            Renderer.terminateOffscreen();
+        }
+        elapsedNanos = System.nanoTime() - startTime;
+        if (startError != null) {
+            throw startError;
+        }
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getImagesPerSecond() {
+        return latencies.getCount() * 1e9 / Math.max(elapsedNanos, 1);
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+}
@@ -0,0 +1,161 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Solves a stream of scrambles, one per line in standard notation, on a
+// fixed pool of worker threads with one TwoPhaseSolver each. Solutions are
+// written one per line in input order: finished lines wait in a ring buffer
+// until every earlier line is written, and the reader blocks once the ring
+// is full, so memory stays bounded however long the input is. Lines that do
+// not parse, or that the solver fails on, produce "error: <reason>" in their
+// place.
+public class BatchSolver {
+
+    // Private fields
+
+    private static final int linesPerThread = 256;
+
+    private final int threadCount;
+    private final ThreadLocal<TwoPhaseSolver> solvers = ThreadLocal.withInitial(TwoPhaseSolver::new);
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong errorCount = new AtomicLong();
+    private long lineCount, elapsedNanos;
+
+    private Writer writer;
+    private String[] pending;
+    private Semaphore freeSlots;
+    private long nextToWrite;
+    private volatile IOException writeError;
+
+    // Private methods
+
+    private String solveLine(String line) {
+        final long startTime = System.nanoTime();
+        try {
+            final CubeState state = new CubeState();
+            state.apply(MoveType.parseSequence(line));
+            final String solution = MoveType.toNotation(solvers.get().solve(state));
+            latencies.record(System.nanoTime() - startTime);
+            return solution;
+        } catch (IllegalArgumentException e) {
+            errorCount.incrementAndGet();
+            return "error: " + e.getMessage();
+        } catch (RuntimeException e) {
+            // Every line must fill its slot, or the lines after it are never
+            // written and the reader waits for a free slot forever
+            errorCount.incrementAndGet();
+            return "error: " + e;
+        }
+    }
+
+    private void complete(long index, String result) {
+        synchronized (pending) {
+            pending[(int) (index % pending.length)] = result;
+            int slot = (int) (nextToWrite % pending.length);
+            while (pending[slot] != null) {
+                if (writeError == null) {
+                    try {
+                        writer.write(pending[slot]);
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        writeError = e;
+                    }
+                }
+                pending[slot] = null;
+                nextToWrite++;
+                freeSlots.release();
+                slot = (int) (nextToWrite % pending.length);
+            }
+        }
+    }
+
+    // Public methods
+
+    public BatchSolver(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+        this.threadCount = threadCount;
+    }
+
+    public void run(BufferedReader reader, Writer writer) throws IOException, InterruptedException {
+        TwoPhaseSolver.warmUp();
+        this.writer = writer;
+        pending = new String[threadCount * linesPerThread];
+        freeSlots = new Semaphore(pending.length);
+        nextToWrite = 0;
+        writeError = null;
+        lineCount = 0;
+        latencies.reset();
+        errorCount.set(0);
+
+        final long startTime = System.nanoTime();
+        final ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null && writeError == null) {
+                freeSlots.acquire();
+                final long index = lineCount++;
+                final String scramble = line;
+                pool.execute(() -> complete(index, solveLine(scramble)));
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        elapsedNanos = System.nanoTime() - startTime;
+        if (writeError != null) {
+            throw writeError;
+        }
+        writer.flush();
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getSolvesPerSecond() {
+        return latencies.getCount() * 1e9 / Math.max(elapsedNanos, 1);
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+}
@@ -0,0 +1,314 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.Arrays;
+
+// Integer coordinates of a CubeState (centers at home) used to index the
+// solvers' move and pruning tables, and a dense numbering of every solvable
+// state by two indices: one for the corners and one for the edges.
+public class CubeCoordinates {
+
+    // Public fields
+
+    public static final int TWIST_COUNT = 2187;
+    public static final int FLIP_COUNT = 2048;
+    public static final int SLICE_COUNT = 495;
+    public static final int SOLVED_SLICE = 494;
+    public static final int EDGE_GROUP_COUNT = SLICE_COUNT * 24;
+    public static final int CORNER_PERMUTATION_COUNT = 40320;
+    public static final int FULL_EDGE_PERMUTATION_COUNT = 479001600;
+
+    // The corner index counts permutations and twists; the edge index counts
+    // flips and only the edge permutations of the parity the corners call
+    // for. Together they number the 43252003274489856000 solvable states,
+    // which is more than a long holds.
+    public static final int CORNER_INDEX_COUNT = CORNER_PERMUTATION_COUNT * TWIST_COUNT;
+    public static final long EDGE_INDEX_COUNT = (long) FULL_EDGE_PERMUTATION_COUNT / 2 * FLIP_COUNT;
+
+    // Private fields
+
+    private static final int[][] binomials = new int[12][5];
+
+    static {
+        for (int n = 0; n < 12; n++) {
+            binomials[n][0] = 1;
+            for (int k = 1; k < 5; k++) {
+                binomials[n][k] = n == 0 ? 0 : binomials[n - 1][k - 1] + binomials[n - 1][k];
+            }
+        }
+    }
+
+    private CubeCoordinates() {
+    }
+
+    // Private methods
+
+    private static int[] twistOrientations(int twist) {
+        final int[] orientations = new int[CubeState.CORNER_COUNT];
+        int sum = 0;
+        for (int slot = CubeState.CORNER_COUNT - 2; slot >= 0; slot--) {
+            orientations[slot] = twist % 3;
+            sum += orientations[slot];
+            twist /= 3;
+        }
+        orientations[CubeState.CORNER_COUNT - 1] = (3 - sum % 3) % 3;
+        return orientations;
+    }
+
+    private static int[] flipOrientations(int flip) {
+        final int[] orientations = new int[CubeState.EDGE_COUNT];
+        int sum = 0;
+        for (int slot = CubeState.EDGE_COUNT - 2; slot >= 0; slot--) {
+            orientations[slot] = flip % 2;
+            sum += orientations[slot];
+            flip /= 2;
+        }
+        orientations[CubeState.EDGE_COUNT - 1] = sum % 2;
+        return orientations;
+    }
+
+    // Public methods
+
+    public static int rankPermutation(int[] permutation) {
+        int rank = 0;
+        for (int i = 0; i < permutation.length; i++) {
+            int smaller = 0;
+            for (int j = i + 1; j < permutation.length; j++) {
+                if (permutation[j] < permutation[i]) {
+                    smaller++;
+                }
+            }
+            rank = rank * (permutation.length - i) + smaller;
+        }
+        return rank;
+    }
+
+    public static int[] unrankPermutation(int rank, int length) {
+        final int[] digits = new int[length];
+        for (int i = length - 1; i >= 0; i--) {
+            digits[i] = rank % (length - i);
+            rank /= length - i;
+        }
+        final int[] permutation = new int[length];
+        final boolean[] isUsed = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            int value = 0;
+            for (int skipped = 0; isUsed[value] || skipped < digits[i]; value++) {
+                if (!isUsed[value]) {
+                    skipped++;
+                }
+            }
+            isUsed[value] = true;
+            permutation[i] = value;
+        }
+        return permutation;
+    }
+
+    public static boolean isOddPermutation(int[] permutation) {
+        boolean isOdd = false;
+        final boolean[] isSeen = new boolean[permutation.length];
+        for (int i = 0; i < permutation.length; i++) {
+            for (int j = i; !isSeen[j]; j = permutation[j]) {
+                isSeen[j] = true;
+                if (j != i) {
+                    isOdd = !isOdd;
+                }
+            }
+        }
+        return isOdd;
+    }
+
+    public static int[] identity(int length) {
+        final int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = i;
+        }
+        return values;
+    }
+
+    public static int twist(CubeState state) {
+        int twist = 0;
+        for (int slot = 0; slot < CubeState.CORNER_COUNT - 1; slot++) {
+            twist = twist * 3 + state.getCornerOrientation(slot);
+        }
+        return twist;
+    }
+
+    public static int flip(CubeState state) {
+        int flip = 0;
+        for (int slot = 0; slot < CubeState.EDGE_COUNT - 1; slot++) {
+            flip = flip * 2 + state.getEdgeOrientation(slot);
+        }
+        return flip;
+    }
+
+    // Which four slots hold the middle-layer edges FR, FL, BL and BR
+    public static int slice(CubeState state) {
+        return edgeGroup(state, 8) / 24;
+    }
+
+    // Which four slots hold the edges from firstEdge to firstEdge + 3, in
+    // the order slice() numbers them, times 24, plus the rank of the order
+    // the edges sit in within those slots. Moves change it the same way
+    // whichever four edges are followed.
+    public static int edgeGroup(CubeState state, int firstEdge) {
+        final int[] order = new int[4];
+        int combination = 0;
+        int found = 0;
+        for (int slot = 0; slot < CubeState.EDGE_COUNT; slot++) {
+            final int edge = state.getEdge(slot) - firstEdge;
+            if (edge >= 0 && edge < 4) {
+                order[found] = edge;
+                found++;
+                combination += binomials[slot][found];
+            }
+        }
+        return combination * 24 + rankPermutation(order);
+    }
+
+    // The slots of an edge group, in increasing order, and the edge (0 to 3
+    // from the group's first) in each of them
+    public static void getEdgeGroupSlots(int group, int[] slots, int[] edges) {
+        int combination = group / 24;
+        for (int found = 4; found > 0; found--) {
+            int slot = CubeState.EDGE_COUNT - 1;
+            while (binomials[slot][found] > combination) {
+                slot--;
+            }
+            combination -= binomials[slot][found];
+            slots[found - 1] = slot;
+        }
+        final int[] order = unrankPermutation(group % 24, 4);
+        System.arraycopy(order, 0, edges, 0, 4);
+    }
+
+    public static int cornerPermutation(CubeState state) {
+        final int[] corners = new int[CubeState.CORNER_COUNT];
+        for (int slot = 0; slot < corners.length; slot++) {
+            corners[slot] = state.getCorner(slot);
+        }
+        return rankPermutation(corners);
+    }
+
+    // Only meaningful in phase 2, where the U and D layer edges stay in slots 0 to 7
+    public static int edgePermutation(CubeState state) {
+        final int[] edges = new int[8];
+        for (int slot = 0; slot < edges.length; slot++) {
+            edges[slot] = state.getEdge(slot);
+        }
+        return rankPermutation(edges);
+    }
+
+    // All twelve edges, unlike edgePermutation()
+    public static int fullEdgePermutation(CubeState state) {
+        final int[] edges = new int[CubeState.EDGE_COUNT];
+        for (int slot = 0; slot < edges.length; slot++) {
+            edges[slot] = state.getEdge(slot);
+        }
+        return rankPermutation(edges);
+    }
+
+    public static int cornerIndex(CubeState state) {
+        return cornerPermutation(state) * TWIST_COUNT + twist(state);
+    }
+
+    // Ranks come in pairs that differ by swapping the last two edges, one of
+    // each parity, so halving the rank numbers one parity densely
+    public static long edgeIndex(CubeState state) {
+        return (long) (fullEdgePermutation(state) / 2) * FLIP_COUNT + flip(state);
+    }
+
+    public static int slicePermutation(CubeState state) {
+        final int[] edges = new int[4];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = state.getEdge(8 + i) - 8;
+        }
+        return rankPermutation(edges);
+    }
+
+    public static CubeState fromTwist(int twist) {
+        return CubeState.fromPieces(identity(CubeState.CORNER_COUNT), twistOrientations(twist),
+                                    identity(CubeState.EDGE_COUNT), new int[CubeState.EDGE_COUNT]);
+    }
+
+    public static CubeState fromFlip(int flip) {
+        return CubeState.fromPieces(identity(CubeState.CORNER_COUNT), new int[CubeState.CORNER_COUNT],
+                                    identity(CubeState.EDGE_COUNT), flipOrientations(flip));
+    }
+
+    public static CubeState fromSlice(int slice) {
+        return fromEdgeGroup(slice * 24);
+    }
+
+    // A state whose middle-layer edges make up the given edge group
+    public static CubeState fromEdgeGroup(int group) {
+        final int[] groupSlots = new int[4];
+        final int[] groupEdges = new int[4];
+        getEdgeGroupSlots(group, groupSlots, groupEdges);
+        final int[] edges = new int[CubeState.EDGE_COUNT];
+        Arrays.fill(edges, -1);
+        for (int i = 0; i < 4; i++) {
+            edges[groupSlots[i]] = 8 + groupEdges[i];
+        }
+        int nextOtherEdge = 0;
+        for (int slot = 0; slot < edges.length; slot++) {
+            if (edges[slot] < 0) {
+                edges[slot] = nextOtherEdge++;
+            }
+        }
+        return CubeState.fromPieces(identity(CubeState.CORNER_COUNT), new int[CubeState.CORNER_COUNT],
+                                    edges, new int[CubeState.EDGE_COUNT]);
+    }
+
+    // The solvable state with the given indices, centers at home
+    public static CubeState fromIndices(int cornerIndex, long edgeIndex) {
+        if (cornerIndex < 0 || cornerIndex >= CORNER_INDEX_COUNT) {
+            throw new IllegalArgumentException("Corner index out of range: " + cornerIndex);
+        }
+        if (edgeIndex < 0 || edgeIndex >= EDGE_INDEX_COUNT) {
+            throw new IllegalArgumentException("Edge index out of range: " + edgeIndex);
+        }
+        final int[] corners = unrankPermutation(cornerIndex / TWIST_COUNT, CubeState.CORNER_COUNT);
+        int edgeRank = (int) (edgeIndex / FLIP_COUNT) * 2;
+        if (isOddPermutation(unrankPermutation(edgeRank, CubeState.EDGE_COUNT)) != isOddPermutation(corners)) {
+            edgeRank++;
+        }
+        return CubeState.fromPieces(corners, twistOrientations(cornerIndex % TWIST_COUNT),
+                                    unrankPermutation(edgeRank, CubeState.EDGE_COUNT),
+                                    flipOrientations((int) (edgeIndex % FLIP_COUNT)));
+    }
+
+    public static CubeState fromPermutations(int cornerPermutation, int edgePermutation,
+                                              int slicePermutation) {
+        final int[] edges = new int[CubeState.EDGE_COUNT];
+        System.arraycopy(unrankPermutation(edgePermutation, 8), 0, edges, 0, 8);
+        final int[] sliceEdges = unrankPermutation(slicePermutation, 4);
+        for (int i = 0; i < 4; i++) {
+            edges[8 + i] = 8 + sliceEdges[i];
+        }
+        return CubeState.fromPieces(unrankPermutation(cornerPermutation, CubeState.CORNER_COUNT),
+                                    new int[CubeState.CORNER_COUNT], edges,
+                                    new int[CubeState.EDGE_COUNT]);
+    }
+
+}
@@ -0,0 +1,496 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Logical state of a 3x3 cube. Every piece slot holds one byte: corners are
+// stored as piece | orientation << 3, edges as piece | orientation << 4 and
+// centers as the bare piece number. Slots and pieces use the order
+//
+//   corners: URF UFL ULB UBR DFR DLF DBL DRB
+//   edges:   UR UF UL UB DR DF DL DB FR FL BL BR
+//   centers: U R F D L B
+//
+// Corner orientation counts clockwise twists of the piece's U/D sticker away
+// from the U/D axis; edge orientation is 1 when the piece's U/D sticker (or
+// F/B sticker for middle-layer edges) is off the slot's U/D (or F/B) axis.
+public class CubeState {
+
+    // Public fields
+
+    public static final int CORNER_COUNT = 8;
+    public static final int EDGE_COUNT = 12;
+    public static final int CENTER_COUNT = 6;
+
+    // Private fields
+
+    private static final int firstEdge = CORNER_COUNT;
+    private static final int firstCenter = CORNER_COUNT + EDGE_COUNT;
+    private static final int slotCount = CORNER_COUNT + EDGE_COUNT + CENTER_COUNT;
+
+    private static final int[][] slotPositions = {
+        {1, 1, 1}, {-1, 1, 1}, {-1, 1, -1}, {1, 1, -1},
+        {1, -1, 1}, {-1, -1, 1}, {-1, -1, -1}, {1, -1, -1},
+        {1, 1, 0}, {0, 1, 1}, {-1, 1, 0}, {0, 1, -1},
+        {1, -1, 0}, {0, -1, 1}, {-1, -1, 0}, {0, -1, -1},
+        {1, 0, 1}, {-1, 0, 1}, {-1, 0, -1}, {1, 0, -1},
+        {0, 1, 0}, {1, 0, 0}, {0, 0, 1}, {0, -1, 0}, {-1, 0, 0}, {0, 0, -1}
+    };
+
+    // Twist codes used by the move tables
+    private static final int noTwist = 0;
+    private static final int edgeFlip = 3;
+
+    private static final byte[][] twistTable = new byte[4][32];
+    private static final byte[][] moveSources = new byte[MoveType.values().length][slotCount];
+    private static final byte[][] moveTwists = new byte[MoveType.values().length][slotCount];
+    private static final byte[][] solvedStates = new byte[CENTER_COUNT * CENTER_COUNT][];
+    private static final MoveType[][] homeRotations = new MoveType[CENTER_COUNT * CENTER_COUNT][];
+
+    private byte[] slots, spare;
+
+    // Private methods
+
+    private static int sticker(int slot, int axis) {
+        return slotPositions[slot][axis];
+    }
+
+    // Axis along which the orientation-0 reference sticker of a slot points
+    private static int referenceAxis(int slot) {
+        if (slot < firstEdge || sticker(slot, 1) != 0) {
+            return 1;
+        }
+        return 2;
+    }
+
+    private static int orientationAt(int slot, int stickerAxis) {
+        if (slot >= firstEdge) {
+            return stickerAxis == referenceAxis(slot) ? 0 : 1;
+        }
+        // Clockwise order of the three stickers, starting at the U/D sticker
+        final int[] clockwise;
+        if (sticker(slot, 0) * sticker(slot, 1) * sticker(slot, 2) > 0) {
+            clockwise = new int[] {1, 0, 2};
+        } else {
+            clockwise = new int[] {1, 2, 0};
+        }
+        for (int i = 0; i < 3; i++) {
+            if (clockwise[i] == stickerAxis) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Corner sticker axis out of range");
+    }
+
+    private static int[] turn(int[] vector, Axis axis, int direction) {
+        int a, b;
+        switch (axis) {
+        case X:
+            a = 1;
+            b = 2;
+            break;
+        case Y:
+            a = 2;
+            b = 0;
+            break;
+        case Z:
+        default:
+            a = 0;
+            b = 1;
+            break;
+        }
+        final int cos = new int[] {1, 0, -1, 0}[Math.floorMod(direction, 4)];
+        final int sin = new int[] {0, 1, 0, -1}[Math.floorMod(direction, 4)];
+        final int[] result = vector.clone();
+        result[a] = vector[a] * cos - vector[b] * sin;
+        result[b] = vector[a] * sin + vector[b] * cos;
+        return result;
+    }
+
+    private static int[] turnedFace(MoveType faceTurn) {
+        final int[] position = new int[3];
+        position[faceTurn.getAxis().ordinal()] = faceTurn.getLayer();
+        return position;
+    }
+
+    private static int findCenterSlot(int[] position) {
+        return findSlot(position) - firstCenter;
+    }
+
+    private static int findSlot(int[] position) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (Arrays.equals(slotPositions[slot], position)) {
+                return slot;
+            }
+        }
+        throw new IllegalStateException("No slot at " + Arrays.toString(position));
+    }
+
+    // Colors of the stickers of a slot along each axis, -1 where it has none
+    private static int[] slotColors(StickerCube stickers, int slot) {
+        final int[] position = slotPositions[slot];
+        final int[] colors = {-1, -1, -1};
+        for (int axis = 0; axis < 3; axis++) {
+            if (position[axis] != 0) {
+                colors[axis] = stickers.getSticker(StickerCube.findFace(Axis.values()[axis], position[axis]),
+                                                   position[0] + 1, position[1] + 1, position[2] + 1);
+            }
+        }
+        return colors;
+    }
+
+    private static int homeColorSet(int slot) {
+        int colorSet = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            if (sticker(slot, axis) != 0) {
+                colorSet |= 1 << StickerCube.findFace(Axis.values()[axis], sticker(slot, axis));
+            }
+        }
+        return colorSet;
+    }
+
+    private static void buildMoveTables(MoveType move) {
+        final byte[] sources = moveSources[move.ordinal()];
+        final byte[] twists = moveTwists[move.ordinal()];
+        for (int slot = 0; slot < slotCount; slot++) {
+            sources[slot] = (byte) slot;
+            twists[slot] = noTwist;
+        }
+        if (move == MoveType.NO_MOVE) {
+            return;
+        }
+        for (int slot = 0; slot < slotCount; slot++) {
+            final int[] position = slotPositions[slot];
+            if (!move.isInLayer(position[0], position[1], position[2])) {
+                continue;
+            }
+            final int target = findSlot(turn(position, move.getAxis(), move.getDirection()));
+            sources[target] = (byte) slot;
+
+            final int[] reference = new int[3];
+            reference[referenceAxis(slot)] = 1;
+            final int[] turned = turn(reference, move.getAxis(), move.getDirection());
+            int turnedAxis = 0;
+            while (turned[turnedAxis] == 0) {
+                turnedAxis++;
+            }
+            if (slot >= firstCenter) {
+                twists[target] = noTwist;
+            } else if (slot >= firstEdge) {
+                twists[target] = (byte) (orientationAt(target, turnedAxis) == 0 ? noTwist : edgeFlip);
+            } else {
+                twists[target] = (byte) orientationAt(target, turnedAxis);
+            }
+        }
+    }
+
+    static {
+        for (int value = 0; value < 32; value++) {
+            twistTable[noTwist][value] = (byte) value;
+            final int piece = value & 7;
+            final int orientation = value >> 3;
+            twistTable[1][value] = (byte) (piece | ((orientation + 1) % 3) << 3);
+            twistTable[2][value] = (byte) (piece | ((orientation + 2) % 3) << 3);
+            twistTable[edgeFlip][value] = (byte) (value ^ 16);
+        }
+        for (MoveType move : MoveType.values()) {
+            buildMoveTables(move);
+        }
+
+        // Every whole-cube rotation of the solved cube counts as solved; they
+        // are told apart by the centers sitting on the U and F slots. The
+        // rotations leading to each one are kept so they can be undone.
+        final List<CubeState> pending = new ArrayList<CubeState>();
+        final List<List<MoveType>> pendingPaths = new ArrayList<List<MoveType>>();
+        pending.add(new CubeState());
+        pendingPaths.add(new ArrayList<MoveType>());
+        for (int i = 0; i < pending.size(); i++) {
+            final CubeState state = pending.get(i);
+            final int key = state.centerKey();
+            if (solvedStates[key] == null) {
+                solvedStates[key] = state.slots.clone();
+                final List<MoveType> path = pendingPaths.get(i);
+                homeRotations[key] = new MoveType[path.size()];
+                for (int j = 0; j < path.size(); j++) {
+                    homeRotations[key][j] = path.get(path.size() - 1 - j).getInverse();
+                }
+                for (MoveType rotation : new MoveType[] {MoveType.X_ROTATION_C, MoveType.Z_ROTATION_C}) {
+                    final CubeState next = state.copy();
+                    next.apply(rotation);
+                    final List<MoveType> nextPath = new ArrayList<MoveType>(path);
+                    nextPath.add(rotation);
+                    pending.add(next);
+                    pendingPaths.add(nextPath);
+                }
+            }
+        }
+    }
+
+    private int centerKey() {
+        return slots[firstCenter] * CENTER_COUNT + slots[firstCenter + 2];
+    }
+
+    private CubeState(byte[] slots) {
+        this.slots = slots;
+        spare = new byte[slotCount];
+    }
+
+    // Public methods
+
+    public CubeState() {
+        this(new byte[slotCount]);
+        for (int slot = 0; slot < slotCount; slot++) {
+            slots[slot] = (byte) (slot < firstEdge ? slot : slot < firstCenter ? slot - firstEdge
+                                                                           : slot - firstCenter);
+        }
+    }
+
+    // Builds a state with the centers at home from piece and orientation
+    // arrays indexed by slot.
+    public static CubeState fromPieces(int[] corners, int[] cornerOrientations, int[] edges,
+                                       int[] edgeOrientations) {
+        final CubeState state = new CubeState();
+        for (int slot = 0; slot < CORNER_COUNT; slot++) {
+            state.slots[slot] = (byte) (corners[slot] | cornerOrientations[slot] << 3);
+        }
+        for (int slot = 0; slot < EDGE_COUNT; slot++) {
+            state.slots[firstEdge + slot] = (byte) (edges[slot] | edgeOrientations[slot] << 4);
+        }
+        return state;
+    }
+
+    // Reads the pieces of a 3x3 sticker cube. Each piece is known by the set
+    // of colors on it and its orientation by where its reference sticker
+    // (U/D for corners and U/D edges, F/B for middle-layer edges) points.
+    public static CubeState fromStickers(StickerCube stickers) {
+        if (stickers.getSize() != 3) {
+            throw new IllegalArgumentException("Only a 3x3 cube has a CubeState, not size " + stickers.getSize());
+        }
+        final CubeState state = new CubeState();
+        for (int slot = 0; slot < slotCount; slot++) {
+            final int[] colors = slotColors(stickers, slot);
+            int colorSet = 0;
+            for (int axis = 0; axis < 3; axis++) {
+                if (colors[axis] >= 0) {
+                    colorSet |= 1 << colors[axis];
+                }
+            }
+            if (slot >= firstCenter) {
+                state.slots[slot] = (byte) Integer.numberOfTrailingZeros(colorSet);
+                continue;
+            }
+            final int first = slot < firstEdge ? 0 : firstEdge;
+            final int last = slot < firstEdge ? firstEdge : firstCenter;
+            int piece = first;
+            while (piece < last && homeColorSet(piece) != colorSet) {
+                piece++;
+            }
+            if (piece == last) {
+                throw new IllegalArgumentException("No piece has the colors at slot " + slot);
+            }
+            final int referenceAxis = referenceAxis(piece);
+            final int referenceColor = StickerCube.findFace(Axis.values()[referenceAxis],
+                                                            sticker(piece, referenceAxis));
+            int stickerAxis = 0;
+            while (stickerAxis < 3 && colors[stickerAxis] != referenceColor) {
+                stickerAxis++;
+            }
+            final int orientation = orientationAt(slot, stickerAxis);
+            if (slot < firstEdge) {
+                state.slots[slot] = (byte) (piece | orientation << 3);
+            } else {
+                state.slots[slot] = (byte) (piece - firstEdge | orientation << 4);
+            }
+        }
+        return state;
+    }
+
+    public CubeState copy() {
+        return new CubeState(slots.clone());
+    }
+
+    public void apply(MoveType move) {
+        final byte[] sources = moveSources[move.ordinal()];
+        final byte[] twists = moveTwists[move.ordinal()];
+        for (int slot = 0; slot < slotCount; slot++) {
+            spare[slot] = twistTable[twists[slot]][slots[sources[slot]]];
+        }
+        final byte[] previous = slots;
+        slots = spare;
+        spare = previous;
+    }
+
+    public void apply(Iterable<MoveType> moves) {
+        for (MoveType move : moves) {
+            apply(move);
+        }
+    }
+
+    // Applies the moves that take the solved cube to the other state. A
+    // slot's piece is where the moves bring it from and its orientation is
+    // the twist they give it, just as in the move tables.
+    public void apply(CubeState moves) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            final int value = moves.slots[slot];
+            if (slot < firstEdge) {
+                spare[slot] = twistTable[value >> 3][slots[value & 7]];
+            } else if (slot < firstCenter) {
+                spare[slot] = twistTable[(value >> 4) * edgeFlip][slots[firstEdge + (value & 15)]];
+            } else {
+                spare[slot] = slots[firstCenter + value];
+            }
+        }
+        final byte[] previous = slots;
+        slots = spare;
+        spare = previous;
+    }
+
+    // The state that applying this one undoes
+    public CubeState inverse() {
+        final CubeState state = new CubeState();
+        for (int slot = 0; slot < slotCount; slot++) {
+            final int value = slots[slot];
+            if (slot < firstEdge) {
+                state.slots[value & 7] = (byte) (slot | (3 - (value >> 3)) % 3 << 3);
+            } else if (slot < firstCenter) {
+                state.slots[firstEdge + (value & 15)] = (byte) (slot - firstEdge | value & 16);
+            } else {
+                state.slots[firstCenter + value] = (byte) (slot - firstCenter);
+            }
+        }
+        return state;
+    }
+
+    public int getCorner(int slot) {
+        return slots[slot] & 7;
+    }
+
+    public int getCornerOrientation(int slot) {
+        return slots[slot] >> 3;
+    }
+
+    public int getEdge(int slot) {
+        return slots[firstEdge + slot] & 15;
+    }
+
+    public int getEdgeOrientation(int slot) {
+        return slots[firstEdge + slot] >> 4;
+    }
+
+    public int getCenter(int slot) {
+        return slots[firstCenter + slot];
+    }
+
+    public int findCenter(int center) {
+        for (int slot = 0; slot < CENTER_COUNT; slot++) {
+            if (slots[firstCenter + slot] == center) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    public boolean isSolved() {
+        return Arrays.equals(slots, solvedStates[centerKey()]);
+    }
+
+    // Whether turning can solve the state: the centers are those of a
+    // whole-cube rotation, each corner and edge is there once, the twists and
+    // flips add up to zero and the corner and edge permutations have the
+    // same parity
+    public boolean isSolvable() {
+        final byte[] solved = solvedStates[centerKey()];
+        if (solved == null) {
+            return false;
+        }
+        for (int slot = firstCenter; slot < slotCount; slot++) {
+            if (slots[slot] != solved[slot]) {
+                return false;
+            }
+        }
+        final CubeState state = reoriented();
+        final int[] corners = new int[CORNER_COUNT];
+        int cornerSet = 0;
+        int twist = 0;
+        for (int slot = 0; slot < CORNER_COUNT; slot++) {
+            corners[slot] = state.getCorner(slot);
+            cornerSet |= 1 << corners[slot];
+            twist += state.getCornerOrientation(slot);
+        }
+        final int[] edges = new int[EDGE_COUNT];
+        int edgeSet = 0;
+        int flip = 0;
+        for (int slot = 0; slot < EDGE_COUNT; slot++) {
+            edges[slot] = state.getEdge(slot);
+            edgeSet |= 1 << edges[slot];
+            flip += state.getEdgeOrientation(slot);
+        }
+        return cornerSet == (1 << CORNER_COUNT) - 1 && edgeSet == (1 << EDGE_COUNT) - 1 && twist % 3 == 0
+            && flip % 2 == 0 && CubeCoordinates.isOddPermutation(corners) == CubeCoordinates.isOddPermutation(edges);
+    }
+
+    // Maps a face turn named by the color of its center (as the solvers work
+    // on reoriented states) onto the layer that center currently sits on.
+    public MoveType toPhysical(MoveType faceTurn) {
+        final int[] home = turnedFace(faceTurn);
+        final int[] position = slotPositions[firstCenter + findCenter(findCenterSlot(home))];
+        int axis = 0;
+        while (position[axis] == 0) {
+            axis++;
+        }
+        final int layer = position[axis];
+        if (faceTurn.isHalfTurn()) {
+            return MoveType.of(Axis.values()[axis], layer, 2, false);
+        }
+        final int clockwiseTurns = -faceTurn.getDirection() * faceTurn.getLayer();
+        return MoveType.of(Axis.values()[axis], layer, -clockwiseTurns * layer, false);
+    }
+
+    // The same cube turned as a whole so that every center is back on its
+    // own slot.
+    public CubeState reoriented() {
+        final CubeState state = copy();
+        for (MoveType rotation : homeRotations[centerKey()]) {
+            state.apply(rotation);
+        }
+        return state;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CubeState && Arrays.equals(slots, ((CubeState) other).slots);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(slots);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(slots);
+    }
+
+}
@@ -0,0 +1,179 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// The 48 symmetries of a 3x3 cube, the 24 rotations and their mirror
+// images, acting on states by conjugation: the stickers are moved by the
+// symmetry and recolored by where it takes each face. Conjugate states take
+// the same number of moves to solve, and a solution of one maps to a
+// solution of the other face turn by face turn. Symmetry 0 is the identity.
+//
+// A state's canonical form is the least of its 48 conjugates in toBytes()
+// order, after first renaming the colors so that each center has the color
+// of its own face. Renaming colors never changes which turns solve a cube,
+// so states that differ by a symmetry, a whole-cube rotation or a color
+// scheme share one canonical form.
+public class CubeSymmetry {
+
+    // Public fields
+
+    public static final int SYMMETRY_COUNT = 48;
+
+    // Private fields
+
+    private static final int stickerCount = StickerCube.FACE_COUNT * 9;
+    private static final int centerIndex = 4;
+
+    // The sticker each sticker of a conjugate comes from, and the face each
+    // face goes to
+    private static final int[][] sources = new int[SYMMETRY_COUNT][stickerCount];
+    private static final byte[][] faceMaps = new byte[SYMMETRY_COUNT][StickerCube.FACE_COUNT];
+    private static final int[] inverses = new int[SYMMETRY_COUNT];
+    private static final MoveType[][] moveMaps = new MoveType[SYMMETRY_COUNT][MoveType.values().length];
+
+    static {
+        int symmetry = 0;
+        for (int[] axes : new int[][] {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}}) {
+            for (int signs = 0; signs < 8; signs++) {
+                final int[][] matrix = new int[3][3];
+                for (int row = 0; row < 3; row++) {
+                    matrix[row][axes[row]] = (signs >> row & 1) == 0 ? 1 : -1;
+                }
+                final int[] targets = new StickerCube(3).mapStickers(matrix);
+                for (int sticker = 0; sticker < stickerCount; sticker++) {
+                    sources[symmetry][targets[sticker]] = sticker;
+                }
+                for (int face = 0; face < StickerCube.FACE_COUNT; face++) {
+                    faceMaps[symmetry][face] = (byte) (targets[face * 9 + centerIndex] / 9);
+                }
+                symmetry++;
+            }
+        }
+
+        for (int first = 0; first < SYMMETRY_COUNT; first++) {
+            for (int second = 0; second < SYMMETRY_COUNT; second++) {
+                boolean isIdentity = true;
+                for (int sticker = 0; sticker < stickerCount && isIdentity; sticker++) {
+                    isIdentity = sources[first][sources[second][sticker]] == sticker;
+                }
+                if (isIdentity) {
+                    inverses[first] = second;
+                }
+            }
+        }
+
+        // A face turn maps to the face turn that does to the solved cube what
+        // the conjugate of the turned cube shows
+        final MoveType[] faceTurns = MoveType.getFaceTurns();
+        final byte[][] turned = new byte[faceTurns.length][];
+        for (int move = 0; move < faceTurns.length; move++) {
+            final StickerCube cube = new StickerCube(3);
+            cube.apply(Turn.of(faceTurns[move], 3));
+            turned[move] = cube.toBytes();
+        }
+        final byte[] conjugate = new byte[stickerCount];
+        for (symmetry = 0; symmetry < SYMMETRY_COUNT; symmetry++) {
+            for (int move = 0; move < faceTurns.length; move++) {
+                conjugate(turned[move], symmetry, conjugate);
+                for (int image = 0; image < faceTurns.length; image++) {
+                    if (Arrays.equals(turned[image], conjugate)) {
+                        moveMaps[symmetry][faceTurns[move].ordinal()] = faceTurns[image];
+                    }
+                }
+            }
+        }
+    }
+
+    private CubeSymmetry() {
+    }
+
+    // Private methods
+
+    private static void conjugate(byte[] stickers, int symmetry, byte[] conjugate) {
+        final int[] stickerSources = sources[symmetry];
+        final byte[] faceMap = faceMaps[symmetry];
+        for (int sticker = 0; sticker < stickerCount; sticker++) {
+            conjugate[sticker] = faceMap[stickers[stickerSources[sticker]]];
+        }
+    }
+
+    // Public methods
+
+    // Writes the canonical form of a 3x3 cube, as toBytes() would, and
+    // returns the symmetry that takes the cube's recolored stickers there
+    public static int canonicalize(StickerCube cube, byte[] canonical) {
+        if (cube.getSize() != 3) {
+            throw new IllegalArgumentException("Only a 3x3 cube has symmetries here, not size " + cube.getSize());
+        }
+        final byte[] stickers = cube.toBytes();
+        final byte[] faceOfColor = new byte[StickerCube.FACE_COUNT];
+        Arrays.fill(faceOfColor, (byte) -1);
+        for (int face = 0; face < StickerCube.FACE_COUNT; face++) {
+            final int color = stickers[face * 9 + centerIndex];
+            if (faceOfColor[color] >= 0) {
+                throw new IllegalArgumentException("Two centers have color " + color);
+            }
+            faceOfColor[color] = (byte) face;
+        }
+        for (int sticker = 0; sticker < stickerCount; sticker++) {
+            stickers[sticker] = faceOfColor[stickers[sticker]];
+        }
+
+        System.arraycopy(stickers, 0, canonical, 0, stickerCount);
+        int best = 0;
+        final byte[] conjugate = new byte[stickerCount];
+        for (int symmetry = 1; symmetry < SYMMETRY_COUNT; symmetry++) {
+            conjugate(stickers, symmetry, conjugate);
+            if (Arrays.compare(conjugate, canonical) < 0) {
+                System.arraycopy(conjugate, 0, canonical, 0, stickerCount);
+                best = symmetry;
+            }
+        }
+        return best;
+    }
+
+    public static int getInverse(int symmetry) {
+        return inverses[symmetry];
+    }
+
+    // The face turn that the symmetry makes of a face turn
+    public static MoveType transform(MoveType move, int symmetry) {
+        final MoveType image = moveMaps[symmetry][move.ordinal()];
+        if (image == null) {
+            throw new IllegalArgumentException("Only face turns have symmetric images, not " + move);
+        }
+        return image;
+    }
+
+    public static List<MoveType> transform(List<MoveType> moves, int symmetry) {
+        final List<MoveType> images = new ArrayList<MoveType>(moves.size());
+        for (MoveType move : moves) {
+            images.add(transform(move, symmetry));
+        }
+        return images;
+    }
+
+}
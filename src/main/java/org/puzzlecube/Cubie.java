@@ -19,32 +19,130 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
-
 package org.puzzlecube;
 
+import java.util.Arrays;
+
+// A cubie's committed pose is exact: the layer it sits in along each axis
+// (0 to size - 1, from the negative side) and one of the 24 orientations of
+// a cube. A turn in progress is applied by the renderer's cube shader, not
+// here; committing the turn moves the cubie to its new pose, so poses never
+// drift however many moves are played. Whatever the size, the whole cube
+// keeps the same extent.
 public class Cubie {
 
     // Private fields
 
-    private final float cubieSize = 0.1f;
-    private final float[] x, y, z;
+    private static final float cubeExtent = 0.3f;
+
+    // Row-major integer rotation matrices of the 24 orientations, with
+    // orientation 0 the identity, and the orientation reached from each one
+    // by a quarter turn about each axis.
+    private static final int[][] orientations = new int[24][];
+    private static final int[][] quarterTurns = new int[24][3];
+
+    private final int[] position;
+    private final int[] layerSlots = {-1, -1, -1};
+    private final int maxLayer;
+    private final float cubieSize;
+    private final float[] restModel = new float[16];
     private final Renderer.FaceColor top, front, back, left, right, bottom;
+    private int orientation;
+
+    // Private methods
+
+    // The plane a turn about the axis happens in, turning its first axis
+    // towards its second
+    private static int[] turnPlane(Axis axis) {
+        switch (axis) {
+        case X:
+            return new int[] {1, 2};
+        case Y:
+            return new int[] {2, 0};
+        case Z:
+        default:
+            return new int[] {0, 1};
+        }
+    }
 
-    // Public methods
+    private static int[] turnMatrix(int[] matrix, Axis axis) {
+        final int[] plane = turnPlane(axis);
+        final int[] turned = matrix.clone();
+        for (int column = 0; column < 3; column++) {
+            turned[plane[0] * 3 + column] = -matrix[plane[1] * 3 + column];
+            turned[plane[1] * 3 + column] = matrix[plane[0] * 3 + column];
+        }
+        return turned;
+    }
+
+    private void updateRestModel() {
+        final int[] rotation = orientations[orientation];
+        for (int column = 0; column < 3; column++) {
+            for (int row = 0; row < 3; row++) {
+                restModel[column * 4 + row] = rotation[row * 3 + column] * cubieSize;
+            }
+            restModel[column * 4 + 3] = 0.f;
+            restModel[12 + column] = (position[column] - maxLayer * 0.5f) * cubieSize;
+        }
+        restModel[15] = 1.f;
+    }
+
+    static {
+        orientations[0] = new int[] {1, 0, 0, 0, 1, 0, 0, 0, 1};
+        int count = 1;
+        for (int i = 0; i < count; i++) {
+            for (Axis axis : Axis.values()) {
+                final int[] turned = turnMatrix(orientations[i], axis);
+                int found = 0;
+                while (found < count && !Arrays.equals(orientations[found], turned)) {
+                    found++;
+                }
+                if (found == count) {
+                    orientations[count++] = turned;
+                }
+                quarterTurns[i][axis.ordinal()] = found;
+            }
+        }
+    }
 
-    public Cubie(float xPos, float yPos, float zPos, Renderer.FaceColor t, Renderer.FaceColor f,
-                 Renderer.FaceColor b, Renderer.FaceColor l, Renderer.FaceColor r,
-                 Renderer.FaceColor bo) {
-        final float x1 = xPos - cubieSize / 2.f;
-        final float y1 = yPos - cubieSize / 2.f;
-        final float z1 = zPos + cubieSize / 2.f;
-        final float x2 = xPos + cubieSize / 2.f;
-        final float y2 = yPos + cubieSize / 2.f;
-        final float z2 = zPos - cubieSize / 2.f;
+    // Package-private methods
 
-        x = new float[] {x1, x2, x2, x1, x1, x2, x2, x1};
-        y = new float[] {y2, y2, y2, y2, y1, y1, y1, y1};
-        z = new float[] {z2, z2, z1, z1, z2, z2, z1, z1};
+    // Where the cubie sits in the layer lists of a LayerIndex, or -1 when it
+    // is in none
+    int[] getLayerSlots() {
+        return layerSlots;
+    }
+
+    // Puts the cubie straight into a committed pose, as saved from the
+    // position getters and getOrientation()
+    void setPose(int x, int y, int z, int orientation) {
+        if (x < 0 || x > maxLayer || y < 0 || y > maxLayer || z < 0 || z > maxLayer) {
+            throw new IllegalArgumentException("Cubie " + x + ", " + y + ", " + z + " is outside a cube of size "
+                                               + (maxLayer + 1));
+        }
+        if (orientation < 0 || orientation >= orientations.length) {
+            throw new IllegalArgumentException("Invalid orientation: " + orientation);
+        }
+        position[0] = x;
+        position[1] = y;
+        position[2] = z;
+        this.orientation = orientation;
+        updateRestModel();
+    }
+
+    // Public methods
+
+    public Cubie(int size, int x, int y, int z, Renderer.FaceColor t, Renderer.FaceColor f,
+                 Renderer.FaceColor b, Renderer.FaceColor l, Renderer.FaceColor r, Renderer.FaceColor bo) {
+        maxLayer = size - 1;
+        if (x < 0 || x > maxLayer || y < 0 || y > maxLayer || z < 0 || z > maxLayer) {
+            throw new IllegalArgumentException("Cubie " + x + ", " + y + ", " + z + " is outside a cube of size "
+                                               + size);
+        }
+        position = new int[] {x, y, z};
+        orientation = 0;
+        cubieSize = cubeExtent / size;
+        updateRestModel();
 
         top = t;
         front = f;
@@ -54,125 +152,66 @@ public class Cubie {
         bottom = bo;
     }
 
-    public void rotateX(double degrees) {
-        final float cos = (float) Math.cos(degrees * Math.PI / 180.0);
-        final float sin = (float) Math.sin(degrees * Math.PI / 180.0);
-        for (int i = 0; i < 8; i++) {
-            y[i] = y[i] * cos - z[i] * sin;
-            z[i] = y[i] * sin + z[i] * cos;
-        }
+    // How far the center of a layer (fractions allowed) lies from the cube's
+    // center along the layer's axis, in the units of the model matrices
+    public static float getLayerOffset(int size, double layer) {
+        return (float) ((layer - (size - 1) * 0.5) * cubeExtent / size);
     }
 
-    public void rotateY(double degrees) {
-        final float cos = (float) Math.cos(degrees * Math.PI / 180.0);
-        final float sin = (float) Math.sin(degrees * Math.PI / 180.0);
-        for (int i = 0; i < 8; i++) {
-            x[i] = x[i] * cos + z[i] * sin;
-            z[i] = x[i] * -sin + z[i] * cos;
+    // Model matrix of a box filling the whole layer of a cube of the size,
+    // written to the 16 floats from the offset
+    public static void getLayerModel(int size, Axis axis, int layer, float[] model, int offset) {
+        Arrays.fill(model, offset, offset + 16, 0.f);
+        for (int column = 0; column < 3; column++) {
+            model[offset + column * 5] = column == axis.ordinal() ? cubeExtent / size : cubeExtent;
         }
+        model[offset + 12 + axis.ordinal()] = getLayerOffset(size, layer);
+        model[offset + 15] = 1.f;
     }
 
-    public void rotateZ(double degrees) {
-        final float cos = (float) Math.cos(degrees * Math.PI / 180.0);
-        final float sin = (float) Math.sin(degrees * Math.PI / 180.0);
-        for (int i = 0; i < 8; i++) {
-            x[i] = x[i] * cos - y[i] * sin;
-            y[i] = x[i] * sin + y[i] * cos;
-        }
+    public int getX() {
+        return position[0];
     }
 
-    public float getX() {
-        float sum = 0.f;
-        for (float xValue : x) {
-            sum += xValue;
-        }
-        return sum / 8.f;
+    public int getY() {
+        return position[1];
     }
 
-    public float getY() {
-        float sum = 0.f;
-        for (float yValue : y) {
-            sum += yValue;
-        }
-        return sum / 8.f;
+    public int getZ() {
+        return position[2];
     }
 
-    public float getZ() {
-        float sum = 0.f;
-        for (float zValue : z) {
-            sum += zValue;
-        }
-        return sum / 8.f;
+    public int getPosition(Axis axis) {
+        return position[axis.ordinal()];
     }
 
-    public boolean isAboutLocked(float tolerance) {
-        final float ideal1 = 0.1f - cubieSize / 2.f;
-        final float ideal2 = 0.1f + cubieSize / 2.f;
-        final float ideal3 = -0.1f - cubieSize / 2.f;
-        final float ideal4 = -0.1f + cubieSize / 2.f;
+    public int getOrientation() {
+        return orientation;
+    }
 
-        for (float xValue : x) {
-            if (Math.abs(xValue - ideal1) > tolerance && Math.abs(xValue - ideal2) > tolerance
-             && Math.abs(xValue - ideal3) > tolerance && Math.abs(xValue - ideal4) > tolerance) {
-                return false;
-            }
+    // Moves the committed pose by a whole number of quarter turns (negative
+    // for the other way)
+    public void commitTurn(Axis axis, int quarterTurnCount) {
+        final int[] plane = turnPlane(axis);
+        for (int i = Math.floorMod(quarterTurnCount, 4); i > 0; i--) {
+            final int a = position[plane[0]];
+            position[plane[0]] = maxLayer - position[plane[1]];
+            position[plane[1]] = a;
+            orientation = quarterTurns[orientation][axis.ordinal()];
         }
-        for (float yValue : y) {
-            if (Math.abs(yValue - ideal1) > tolerance && Math.abs(yValue - ideal2) > tolerance
-             && Math.abs(yValue - ideal3) > tolerance && Math.abs(yValue - ideal4) > tolerance) {
-                return false;
-            }
-        }
-        for (float zValue : z) {
-            if (Math.abs(zValue - ideal1) > tolerance && Math.abs(zValue - ideal2) > tolerance
-             && Math.abs(zValue - ideal3) > tolerance && Math.abs(zValue - ideal4) > tolerance) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    public void lock(float tolerance) {
-        final float ideal1 = 0.1f - cubieSize / 2.f;
-        final float ideal2 = 0.1f + cubieSize / 2.f;
-        final float ideal3 = -0.1f - cubieSize / 2.f;
-        final float ideal4 = -0.1f + cubieSize / 2.f;
-
-        for (int i = 0; i < 8; i++) {
-            if (Math.abs(x[i] - ideal1) <= tolerance) {
-                x[i] = ideal1;
-            } else if (Math.abs(x[i] - ideal2) <= tolerance) {
-                x[i] = ideal2;
-            } else if (Math.abs(x[i] - ideal3) <= tolerance) {
-                x[i] = ideal3;
-            } else if (Math.abs(x[i] - ideal4) <= tolerance) {
-                x[i] = ideal4;
-            }
-
-            if (Math.abs(y[i] - ideal1) <= tolerance) {
-                y[i] = ideal1;
-            } else if (Math.abs(y[i] - ideal2) <= tolerance) {
-                y[i] = ideal2;
-            } else if (Math.abs(y[i] - ideal3) <= tolerance) {
-                y[i] = ideal3;
-            } else if (Math.abs(y[i] - ideal4) <= tolerance) {
-                y[i] = ideal4;
-            }
+        updateRestModel();
+    }
 
-            if (Math.abs(z[i] - ideal1) <= tolerance) {
-                z[i] = ideal1;
-            } else if (Math.abs(z[i] - ideal2) <= tolerance) {
-                z[i] = ideal2;
-            } else if (Math.abs(z[i] - ideal3) <= tolerance) {
-                z[i] = ideal3;
-            } else if (Math.abs(z[i] - ideal4) <= tolerance) {
-                z[i] = ideal4;
-            }
-        }
+    // Writes the model matrix of the committed pose into 16 floats from the
+    // offset
+    public void getModel(float[] models, int offset) {
+        System.arraycopy(restModel, 0, models, offset, 16);
     }
 
-    public void draw(Renderer renderer) {
-        renderer.drawCube(x, y, z, top, front, back, left, right, bottom);
+    // Draws the cubie with a model matrix saved earlier by getModel(), so
+    // another thread can go on turning it
+    public void draw(Renderer renderer, float[] models, int offset) {
+        renderer.drawCube(models, offset, top, front, back, left, right, bottom);
     }
 
 }
@@ -0,0 +1,255 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-frame timings and GL call counts recorded by the Renderer, plus the
+// move queue figures reported by the game and, when the game runs on its own
+// simulation thread, tick times and input latency. Frame figures are
+// recorded on the render thread; the game and simulation figures may come
+// from the simulation thread. Everything is summed over a reporting
+// interval; report() formats the interval and starts the next one.
+// Recording is a few additions and a histogram bucket increment per phase,
+// cheap enough to leave on.
+public class FrameMetrics {
+
+    // Public local types
+
+    public enum Phase {
+        UPDATE,
+        DRAW,
+        SWAP,
+        POLL;
+    }
+
+    // Public fields
+
+    public static final String CSV_HEADER =
+        "time_s,frames,fps,frame_p50_ms,frame_p99_ms,frame_max_ms,update_p99_ms,draw_p99_ms,"
+        + "swap_p99_ms,poll_p99_ms,draw_calls_per_frame,buffer_allocations,uniform_uploads_per_frame,"
+        + "state_changes_per_frame,queue_depth,queue_depth_max,moves,move_p50_ms,move_max_ms,ticks,tick_p99_ms,"
+        + "input_latency_p50_ms,input_latency_p99_ms,elided_calls_per_frame";
+
+    // Private fields
+
+    private final LatencyHistogram frameTimes = new LatencyHistogram();
+    private final LatencyHistogram[] phaseTimes = new LatencyHistogram[Phase.values().length];
+    private final LatencyHistogram moveTimes = new LatencyHistogram();
+    private final LatencyHistogram tickTimes = new LatencyHistogram();
+    private final LatencyHistogram inputLatencies = new LatencyHistogram();
+    private final long startTime = System.nanoTime();
+
+    private int frameDrawCalls, frameBufferAllocations, frameUniformUploads, frameStateChanges, frameElidedCalls;
+    private long drawCalls, bufferAllocations, uniformUploads, stateChanges, elidedCalls;
+    private int maxDrawCalls, maxStateChanges;
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong totalMoves = new AtomicLong();
+    private volatile int queueDepth;
+    private long totalFrames;
+
+    // Private methods
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private double perFrame(long count) {
+        final long frames = frameTimes.getCount();
+        return frames == 0 ? 0 : (double) count / frames;
+    }
+
+    private static void appendSummary(StringBuilder text, String name, LatencyHistogram histogram) {
+        text.append(String.format(Locale.ROOT, "%s{quantile=\"0.5\"} %.3f%n", name,
+                                  millis(histogram.getPercentile(0.5))));
+        text.append(String.format(Locale.ROOT, "%s{quantile=\"0.99\"} %.3f%n", name,
+                                  millis(histogram.getPercentile(0.99))));
+        text.append(String.format(Locale.ROOT, "%s_max %.3f%n", name, millis(histogram.getMax())));
+        text.append(String.format(Locale.ROOT, "%s_count %d%n", name, histogram.getCount()));
+    }
+
+    // Public methods
+
+    public FrameMetrics() {
+        for (int i = 0; i < phaseTimes.length; i++) {
+            phaseTimes[i] = new LatencyHistogram();
+        }
+    }
+
+    public void countDrawCall() {
+        frameDrawCalls++;
+    }
+
+    public void countBufferAllocation() {
+        frameBufferAllocations++;
+    }
+
+    public void countUniformUpload() {
+        frameUniformUploads++;
+    }
+
+    public void countStateChange() {
+        frameStateChanges++;
+    }
+
+    // A state change or uniform upload skipped because GL already had it
+    public void countElidedCall() {
+        frameElidedCalls++;
+    }
+
+    public void endFrame(long updateNanos, long drawNanos, long swapNanos, long pollNanos) {
+        phaseTimes[Phase.UPDATE.ordinal()].record(updateNanos);
+        phaseTimes[Phase.DRAW.ordinal()].record(drawNanos);
+        phaseTimes[Phase.SWAP.ordinal()].record(swapNanos);
+        phaseTimes[Phase.POLL.ordinal()].record(pollNanos);
+        frameTimes.record(updateNanos + drawNanos + swapNanos + pollNanos);
+        totalFrames++;
+
+        drawCalls += frameDrawCalls;
+        bufferAllocations += frameBufferAllocations;
+        uniformUploads += frameUniformUploads;
+        stateChanges += frameStateChanges;
+        elidedCalls += frameElidedCalls;
+        maxDrawCalls = Math.max(maxDrawCalls, frameDrawCalls);
+        maxStateChanges = Math.max(maxStateChanges, frameStateChanges);
+        frameDrawCalls = 0;
+        frameBufferAllocations = 0;
+        frameUniformUploads = 0;
+        frameStateChanges = 0;
+        frameElidedCalls = 0;
+    }
+
+    public void recordQueueDepth(int depth) {
+        queueDepth = depth;
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    // Time from a move leaving the queue until its cubies lock
+    public void recordMove(long nanos) {
+        moveTimes.record(nanos);
+        totalMoves.incrementAndGet();
+    }
+
+    // Time the simulation thread spent on one tick
+    public void recordTick(long nanos) {
+        tickTimes.record(nanos);
+    }
+
+    // Time from an input event arriving until the simulation handled it
+    public void recordInputLatency(long nanos) {
+        inputLatencies.record(nanos);
+    }
+
+    // Counts so far in the frame that has not ended yet
+    public int getFrameDrawCalls() {
+        return frameDrawCalls;
+    }
+
+    public int getFrameStateChanges() {
+        return frameStateChanges;
+    }
+
+    public int getFrameElidedCalls() {
+        return frameElidedCalls;
+    }
+
+    public LatencyHistogram getPhaseTimes(Phase phase) {
+        return phaseTimes[phase.ordinal()];
+    }
+
+    public LatencyHistogram getFrameTimes() {
+        return frameTimes;
+    }
+
+    public long getTotalFrames() {
+        return totalFrames;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    // Formats the current interval as plain-text exposition lines and a CSV
+    // row (see CSV_HEADER), then clears the interval. Returns {text, csv}.
+    public String[] report(long intervalNanos) {
+        final long frames = frameTimes.getCount();
+        final double seconds = intervalNanos / 1e9;
+        final StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "# Puzzle Cube frame metrics over the last %.1f s%n", seconds));
+        text.append("frames_total ").append(totalFrames).append('\n');
+        text.append(String.format(Locale.ROOT, "fps %.1f%n", frames / seconds));
+        appendSummary(text, "frame_time_ms", frameTimes);
+        for (Phase phase : Phase.values()) {
+            appendSummary(text, phase.name().toLowerCase(Locale.ROOT) + "_time_ms", phaseTimes[phase.ordinal()]);
+        }
+        text.append(String.format(Locale.ROOT, "draw_calls_per_frame %.2f%n", perFrame(drawCalls)));
+        text.append("draw_calls_per_frame_max ").append(maxDrawCalls).append('\n');
+        text.append("buffer_allocations ").append(bufferAllocations).append('\n');
+        text.append(String.format(Locale.ROOT, "uniform_uploads_per_frame %.2f%n", perFrame(uniformUploads)));
+        text.append(String.format(Locale.ROOT, "state_changes_per_frame %.2f%n", perFrame(stateChanges)));
+        text.append("state_changes_per_frame_max ").append(maxStateChanges).append('\n');
+        text.append(String.format(Locale.ROOT, "elided_calls_per_frame %.2f%n", perFrame(elidedCalls)));
+        text.append("move_queue_depth ").append(queueDepth).append('\n');
+        text.append("move_queue_depth_max ").append(maxQueueDepth.get()).append('\n');
+        text.append("moves_total ").append(totalMoves.get()).append('\n');
+        appendSummary(text, "move_time_ms", moveTimes);
+        appendSummary(text, "tick_time_ms", tickTimes);
+        appendSummary(text, "input_latency_ms", inputLatencies);
+
+        final String csv = String.format(
+            Locale.ROOT,
+            "%.3f,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.2f,%d,%.2f,%.2f,"
+            + "%d,%d,%d,%.3f,%.3f,%d,%.3f,%.3f,%.3f,%.2f",
+            (System.nanoTime() - startTime) / 1e9, frames, frames / seconds,
+            millis(frameTimes.getPercentile(0.5)), millis(frameTimes.getPercentile(0.99)),
+            millis(frameTimes.getMax()),
+            millis(phaseTimes[Phase.UPDATE.ordinal()].getPercentile(0.99)),
+            millis(phaseTimes[Phase.DRAW.ordinal()].getPercentile(0.99)),
+            millis(phaseTimes[Phase.SWAP.ordinal()].getPercentile(0.99)),
+            millis(phaseTimes[Phase.POLL.ordinal()].getPercentile(0.99)),
+            perFrame(drawCalls), bufferAllocations, perFrame(uniformUploads), perFrame(stateChanges),
+            queueDepth, maxQueueDepth.get(), moveTimes.getCount(), millis(moveTimes.getPercentile(0.5)),
+            millis(moveTimes.getMax()), tickTimes.getCount(), millis(tickTimes.getPercentile(0.99)),
+            millis(inputLatencies.getPercentile(0.5)), millis(inputLatencies.getPercentile(0.99)),
+            perFrame(elidedCalls));
+
+        frameTimes.reset();
+        for (LatencyHistogram histogram : phaseTimes) {
+            histogram.reset();
+        }
+        moveTimes.reset();
+        tickTimes.reset();
+        inputLatencies.reset();
+        drawCalls = 0;
+        bufferAllocations = 0;
+        uniformUploads = 0;
+        stateChanges = 0;
+        elidedCalls = 0;
+        maxDrawCalls = 0;
+        maxStateChanges = 0;
+        maxQueueDepth.set(queueDepth);
+        return new String[] {text.toString(), csv};
+    }
+
+}
@@ -0,0 +1,154 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded queue of input events from the GLFW callbacks on the render thread
+// (the only producer) to the simulation thread (the only consumer). Events
+// live in preallocated parallel arrays, so neither side allocates or locks:
+// each side owns one counter and publishes it with an ordered write after
+// filling or emptying a slot. poll() copies the oldest event into the
+// current-event fields read through the getters.
+public class InputQueue {
+
+    // Public local types
+
+    public enum Type {
+        KEY_PRESSED,
+        KEY_RELEASED,
+        MOUSE_BUTTON_PRESSED,
+        MOUSE_BUTTON_RELEASED,
+        CURSOR_MOVED;
+    }
+
+    // Private fields
+
+    private static final Type[] types = Type.values();
+
+    private final int mask;
+    private final byte[] eventTypes;
+    private final int[] codes;
+    private final double[] xs, ys;
+    private final long[] times;
+
+    // Next slot to read, written only by the consumer, and next slot to
+    // write, written only by the producer
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    // The producer's last look at head, so a queue with room to spare costs
+    // no read of the consumer's counter
+    private long cachedHead;
+
+    private Type type;
+    private int code;
+    private double x, y;
+    private long time;
+
+    // Public methods
+
+    // The capacity is rounded up to a power of two
+    public InputQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        mask = size - 1;
+        eventTypes = new byte[size];
+        codes = new int[size];
+        xs = new double[size];
+        ys = new double[size];
+        times = new long[size];
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    // Producer only. Returns false, dropping the event, when the queue is
+    // full.
+    public boolean offer(Type type, int code, double x, double y) {
+        final long index = tail.get();
+        if (index - cachedHead > mask) {
+            cachedHead = head.get();
+            if (index - cachedHead > mask) {
+                return false;
+            }
+        }
+        final int slot = (int) index & mask;
+        eventTypes[slot] = (byte) type.ordinal();
+        codes[slot] = code;
+        xs[slot] = x;
+        ys[slot] = y;
+        times[slot] = System.nanoTime();
+        tail.lazySet(index + 1);
+        return true;
+    }
+
+    // Consumer only. Returns false when the queue is empty.
+    public boolean poll() {
+        final long index = head.get();
+        if (index == tail.get()) {
+            return false;
+        }
+        final int slot = (int) index & mask;
+        type = types[eventTypes[slot]];
+        code = codes[slot];
+        x = xs[slot];
+        y = ys[slot];
+        time = times[slot];
+        head.lazySet(index + 1);
+        return true;
+    }
+
+    // Events waiting, as seen from either side
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    // The event last returned by poll()
+
+    public Type getType() {
+        return type;
+    }
+
+    // The key or mouse button
+    public int getCode() {
+        return code;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    // System.nanoTime() when the event was offered
+    public long getTime() {
+        return time;
+    }
+
+}
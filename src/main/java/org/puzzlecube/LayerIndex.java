@@ -0,0 +1,95 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// The cubies in each layer of each axis, so a turn touches only the cubies
+// it moves. Each cubie remembers where it sits in its three layer lists, so
+// moving it between layers is constant time: remove() it before committing
+// a turn and add() it back afterwards. A cubie can be in one index at a time.
+public class LayerIndex {
+
+    // Private fields
+
+    private static final Axis[] axes = Axis.values();
+
+    private final int minLayer, layerCount;
+    private final List<List<Cubie>> layers = new ArrayList<List<Cubie>>();
+    private final List<List<Cubie>> views = new ArrayList<List<Cubie>>();
+
+    // Private methods
+
+    private List<Cubie> layerOf(Cubie cubie, Axis axis) {
+        return layers.get(axis.ordinal() * layerCount + cubie.getPosition(axis) - minLayer);
+    }
+
+    // Public methods
+
+    public LayerIndex(int minLayer, int maxLayer) {
+        this.minLayer = minLayer;
+        layerCount = maxLayer - minLayer + 1;
+        for (int i = 0; i < axes.length * layerCount; i++) {
+            final List<Cubie> layer = new ArrayList<Cubie>();
+            layers.add(layer);
+            views.add(Collections.unmodifiableList(layer));
+        }
+    }
+
+    public void add(Cubie cubie) {
+        final int[] cubieSlots = cubie.getLayerSlots();
+        if (cubieSlots[0] >= 0) {
+            throw new IllegalArgumentException("Cubie is already in an index");
+        }
+        for (Axis axis : axes) {
+            final List<Cubie> layer = layerOf(cubie, axis);
+            cubieSlots[axis.ordinal()] = layer.size();
+            layer.add(cubie);
+        }
+    }
+
+    public void remove(Cubie cubie) {
+        final int[] cubieSlots = cubie.getLayerSlots();
+        if (cubieSlots[0] < 0) {
+            throw new IllegalArgumentException("Cubie is not in an index");
+        }
+        for (Axis axis : axes) {
+            final List<Cubie> layer = layerOf(cubie, axis);
+            final Cubie last = layer.remove(layer.size() - 1);
+            if (last != cubie) {
+                final int slot = cubieSlots[axis.ordinal()];
+                layer.set(slot, last);
+                last.getLayerSlots()[axis.ordinal()] = slot;
+            }
+        }
+        Arrays.fill(cubieSlots, -1);
+    }
+
+    // A read-only view that follows later changes
+    public List<Cubie> get(Axis axis, int layer) {
+        return views.get(axis.ordinal() * layerCount + layer - minLayer);
+    }
+
+}
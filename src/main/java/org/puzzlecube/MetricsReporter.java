@@ -0,0 +1,102 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Publishes FrameMetrics once per interval: a CSV row to stdout or a file,
+// and the plain-text report at http://127.0.0.1:<port>/metrics for a
+// scraper to poll. The endpoint serves the last finished interval, so
+// requests never touch the live counters on the render thread.
+public class MetricsReporter {
+
+    // Private fields
+
+    private final long intervalNanos;
+    private final Path csvPath;
+    private final int port;
+
+    private PrintStream csv;
+    private HttpServer server;
+    private long lastReportTime;
+    private volatile byte[] lastReport = "# No metrics reported yet\n".getBytes(StandardCharsets.UTF_8);
+
+    // Public methods
+
+    // A null csvPath writes rows to stdout; a port of 0 disables the endpoint
+    public MetricsReporter(double intervalSeconds, Path csvPath, int port) {
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException("Metrics interval must be positive: " + intervalSeconds);
+        }
+        this.intervalNanos = (long) (intervalSeconds * 1e9);
+        this.csvPath = csvPath;
+        this.port = port;
+    }
+
+    public void start() throws IOException {
+        csv = csvPath == null ? System.out : new PrintStream(Files.newOutputStream(csvPath), true, "UTF-8");
+        csv.println(FrameMetrics.CSV_HEADER);
+        if (port > 0) {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", exchange -> {
+                final byte[] body = lastReport;
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream output = exchange.getResponseBody()) {
+                    output.write(body);
+                }
+            });
+            server.start();
+            System.err.println("Metrics: http://127.0.0.1:" + server.getAddress().getPort() + "/metrics");
+        }
+        lastReportTime = System.nanoTime();
+    }
+
+    // Called by the renderer after every frame
+    public void frameFinished(FrameMetrics metrics, long now) {
+        if (now - lastReportTime >= intervalNanos) {
+            final String[] report = metrics.report(now - lastReportTime);
+            lastReport = report[0].getBytes(StandardCharsets.UTF_8);
+            csv.println(report[1]);
+            lastReportTime = now;
+        }
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (csv != null && csv != System.out) {
+            csv.close();
+        }
+    }
+
+}
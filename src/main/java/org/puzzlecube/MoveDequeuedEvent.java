@@ -0,0 +1,55 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.puzzlecube.MoveDequeued")
+@Label("Move Dequeued")
+@Category({"Puzzle Cube", "Moves"})
+@Description("A move taken off the queue to start animating")
+public class MoveDequeuedEvent extends jdk.jfr.Event {
+
+    @Label("Notation")
+    public String notation;
+
+    @Label("Axis")
+    public String axis;
+
+    @Label("First Layer")
+    @Description("Lowest layer turned, counted from the negative side of the axis")
+    public int firstLayer;
+
+    @Label("Last Layer")
+    public int lastLayer;
+
+    @Label("Direction")
+    public int direction;
+
+    @Label("Queue Depth")
+    @Description("Moves still waiting after this one")
+    public int queueDepth;
+
+}
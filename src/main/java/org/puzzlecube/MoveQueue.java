@@ -0,0 +1,116 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+// Queue of world-frame turns waiting to be animated, simplified as they are
+// added. Turns about the same axis commute, so a new turn is merged into
+// the latest queued turn of the same layers as long as only turns about the
+// same axis lie between them: inverse pairs cancel, two quarter turns become
+// a half turn, and so on.
+public class MoveQueue implements Iterable<Turn> {
+
+    // Private fields
+
+    private static final int maxRunLength = 8;
+
+    private final ArrayDeque<Turn> moves = new ArrayDeque<Turn>();
+    private final Turn[] run = new Turn[maxRunLength];
+    private long simplifiedCount;
+
+    // Private methods
+
+    private static boolean isSameLayer(Turn a, Turn b) {
+        return a.getAxis() == b.getAxis() && a.getFirstLayer() == b.getFirstLayer()
+            && a.getLastLayer() == b.getLastLayer();
+    }
+
+    // The single turn equal to a followed by b, or null if they cancel
+    private static Turn combine(Turn a, Turn b) {
+        final int quarterTurns = Math.floorMod(a.getDirection() + b.getDirection(), 4);
+        if (quarterTurns == 0) {
+            return null;
+        }
+        return new Turn(a.getSize(), a.getAxis(), a.getFirstLayer(), a.getLastLayer(),
+                        quarterTurns == 3 ? -1 : quarterTurns);
+    }
+
+    // Public methods
+
+    public void add(Turn move) {
+        int runLength = 0;
+        while (runLength < maxRunLength && !moves.isEmpty() && moves.peekLast().getAxis() == move.getAxis()) {
+            run[runLength++] = moves.pollLast();
+        }
+        boolean isMerged = false;
+        for (int i = 0; i < runLength && !isMerged; i++) {
+            if (isSameLayer(run[i], move)) {
+                run[i] = combine(run[i], move);
+                isMerged = true;
+                simplifiedCount++;
+            }
+        }
+        for (int i = runLength - 1; i >= 0; i--) {
+            if (run[i] != null) {
+                moves.addLast(run[i]);
+            }
+        }
+        if (!isMerged) {
+            moves.addLast(move);
+        }
+    }
+
+    public void addAll(Iterable<Turn> moves) {
+        for (Turn move : moves) {
+            add(move);
+        }
+    }
+
+    public Turn remove() {
+        return moves.removeFirst();
+    }
+
+    public boolean isEmpty() {
+        return moves.isEmpty();
+    }
+
+    public int size() {
+        return moves.size();
+    }
+
+    public void clear() {
+        moves.clear();
+    }
+
+    // Number of added moves that were merged away or cancelled
+    public long getSimplifiedCount() {
+        return simplifiedCount;
+    }
+
+    @Override
+    public Iterator<Turn> iterator() {
+        return moves.iterator();
+    }
+
+}
@@ -0,0 +1,247 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Moves are expressed in the world frame: U is the +y layer, R the +x layer
+// and F the +z layer. A positive direction turns the layer counter-clockwise
+// when looking down the positive axis.
+public enum MoveType {
+    NO_MOVE,
+    UP_C("U", Axis.Y, 1, -1),
+    UP_CC("U'", Axis.Y, 1, 1),
+    DOWN_C("D", Axis.Y, -1, 1),
+    DOWN_CC("D'", Axis.Y, -1, -1),
+    RIGHT_C("R", Axis.X, 1, -1),
+    RIGHT_CC("R'", Axis.X, 1, 1),
+    LEFT_C("L", Axis.X, -1, 1),
+    LEFT_CC("L'", Axis.X, -1, -1),
+    FRONT_C("F", Axis.Z, 1, -1),
+    FRONT_CC("F'", Axis.Z, 1, 1),
+    BACK_C("B", Axis.Z, -1, 1),
+    BACK_CC("B'", Axis.Z, -1, -1),
+    MIDDLE_C("M", Axis.X, 0, 1),
+    MIDDLE_CC("M'", Axis.X, 0, -1),
+    SLICE_C("S", Axis.Z, 0, -1),
+    SLICE_CC("S'", Axis.Z, 0, 1),
+    EQUATOR_C("E", Axis.Y, 0, 1),
+    EQUATOR_CC("E'", Axis.Y, 0, -1),
+    X_ROTATION_C("x", Axis.X, -1),
+    X_ROTATION_CC("x'", Axis.X, 1),
+    Z_ROTATION_C("z", Axis.Z, -1),
+    Z_ROTATION_CC("z'", Axis.Z, 1),
+    UP_2("U2", Axis.Y, 1, 2),
+    DOWN_2("D2", Axis.Y, -1, 2),
+    RIGHT_2("R2", Axis.X, 1, 2),
+    LEFT_2("L2", Axis.X, -1, 2),
+    FRONT_2("F2", Axis.Z, 1, 2),
+    BACK_2("B2", Axis.Z, -1, 2);
+
+    // Private fields
+
+    private final String notation;
+    private final Axis axis;
+    private final int layer, direction;
+    private final boolean isRotation;
+
+    // Private methods
+
+    private MoveType() {
+        notation = "";
+        axis = null;
+        layer = 0;
+        direction = 0;
+        isRotation = false;
+    }
+
+    private MoveType(String notation, Axis axis, int layer, int direction) {
+        this.notation = notation;
+        this.axis = axis;
+        this.layer = layer;
+        this.direction = direction;
+        isRotation = false;
+    }
+
+    private MoveType(String notation, Axis axis, int direction) {
+        this.notation = notation;
+        this.axis = axis;
+        this.layer = 0;
+        this.direction = direction;
+        isRotation = true;
+    }
+
+    // Package-private methods
+
+    // The number of quarter turns, 0 to 3, the camera angle is closest to
+    static int getCameraQuarterTurns(double cameraAngleY) {
+        final double angleSin = Math.sin(cameraAngleY * Math.PI / 180.0);
+        final double angleCos = Math.cos(cameraAngleY * Math.PI / 180.0);
+        final double inverseSquareRoot2 = Math.sqrt(2.0) / 2.0;
+
+        if (angleCos > inverseSquareRoot2) {
+            return 0;
+        } else if (angleSin > inverseSquareRoot2) {
+            return 1;
+        } else if (angleSin < -inverseSquareRoot2) {
+            return 3;
+        }
+        return 2;
+    }
+
+    // Public methods
+
+    public static MoveType of(Axis axis, int layer, int direction, boolean isRotation) {
+        for (MoveType move : values()) {
+            if (move.axis == axis && move.direction == direction && move.isRotation == isRotation
+             && (isRotation || move.layer == layer)) {
+                return move;
+            }
+        }
+        return NO_MOVE;
+    }
+
+    public static MoveType fromNotation(String notation) {
+        for (MoveType move : values()) {
+            if (move != NO_MOVE && move.notation.equals(notation)) {
+                return move;
+            }
+        }
+        throw new IllegalArgumentException("Unknown move: " + notation);
+    }
+
+    // Parses whitespace-separated moves such as "R U2 F' x"
+    public static List<MoveType> parseSequence(String sequence) {
+        final List<MoveType> moves = new ArrayList<MoveType>();
+        for (String token : sequence.trim().split("\\s+")) {
+            if (!token.isEmpty()) {
+                moves.add(fromNotation(token));
+            }
+        }
+        return moves;
+    }
+
+    // The 18 outer face turns, with faces in the order U R F D L B and each
+    // face as a clockwise, half and counter-clockwise turn.
+    public static MoveType[] getFaceTurns() {
+        return new MoveType[] {
+            UP_C, UP_2, UP_CC,
+            RIGHT_C, RIGHT_2, RIGHT_CC,
+            FRONT_C, FRONT_2, FRONT_CC,
+            DOWN_C, DOWN_2, DOWN_CC,
+            LEFT_C, LEFT_2, LEFT_CC,
+            BACK_C, BACK_2, BACK_CC
+        };
+    }
+
+    public static String toNotation(Iterable<MoveType> moves) {
+        final StringBuilder notation = new StringBuilder();
+        for (MoveType move : moves) {
+            if (notation.length() > 0) {
+                notation.append(' ');
+            }
+            notation.append(move.notation);
+        }
+        return notation.toString();
+    }
+
+    public String getNotation() {
+        return notation;
+    }
+
+    public Axis getAxis() {
+        return axis;
+    }
+
+    public int getLayer() {
+        return layer;
+    }
+
+    public int getDirection() {
+        return direction;
+    }
+
+    public boolean isRotation() {
+        return isRotation;
+    }
+
+    public boolean isHalfTurn() {
+        return direction == 2;
+    }
+
+    // The clockwise quarter turn that, done twice, makes up a half turn
+    public MoveType getQuarterTurn() {
+        if (isHalfTurn()) {
+            return of(axis, layer, -layer, false);
+        }
+        return this;
+    }
+
+    public MoveType getInverse() {
+        if (axis == null || isHalfTurn()) {
+            return this;
+        }
+        return of(axis, layer, -direction, isRotation);
+    }
+
+    public boolean isInLayer(int x, int y, int z) {
+        if (axis == null) {
+            return false;
+        }
+        if (isRotation) {
+            return true;
+        }
+        switch (axis) {
+        case X:
+            return x == layer;
+        case Y:
+            return y == layer;
+        case Z:
+        default:
+            return z == layer;
+        }
+    }
+
+    // Maps a move given relative to a camera turned by cameraAngleY degrees
+    // around the y-axis onto the world move it performs.
+    public MoveType fromCameraAngle(double cameraAngleY) {
+        final int quarterTurns = getCameraQuarterTurns(cameraAngleY);
+        if (axis == null || axis == Axis.Y || quarterTurns == 0) {
+            return this;
+        }
+
+        // Each quarter turn of the camera sends x to z and z to -x
+        Axis newAxis = axis;
+        int sign = 1;
+        for (int i = 0; i < quarterTurns; i++) {
+            if (newAxis == Axis.X) {
+                newAxis = Axis.Z;
+            } else {
+                newAxis = Axis.X;
+                sign = -sign;
+            }
+        }
+        return of(newAxis, layer * sign, isHalfTurn() ? direction : direction * sign, isRotation);
+    }
+
+}
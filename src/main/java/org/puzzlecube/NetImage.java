@@ -0,0 +1,252 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Draws the unfolded net of a sticker cube on the CPU, as PNG or SVG, with
+// no GL context. The net is four faces wide and three high:
+//
+//       U
+//     L F R B
+//       D
+//
+// PNGs are written directly as 4-bit indexed images: the palette holds the
+// background and the face colors, and every row of pixels in a row of
+// stickers is the same, so each is built once. An instance reuses its
+// buffers and is not thread-safe; use one per thread.
+public class NetImage {
+
+    // Public fields
+
+    public static final int DEFAULT_IMAGE_WIDTH = 192;
+
+    // Private fields
+
+    private static final byte[] pngSignature = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final int backgroundRgb = 0x404040;
+    private static final int backgroundIndex = 0;
+
+    // Net position of each face in StickerCube order, in face widths
+    private static final int[] netColumns = {1, 2, 1, 1, 0, 3};
+    private static final int[] netRows = {0, 1, 1, 2, 1, 1};
+
+    private final int cellSize, gap;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final CRC32 crc = new CRC32();
+    private byte[] raw = new byte[0];
+    private byte[] compressed = new byte[0];
+
+    // Private methods
+
+    // Palette index of a face color; 0 is the background
+    private static int paletteIndex(int face) {
+        return PuzzleCubeGame.getFaceColor(face).ordinal() + 1;
+    }
+
+    private void writeChunk(ByteArrayOutputStream out, String type, byte[] data, int length) {
+        writeInt(out, length);
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        out.write(typeBytes, 0, 4);
+        out.write(data, 0, length);
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        writeInt(out, (int) crc.getValue());
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    // Public methods
+
+    // cellSize is the width of one sticker in pixels; stickers of 4 pixels
+    // or more get a one-pixel dark border
+    public NetImage(int cellSize) {
+        if (cellSize < 1) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        gap = cellSize >= 4 ? 1 : 0;
+    }
+
+    // The cell size giving a net about DEFAULT_IMAGE_WIDTH pixels wide
+    public static int getDefaultCellSize(int size) {
+        return Math.max(1, DEFAULT_IMAGE_WIDTH / (4 * size));
+    }
+
+    public int getCellSize() {
+        return cellSize;
+    }
+
+    public int getWidth(int size) {
+        return 4 * size * cellSize;
+    }
+
+    public int getHeight(int size) {
+        return 3 * size * cellSize;
+    }
+
+    // The image in the given format, "png" or "svg"
+    public byte[] draw(StickerCube cube, String format) {
+        switch (format) {
+        case "png":
+            return toPng(cube);
+        case "svg":
+            return toSvg(cube).getBytes(StandardCharsets.UTF_8);
+        default:
+            throw new IllegalArgumentException("Unknown image format: " + format);
+        }
+    }
+
+    public byte[] toPng(StickerCube cube) {
+        final int size = cube.getSize();
+        final int width = getWidth(size);
+        final int height = getHeight(size);
+        final int rowBytes = 1 + (width + 1) / 2;
+        if (raw.length < rowBytes * height) {
+            raw = new byte[rowBytes * height];
+        }
+
+        // Pixel rows, each a filter byte (none) and two pixels per byte
+        final byte[] pixels = new byte[width + 1];
+        for (int stickerRow = 0; stickerRow < 3 * size; stickerRow++) {
+            Arrays.fill(pixels, (byte) backgroundIndex);
+            final int netRow = stickerRow / size;
+            for (int face = 0; face < StickerCube.FACE_COUNT; face++) {
+                if (netRows[face] != netRow) {
+                    continue;
+                }
+                for (int column = 0; column < size; column++) {
+                    final int color = paletteIndex(cube.getSticker(face, stickerRow % size, column));
+                    final int left = (netColumns[face] * size + column) * cellSize;
+                    Arrays.fill(pixels, left, left + cellSize, (byte) color);
+                    if (gap > 0) {
+                        pixels[left] = (byte) (Renderer.FaceColor.BLACK.ordinal() + 1);
+                    }
+                }
+            }
+            final int firstLine = stickerRow * cellSize;
+            final int rowStart = firstLine * rowBytes;
+            raw[rowStart] = 0;
+            for (int x = 0; x < width; x += 2) {
+                raw[rowStart + 1 + x / 2] = (byte) (pixels[x] << 4 | pixels[x + 1]);
+            }
+            for (int line = 1; line < cellSize; line++) {
+                System.arraycopy(raw, rowStart, raw, rowStart + line * rowBytes, rowBytes);
+            }
+            if (gap > 0) {
+                // The top line of the sticker row is the border, except over
+                // the background
+                final int borderStart = rowStart;
+                for (int x = 0; x < width; x += 2) {
+                    final int high = pixels[x] == backgroundIndex ? backgroundIndex
+                                   : Renderer.FaceColor.BLACK.ordinal() + 1;
+                    final int low = pixels[x + 1] == backgroundIndex ? backgroundIndex
+                                  : Renderer.FaceColor.BLACK.ordinal() + 1;
+                    raw[borderStart + 1 + x / 2] = (byte) (high << 4 | low);
+                }
+            }
+        }
+
+        deflater.reset();
+        deflater.setInput(raw, 0, rowBytes * height);
+        deflater.finish();
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, Math.max(1024, compressed.length * 2));
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(compressedLength + 128);
+        out.write(pngSignature, 0, pngSignature.length);
+        final byte[] header = new byte[13];
+        header[0] = (byte) (width >>> 24);
+        header[1] = (byte) (width >>> 16);
+        header[2] = (byte) (width >>> 8);
+        header[3] = (byte) width;
+        header[4] = (byte) (height >>> 24);
+        header[5] = (byte) (height >>> 16);
+        header[6] = (byte) (height >>> 8);
+        header[7] = (byte) height;
+        header[8] = 4;
+        header[9] = 3;
+        writeChunk(out, "IHDR", header, header.length);
+
+        final Renderer.FaceColor[] colors = Renderer.FaceColor.values();
+        final byte[] palette = new byte[(colors.length + 1) * 3];
+        for (int i = 0; i <= colors.length; i++) {
+            final int rgb = i == backgroundIndex ? backgroundRgb : Renderer.getFaceColorRgb(colors[i - 1]);
+            palette[i * 3] = (byte) (rgb >> 16);
+            palette[i * 3 + 1] = (byte) (rgb >> 8);
+            palette[i * 3 + 2] = (byte) rgb;
+        }
+        writeChunk(out, "PLTE", palette, palette.length);
+        writeChunk(out, "IDAT", compressed, compressedLength);
+        writeChunk(out, "IEND", new byte[0], 0);
+        return out.toByteArray();
+    }
+
+    public String toSvg(StickerCube cube) {
+        final int size = cube.getSize();
+        final int width = getWidth(size);
+        final int height = getHeight(size);
+        final StringBuilder svg = new StringBuilder(128 + StickerCube.FACE_COUNT * size * size * 64);
+        svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"").append(width)
+           .append("\" height=\"").append(height).append("\" viewBox=\"0 0 ").append(width).append(' ')
+           .append(height).append("\">\n");
+        svg.append(String.format(Locale.ROOT, "<rect width=\"%d\" height=\"%d\" fill=\"#%06x\"/>\n",
+                                 width, height, backgroundRgb));
+        for (int face = 0; face < StickerCube.FACE_COUNT; face++) {
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    final int x = (netColumns[face] * size + column) * cellSize;
+                    final int y = (netRows[face] * size + row) * cellSize;
+                    final int rgb = Renderer.getFaceColorRgb(
+                        PuzzleCubeGame.getFaceColor(cube.getSticker(face, row, column)));
+                    svg.append("<rect x=\"").append(x).append("\" y=\"").append(y)
+                       .append("\" width=\"").append(cellSize).append("\" height=\"").append(cellSize)
+                       .append("\" fill=\"#").append(String.format(Locale.ROOT, "%06x", rgb));
+                    if (gap > 0) {
+                        svg.append("\" stroke=\"#000000\" stroke-width=\"").append(gap);
+                    }
+                    svg.append("\"/>\n");
+                }
+            }
+        }
+        svg.append("</svg>\n");
+        return svg.toString();
+    }
+
+}
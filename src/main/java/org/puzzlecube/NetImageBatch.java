@@ -0,0 +1,161 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Draws the net of every scramble in a stream, one per line, on a fixed pool
+// of worker threads with one NetImage each, going through a shared cache.
+// Line n (counting from 1) becomes n.png or n.svg, zero-padded to six
+// digits, in the output directory. At most linesPerThread lines per thread
+// are in flight, so memory stays bounded however long the input is. Lines
+// that do not parse are reported on standard error and skipped.
+public class NetImageBatch {
+
+    // Private fields
+
+    private static final int linesPerThread = 256;
+
+    private final int threadCount, size, cellSize;
+    private final String format;
+    private final NetImageCache cache;
+    private final ThreadLocal<NetImage> netImages;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong errorCount = new AtomicLong();
+    private long lineCount, elapsedNanos;
+
+    private volatile IOException writeError;
+
+    // Private methods
+
+    private void drawLine(Path directory, long index, String line) {
+        final long startTime = System.nanoTime();
+        final StickerCube cube = new StickerCube(size);
+        try {
+            cube.apply(Turn.parseSequence(line, size));
+        } catch (IllegalArgumentException e) {
+            errorCount.incrementAndGet();
+            System.err.println("Line " + (index + 1) + ": " + e.getMessage());
+            return;
+        }
+        try {
+            final byte[] image = cache.getImage(cube, netImages.get(), format);
+            Files.write(directory.resolve(String.format("%06d.%s", index + 1, format)), image);
+        } catch (IOException e) {
+            writeError = e;
+            return;
+        }
+        latencies.record(System.nanoTime() - startTime);
+    }
+
+    // Public methods
+
+    public NetImageBatch(int threadCount, int size, String format, int cellSize, NetImageCache cache) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+        if (!format.equals("png") && !format.equals("svg")) {
+            throw new IllegalArgumentException("Unknown image format: " + format);
+        }
+        if (cellSize < 1) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        if (size < PuzzleCubeGame.MIN_SIZE || size > PuzzleCubeGame.MAX_SIZE) {
+            throw new IllegalArgumentException("Cube size must be from " + PuzzleCubeGame.MIN_SIZE + " to "
+                                               + PuzzleCubeGame.MAX_SIZE + ": " + size);
+        }
+        this.threadCount = threadCount;
+        this.size = size;
+        this.format = format;
+        this.cellSize = cellSize;
+        this.cache = cache;
+        netImages = ThreadLocal.withInitial(() -> new NetImage(this.cellSize));
+    }
+
+    public void run(BufferedReader reader, Path directory) throws IOException, InterruptedException {
+        Files.createDirectories(directory);
+        writeError = null;
+        lineCount = 0;
+        latencies.reset();
+        errorCount.set(0);
+
+        final long startTime = System.nanoTime();
+        final Semaphore freeSlots = new Semaphore(threadCount * linesPerThread);
+        final ExecutorService pool = Executors.newFixedThreadPool(threadCount);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null && writeError == null) {
+                freeSlots.acquire();
+                final long index = lineCount++;
+                final String scramble = line;
+                pool.execute(() -> {
+                    try {
+                        drawLine(directory, index, scramble);
+                    } finally {
+                        freeSlots.release();
+                    }
+                });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        elapsedNanos = System.nanoTime() - startTime;
+        if (writeError != null) {
+            throw writeError;
+        }
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getImagesPerSecond() {
+        return latencies.getCount() * 1e9 / Math.max(elapsedNanos, 1);
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public NetImageCache getCache() {
+        return cache;
+    }
+
+}
@@ -0,0 +1,167 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Net images addressed by a SHA-256 hash of what they show: the sticker
+// state, the format and the cell size. Recent images are kept in memory and
+// the least recently used are evicted past a limit; with a directory, every
+// image is also kept on disk as <hash>.<format> and survives restarts. Safe
+// to share between threads.
+public class NetImageCache {
+
+    // Private fields
+
+    private static final ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final int maxEntries;
+    private final Path directory;
+    private final Map<String, byte[]> entries;
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Private methods
+
+    private void remember(String key, byte[] image) {
+        if (maxEntries > 0) {
+            synchronized (entries) {
+                entries.put(key, image);
+            }
+        }
+    }
+
+    // Public methods
+
+    // A maxEntries of 0 keeps nothing in memory; a null directory keeps
+    // nothing on disk
+    public NetImageCache(int maxEntries, Path directory) throws IOException {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Entry count must not be negative: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.directory = directory;
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > NetImageCache.this.maxEntries;
+            }
+        };
+    }
+
+    public static String getKey(StickerCube cube, String format, int cellSize) {
+        final MessageDigest digest = digests.get();
+        digest.reset();
+        digest.update((cube.getSize() + ":" + format + ":" + cellSize + ":").getBytes(StandardCharsets.US_ASCII));
+        digest.update(cube.toBytes());
+        final StringBuilder key = new StringBuilder(64);
+        for (byte value : digest.digest()) {
+            key.append(Character.forDigit((value >> 4) & 15, 16)).append(Character.forDigit(value & 15, 16));
+        }
+        return key.toString();
+    }
+
+    // The cached image, or null if it has to be drawn
+    public byte[] get(String key, String format) throws IOException {
+        synchronized (entries) {
+            final byte[] image = entries.get(key);
+            if (image != null) {
+                memoryHits.incrementAndGet();
+                return image;
+            }
+        }
+        if (directory != null) {
+            try {
+                final byte[] image = Files.readAllBytes(directory.resolve(key + "." + format));
+                diskHits.incrementAndGet();
+                remember(key, image);
+                return image;
+            } catch (NoSuchFileException e) {
+                // Not drawn yet
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String key, String format, byte[] image) throws IOException {
+        remember(key, image);
+        if (directory != null) {
+            // Written to a temporary file first so readers never see part of
+            // an image
+            final Path file = directory.resolve(key + "." + format);
+            final Path temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporary, image);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    // The image of the cube from the cache, drawn and cached on a miss
+    public byte[] getImage(StickerCube cube, NetImage netImage, String format) throws IOException {
+        final String key = getKey(cube, format, netImage.getCellSize());
+        byte[] image = get(key, format);
+        if (image == null) {
+            image = netImage.draw(cube, format);
+            put(key, format, image);
+        }
+        return image;
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        final long hits = memoryHits.get() + diskHits.get();
+        return hits / (double) Math.max(1, hits + misses.get());
+    }
+
+}
@@ -0,0 +1,470 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Finds shortest solutions in the face turn metric with iterative deepening
+// A*. The heuristic is the largest of three pattern databases: all corners
+// (permutation and twist) and two sets of six edges (positions and flips),
+// one nibble per entry. With the move tables they take about 136 MB. They
+// are built once, on first use, by a breadth-first scan that switches to
+// searching backwards from the unvisited entries once the table is half
+// full.
+//
+// Each depth bound is searched on the solver's ForkJoinPool, kept from one
+// solve to the next: the first levels of the tree are split into tasks and
+// the subtrees below them are searched depth-first by whichever worker picks
+// them up. Any solution found at the current bound is optimal, so the first
+// one stops every worker.
+public class OptimalSolver {
+
+    // Public local types
+
+    public static class Result {
+
+        private final List<MoveType> moves;
+        private final boolean isOptimal;
+        private final int lowerBound, threadCount;
+        private final long nodeCount, elapsedNanos;
+
+        private Result(List<MoveType> moves, boolean isOptimal, int lowerBound, int threadCount,
+                       long nodeCount, long elapsedNanos) {
+            this.moves = moves;
+            this.isOptimal = isOptimal;
+            this.lowerBound = lowerBound;
+            this.threadCount = threadCount;
+            this.nodeCount = nodeCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        // Empty unless a solution was found
+        public List<MoveType> getMoves() {
+            return moves;
+        }
+
+        public boolean isOptimal() {
+            return isOptimal;
+        }
+
+        // No solution is shorter than this, even when the search was cut short
+        public int getLowerBound() {
+            return lowerBound;
+        }
+
+        public int getThreadCount() {
+            return threadCount;
+        }
+
+        public long getNodeCount() {
+            return nodeCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getNodesPerSecond() {
+            return nodeCount * 1e9 / Math.max(elapsedNanos, 1);
+        }
+
+        public double getNodesPerSecondPerThread() {
+            return getNodesPerSecond() / threadCount;
+        }
+
+    }
+
+    // Public fields
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 60000;
+
+    // Private fields
+
+    private static final int moveCount = 18;
+    private static final int cornerPermutationCount = 40320;
+    private static final int twistCount = CubeCoordinates.TWIST_COUNT;
+    private static final int edgeSetSize = 6;
+    private static final int edgePositionCount = 665280;
+    private static final int maxLength = 20;
+    private static final int splitDepth = 3;
+
+    private static final MoveType[] moves = MoveType.getFaceTurns();
+
+    private final int threadCount;
+    private final ForkJoinPool pool;
+    private final AtomicReference<int[]> solution = new AtomicReference<int[]>();
+    private final LongAdder nodeCount = new LongAdder();
+    private volatile boolean isCancelled;
+    private long deadline;
+
+    // Private methods
+
+    private interface Transition {
+        int apply(int index, int move);
+    }
+
+    private static PruningTable buildPruningTable(int size, int goal, Transition transition) {
+        final PruningTable table = new PruningTable(size);
+        table.set(goal, 0);
+        int filled = 1;
+        for (int depth = 0; filled < size && depth < PruningTable.UNKNOWN - 1; depth++) {
+            final int previouslyFilled = filled;
+            final boolean isBackward = filled > size / 2;
+            for (int index = 0; index < size; index++) {
+                if (isBackward) {
+                    if (table.get(index) != PruningTable.UNKNOWN) {
+                        continue;
+                    }
+                    for (int move = 0; move < moveCount; move++) {
+                        if (table.get(transition.apply(index, move)) == depth) {
+                            table.set(index, depth + 1);
+                            filled++;
+                            break;
+                        }
+                    }
+                } else {
+                    if (table.get(index) != depth) {
+                        continue;
+                    }
+                    for (int move = 0; move < moveCount; move++) {
+                        final int next = transition.apply(index, move);
+                        if (table.get(next) == PruningTable.UNKNOWN) {
+                            table.set(next, depth + 1);
+                            filled++;
+                        }
+                    }
+                }
+            }
+            if (filled == previouslyFilled) {
+                break;
+            }
+        }
+        return table;
+    }
+
+    // Ranks the slots holding an ordered set of six edges among the
+    // 12 * 11 * ... * 7 possible arrangements
+    private static int rankEdgePositions(int[] positions) {
+        int rank = 0;
+        for (int i = 0; i < edgeSetSize; i++) {
+            int digit = positions[i];
+            for (int j = 0; j < i; j++) {
+                if (positions[j] < positions[i]) {
+                    digit--;
+                }
+            }
+            rank = rank * (CubeState.EDGE_COUNT - i) + digit;
+        }
+        return rank;
+    }
+
+    private static int[] unrankEdgePositions(int rank) {
+        final int[] digits = new int[edgeSetSize];
+        for (int i = edgeSetSize - 1; i >= 0; i--) {
+            digits[i] = rank % (CubeState.EDGE_COUNT - i);
+            rank /= CubeState.EDGE_COUNT - i;
+        }
+        final int[] positions = new int[edgeSetSize];
+        final boolean[] isUsed = new boolean[CubeState.EDGE_COUNT];
+        for (int i = 0; i < edgeSetSize; i++) {
+            int slot = 0;
+            for (int skipped = 0; isUsed[slot] || skipped < digits[i]; slot++) {
+                if (!isUsed[slot]) {
+                    skipped++;
+                }
+            }
+            isUsed[slot] = true;
+            positions[i] = slot;
+        }
+        return positions;
+    }
+
+    // Edge set coordinate: position rank in the high bits, one flip bit per
+    // edge in the low six
+    private static int edgeSet(CubeState state, int firstEdge) {
+        final int[] positions = new int[edgeSetSize];
+        int flips = 0;
+        for (int slot = 0; slot < CubeState.EDGE_COUNT; slot++) {
+            final int i = state.getEdge(slot) - firstEdge;
+            if (i >= 0 && i < edgeSetSize) {
+                positions[i] = slot;
+                flips |= state.getEdgeOrientation(slot) << i;
+            }
+        }
+        return rankEdgePositions(positions) << edgeSetSize | flips;
+    }
+
+    private static int moveEdgeSet(int edgeSet, int move) {
+        final int entry = Tables.edgeSetMoves[(edgeSet >>> edgeSetSize) * moveCount + move];
+        return entry ^ (edgeSet & ((1 << edgeSetSize) - 1));
+    }
+
+    private static int distance(int cornerPermutation, int twist, int edgesA, int edgesB) {
+        return Math.max(Tables.cornerPruning.get(cornerPermutation * twistCount + twist),
+                        Math.max(Tables.edgesAPruning.get(edgesA), Tables.edgesBPruning.get(edgesB)));
+    }
+
+    private static boolean isRedundant(int move, int previousMove) {
+        final int face = move / 3;
+        final int previousFace = previousMove / 3;
+        return face == previousFace || face == previousFace - 3;
+    }
+
+    private boolean isStopped() {
+        if (!isCancelled && System.nanoTime() > deadline) {
+            isCancelled = true;
+        }
+        return isCancelled || solution.get() != null;
+    }
+
+    // Built on first use of any solver
+    private static class Tables {
+
+        static final char[] cornerPermutationMoves = new char[cornerPermutationCount * moveCount];
+        static final char[] twistMoves = new char[twistCount * moveCount];
+        static final int[] edgeSetMoves = new int[edgePositionCount * moveCount];
+        static final int solvedEdgesB;
+        static final PruningTable cornerPruning, edgesAPruning, edgesBPruning;
+
+        static {
+            for (int permutation = 0; permutation < cornerPermutationCount; permutation++) {
+                for (int move = 0; move < moveCount; move++) {
+                    final CubeState state = CubeCoordinates.fromPermutations(permutation, 0, 0);
+                    state.apply(moves[move]);
+                    cornerPermutationMoves[permutation * moveCount + move] =
+                        (char) CubeCoordinates.cornerPermutation(state);
+                }
+            }
+            for (int twist = 0; twist < twistCount; twist++) {
+                for (int move = 0; move < moveCount; move++) {
+                    final CubeState state = CubeCoordinates.fromTwist(twist);
+                    state.apply(moves[move]);
+                    twistMoves[twist * moveCount + move] = (char) CubeCoordinates.twist(state);
+                }
+            }
+
+            // Where each move sends the edge in a slot, and whether it flips it
+            final int[][] targets = new int[moveCount][CubeState.EDGE_COUNT];
+            final int[][] flips = new int[moveCount][CubeState.EDGE_COUNT];
+            for (int move = 0; move < moveCount; move++) {
+                final CubeState state = new CubeState();
+                state.apply(moves[move]);
+                for (int slot = 0; slot < CubeState.EDGE_COUNT; slot++) {
+                    targets[move][state.getEdge(slot)] = slot;
+                    flips[move][state.getEdge(slot)] = state.getEdgeOrientation(slot);
+                }
+            }
+            final int[] moved = new int[edgeSetSize];
+            for (int rank = 0; rank < edgePositionCount; rank++) {
+                final int[] positions = unrankEdgePositions(rank);
+                for (int move = 0; move < moveCount; move++) {
+                    int flipMask = 0;
+                    for (int i = 0; i < edgeSetSize; i++) {
+                        moved[i] = targets[move][positions[i]];
+                        flipMask |= flips[move][positions[i]] << i;
+                    }
+                    edgeSetMoves[rank * moveCount + move] =
+                        rankEdgePositions(moved) << edgeSetSize | flipMask;
+                }
+            }
+            solvedEdgesB = edgeSet(new CubeState(), edgeSetSize);
+
+            cornerPruning = buildPruningTable(
+                cornerPermutationCount * twistCount, 0,
+                (index, move) -> cornerPermutationMoves[index / twistCount * moveCount + move] * twistCount
+                               + twistMoves[index % twistCount * moveCount + move]);
+            edgesAPruning = buildPruningTable(edgePositionCount << edgeSetSize, 0,
+                                              OptimalSolver::moveEdgeSet);
+            edgesBPruning = buildPruningTable(edgePositionCount << edgeSetSize, solvedEdgesB,
+                                              OptimalSolver::moveEdgeSet);
+        }
+
+    }
+
+    // Searches the subtree below one path prefix, splitting it further while
+    // the prefix is shorter than splitDepth
+    private class SearchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] path;
+        private final int cornerPermutation, twist, edgesA, edgesB, bound;
+        private long nodes;
+
+        SearchTask(int[] path, int cornerPermutation, int twist, int edgesA, int edgesB, int bound) {
+            this.path = path;
+            this.cornerPermutation = cornerPermutation;
+            this.twist = twist;
+            this.edgesA = edgesA;
+            this.edgesB = edgesB;
+            this.bound = bound;
+        }
+
+        @Override
+        protected void compute() {
+            final int depth = path.length;
+            if (isStopped()) {
+                return;
+            }
+            if (depth >= splitDepth || depth >= bound) {
+                final int[] moveAt = Arrays.copyOf(path, bound);
+                if (search(moveAt, cornerPermutation, twist, edgesA, edgesB, depth, bound - depth)) {
+                    solution.compareAndSet(null, moveAt);
+                }
+                nodeCount.add(nodes);
+                return;
+            }
+            final List<SearchTask> children = new ArrayList<SearchTask>();
+            for (int move = 0; move < moveCount; move++) {
+                if (depth > 0 && isRedundant(move, path[depth - 1])) {
+                    continue;
+                }
+                final int nextCornerPermutation = Tables.cornerPermutationMoves[cornerPermutation * moveCount + move];
+                final int nextTwist = Tables.twistMoves[twist * moveCount + move];
+                final int nextEdgesA = moveEdgeSet(edgesA, move);
+                final int nextEdgesB = moveEdgeSet(edgesB, move);
+                if (distance(nextCornerPermutation, nextTwist, nextEdgesA, nextEdgesB) >= bound - depth) {
+                    continue;
+                }
+                final int[] childPath = Arrays.copyOf(path, depth + 1);
+                childPath[depth] = move;
+                children.add(new SearchTask(childPath, nextCornerPermutation, nextTwist, nextEdgesA,
+                                            nextEdgesB, bound));
+            }
+            nodeCount.add(children.size());
+            invokeAll(children);
+        }
+
+        private boolean search(int[] moveAt, int cornerPermutation, int twist, int edgesA, int edgesB,
+                               int depth, int remaining) {
+            if (remaining == 0) {
+                return cornerPermutation == 0 && twist == 0 && edgesA == 0 && edgesB == Tables.solvedEdgesB;
+            }
+            for (int move = 0; move < moveCount; move++) {
+                if (depth > 0 && isRedundant(move, moveAt[depth - 1])) {
+                    continue;
+                }
+                final int nextCornerPermutation = Tables.cornerPermutationMoves[cornerPermutation * moveCount + move];
+                final int nextTwist = Tables.twistMoves[twist * moveCount + move];
+                if (Tables.cornerPruning.get(nextCornerPermutation * twistCount + nextTwist) >= remaining) {
+                    continue;
+                }
+                final int nextEdgesA = moveEdgeSet(edgesA, move);
+                if (Tables.edgesAPruning.get(nextEdgesA) >= remaining) {
+                    continue;
+                }
+                final int nextEdgesB = moveEdgeSet(edgesB, move);
+                if (Tables.edgesBPruning.get(nextEdgesB) >= remaining) {
+                    continue;
+                }
+                if ((++nodes & 4095) == 0 && isStopped()) {
+                    return false;
+                }
+                moveAt[depth] = move;
+                if (search(moveAt, nextCornerPermutation, nextTwist, nextEdgesA, nextEdgesB, depth + 1,
+                           remaining - 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    // Public methods
+
+    public OptimalSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public OptimalSolver(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+        this.threadCount = threadCount;
+        pool = new ForkJoinPool(threadCount);
+        getTableMemoryBytes();
+    }
+
+    public static long getTableMemoryBytes() {
+        return (long) Character.BYTES * (Tables.cornerPermutationMoves.length + Tables.twistMoves.length)
+             + (long) Integer.BYTES * Tables.edgeSetMoves.length
+             + Tables.cornerPruning.getMemoryBytes() + Tables.edgesAPruning.getMemoryBytes()
+             + Tables.edgesBPruning.getMemoryBytes();
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    // Stops a solve running on another thread; it returns what it has so far
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    public Result solve(CubeState state) {
+        return solve(state, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    // Returns the shortest sequence of face turns, in the world frame, that
+    // solves the given state. When the timeout passes or cancel() is called
+    // first, the result holds no moves and the depth proven so far. One solve
+    // at a time per instance.
+    public Result solve(CubeState state, long timeoutMillis) {
+        final long startTime = System.nanoTime();
+        final CubeState start = state.reoriented();
+        final int cornerPermutation = CubeCoordinates.cornerPermutation(start);
+        final int twist = CubeCoordinates.twist(start);
+        final int edgesA = edgeSet(start, 0);
+        final int edgesB = edgeSet(start, edgeSetSize);
+        solution.set(null);
+        nodeCount.reset();
+        isCancelled = false;
+        deadline = startTime + timeoutMillis * 1000000L;
+
+        int lowerBound = distance(cornerPermutation, twist, edgesA, edgesB);
+        for (int bound = lowerBound; bound <= maxLength && !isStopped(); bound++) {
+            pool.invoke(new SearchTask(new int[0], cornerPermutation, twist, edgesA, edgesB, bound));
+            if (solution.get() == null && !isCancelled) {
+                lowerBound = bound + 1;
+            }
+        }
+
+        final List<MoveType> moves = new ArrayList<MoveType>();
+        final int[] found = solution.get();
+        if (found != null) {
+            for (int move : found) {
+                moves.add(state.toPhysical(OptimalSolver.moves[move]));
+            }
+            lowerBound = found.length;
+        }
+        return new Result(moves, found != null, lowerBound, threadCount, nodeCount.sum(),
+                          System.nanoTime() - startTime);
+    }
+
+}
@@ -0,0 +1,68 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.Arrays;
+
+// Distance-to-goal table with one nibble per entry. Entries start out as
+// UNKNOWN (15), which doubles as the lower bound "15 or more".
+public class PruningTable {
+
+    // Public fields
+
+    public static final int UNKNOWN = 15;
+
+    // Private fields
+
+    private final byte[] nibbles;
+    private final long size;
+
+    // Public methods
+
+    public PruningTable(long size) {
+        if ((size + 1) / 2 > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Pruning table too large: " + size);
+        }
+        this.size = size;
+        nibbles = new byte[(int) ((size + 1) / 2)];
+        Arrays.fill(nibbles, (byte) -1);
+    }
+
+    public int get(long index) {
+        return (nibbles[(int) (index >> 1)] >> (((int) index & 1) << 2)) & 15;
+    }
+
+    public void set(long index, int value) {
+        final int position = (int) (index >> 1);
+        final int shift = ((int) index & 1) << 2;
+        nibbles[position] = (byte) ((nibbles[position] & ~(15 << shift)) | value << shift);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getMemoryBytes() {
+        return nibbles.length;
+    }
+
+}
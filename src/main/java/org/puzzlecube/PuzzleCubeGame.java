@@ -22,9 +22,11 @@
 
 package org.puzzlecube;
 
-import java.util.Queue;
-import java.util.LinkedList;
-import java.util.Random;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
 
 import static org.lwjgl.glfw.GLFW.*;
 
@@ -32,463 +34,613 @@ public class PuzzleCubeGame implements Game {
 
     // Private local types
 
-    private enum MoveType {
-        NO_MOVE,
-        UP_C,
-        UP_CC,
-        DOWN_C,
-        DOWN_CC,
-        RIGHT_C,
-        RIGHT_CC,
-        LEFT_C,
-        LEFT_CC,
-        FRONT_C,
-        FRONT_CC,
-        BACK_C,
-        BACK_CC,
-        MIDDLE_C,
-        MIDDLE_CC,
-        SLICE_C,
-        SLICE_CC,
-        EQUATOR_C,
-        EQUATOR_CC,
-        X_ROTATION_C,
-        X_ROTATION_CC,
-        Z_ROTATION_C,
-        Z_ROTATION_CC;
-    }
-
-    private enum Axis {
-        X,
-        Y,
-        Z;
+    // The model matrix of every cubie, 16 floats each in cube order, as of
+    // the committed turn count in version, and the turn in progress, which
+    // the renderer applies on the GPU. The caps are the black faces that
+    // close off the turning layers from the rest of the cube.
+    private static final class Pose {
+        Cubie[] cubies;
+        float[] models;
+        long version = -1;
+        final float[] capModels = new float[4 * 16];
+        final Renderer.CubeFace[] capFaces = new Renderer.CubeFace[4];
+        int capCount;
+        Axis turnAxis;
+        float turnMin, turnMax;
+        double turnAngle;
     }
 
-    // Private fields
-
-    private boolean isCameraMode, isLeftShiftHeld, isLeftControlHeld, isFirstMove;
-    private double oldX, oldY, saveAngle;
-    private MoveType currentMove;
-    private Queue<MoveType> moveQueue;
-    private Cubie[] cube;
-    private Random random;
+    // A solve running on a thread of its own. update() queues the solution
+    // once it is done, unless the moves queued since have changed the state
+    // it was for.
+    private static final class PendingSolve {
+        final StickerCube target;
+        final SolveEvent event = new SolveEvent();
+        volatile boolean isDone;
+        List<MoveType> solution;
+
+        PendingSolve(StickerCube target) {
+            this.target = target;
+        }
+    }
 
-    // Private methods
+    // Public fields
 
-    private void continueTurn(Axis axis, float globalDesired, double direction) {
-        final float tolerance = 0.02f;
-        final double startSpeed = 8.0;
-        final double speed = 4.0;
+    public static final int MIN_SIZE = 2;
+    public static final int MAX_SIZE = 100;
+    public static final int DEFAULT_SIZE = 3;
+    public static final double DEFAULT_TURNS_PER_SECOND = 4.0;
+    public static final int DEFAULT_FAST_FORWARD_DEPTH = 40;
+    public static final int DEFAULT_FAST_FORWARD_TAIL = 8;
 
-        int lockCount = 0;
+    // Private fields
 
-        for (Cubie cubie : cube) {
-            float actual;
-            switch (axis) {
-            case X:
-                actual = cubie.getX();
-                break;
-            case Y:
-                actual = cubie.getY();
-                break;
-            case Z:
-            default:
-                actual = cubie.getZ();
-                break;
-            }
+    // Colors of the faces in StickerCube order: U R F D L B
+    private static final Renderer.FaceColor[] faceColors = {
+        Renderer.FaceColor.WHITE, Renderer.FaceColor.RED, Renderer.FaceColor.GREEN,
+        Renderer.FaceColor.YELLOW, Renderer.FaceColor.ORANGE, Renderer.FaceColor.BLUE
+    };
+
+    // Solves answered from the cache skip the search, for states met again
+    // up to symmetry
+    private static final int cachedSolutionCount = 1024;
+
+    private final int size;
+    private boolean isCameraMode, isLeftShiftHeld, isLeftControlHeld;
+    private double oldX, oldY;
+    private int layerDepth;
+    private Turn currentMove;
+    private MoveQueue moveQueue;
+    private Cubie[] cube;
+    private LayerIndex layers;
+    private StickerCube stickers;
+    private TwoPhaseSolver solver;
+    private PendingSolve pendingSolve;
+    private final SolutionCache solutions = new SolutionCache(cachedSolutionCount, false);
+    private SplittableRandom random;
+    private ScramblePool scramblePool;
+    private long moveStartTime;
+    private int moveFrameCount, lastQueueDepth;
+    private MoveLockedEvent moveEvent;
+    private final List<Cubie> turningCubies = new ArrayList<Cubie>();
+    private final TripleBuffer<Pose> poses = new TripleBuffer<Pose>(new Pose(), new Pose(), new Pose());
+    private long poseVersion;
+    private boolean isPoseStale;
+    private SessionRecorder recorder;
+    private SessionReplay replay;
+    private double replaySpeed;
+    private long replayTime;
+    private double turnDuration, turnElapsed, turnAngle;
+    private int fastForwardDepth, fastForwardTail;
 
-            float desired;
-            if (Float.isNaN(globalDesired)) {
-                desired = actual;
-            } else {
-                desired = globalDesired;
-            }
+    // Private methods
 
-            if (Math.abs(actual - desired) <= tolerance) {
-                if (isFirstMove) {
-                    switch (axis) {
-                    case X:
-                        cubie.rotateX(startSpeed * direction);
-                        break;
-                    case Y:
-                        cubie.rotateY(startSpeed * direction);
-                        break;
-                    case Z:
-                        cubie.rotateZ(startSpeed * direction);
-                        break;
-                    }
-                } else {
-                    switch (axis) {
-                    case X:
-                        cubie.rotateX(speed * direction);
-                        break;
-                    case Y:
-                        cubie.rotateY(speed * direction);
-                        break;
-                    case Z:
-                        cubie.rotateZ(speed * direction);
-                        break;
-                    }
-                    if (cubie.isAboutLocked(tolerance)) {
-                        lockCount++;
+    // Only cubies with a face on the outside are built; the core of the cube
+    // is never seen
+    private static Cubie[] buildCube(int size) {
+        final int last = size - 1;
+        final List<Cubie> cubies = new ArrayList<Cubie>();
+        for (int y = last; y >= 0; y--) {
+            for (int z = 0; z <= last; z++) {
+                for (int x = 0; x <= last; x++) {
+                    if (x > 0 && x < last && y > 0 && y < last && z > 0 && z < last) {
+                        continue;
                     }
+                    cubies.add(new Cubie(size, x, y, z,
+                                         y == last ? faceColors[0] : Renderer.FaceColor.BLACK,
+                                         z == last ? faceColors[2] : Renderer.FaceColor.BLACK,
+                                         z == 0 ? faceColors[5] : Renderer.FaceColor.BLACK,
+                                         x == 0 ? faceColors[4] : Renderer.FaceColor.BLACK,
+                                         x == last ? faceColors[1] : Renderer.FaceColor.BLACK,
+                                         y == 0 ? faceColors[3] : Renderer.FaceColor.BLACK));
                 }
             }
         }
-        if (isFirstMove) {
-            isFirstMove = false;
-        }
-        if ((Float.isNaN(globalDesired) && lockCount >= 27)
-         || (!Float.isNaN(globalDesired) && lockCount >= 9)) {
-            for (Cubie cubie : cube) {
-                float actual;
-                switch (axis) {
-                case X:
-                    actual = cubie.getX();
-                    break;
-                case Y:
-                    actual = cubie.getY();
-                    break;
-                case Z:
-                default:
-                    actual = cubie.getZ();
-                    break;
-                }
+        return cubies.toArray(new Cubie[0]);
+    }
 
-                float desired;
-                if (Float.isNaN(globalDesired)) {
-                    desired = actual;
-                } else {
-                    desired = globalDesired;
-                }
+    private static double getTurnAngle(Turn move) {
+        return 90.0 * move.getDirection();
+    }
 
-                if (Math.abs(actual - desired) <= tolerance) {
-                    cubie.lock(tolerance);
-                }
+    private double getTurnDuration(Turn move) {
+        return move.isHalfTurn() ? turnDuration * 1.5 : turnDuration;
+    }
+
+    private void collectTurningCubies(Turn move) {
+        turningCubies.clear();
+        if (move.isRotation()) {
+            turningCubies.addAll(Arrays.asList(cube));
+        } else {
+            for (int layer = move.getFirstLayer(); layer <= move.getLastLayer(); layer++) {
+                turningCubies.addAll(layers.get(move.getAxis(), layer));
             }
-            currentMove = MoveType.NO_MOVE;
         }
     }
 
-    private void continueMove(Renderer renderer, MoveType move) {
-        if (move != MoveType.NO_MOVE && isFirstMove) {
-            saveAngle = renderer.getCameraAngleY();
+    // Locks the turning cubies into their new layers and updates the stickers
+    private void commitTurningCubies(Turn move) {
+        for (Cubie cubie : turningCubies) {
+            layers.remove(cubie);
+            cubie.commitTurn(move.getAxis(), move.getDirection());
+            layers.add(cubie);
         }
-        double angleSin = Math.sin(saveAngle * Math.PI / 180.0);
-        double angleCos = Math.cos(saveAngle * Math.PI / 180.0);
-        double inverseSquareRoot2 = Math.sqrt(2.0) / 2.0;
+        turningCubies.clear();
+        stickers.apply(move);
+        poseVersion++;
+        isPoseStale = true;
+    }
 
-        switch (move) {
-        case UP_C:
-            continueTurn(Axis.Y, 0.1f, -1.f);
-            break;
-        case UP_CC:
-            continueTurn(Axis.Y, 0.1f, 1.f);
-            break;
-        case DOWN_C:
-            continueTurn(Axis.Y, -0.1f, 1.f);
-            break;
-        case DOWN_CC:
-            continueTurn(Axis.Y, -0.1f, -1.f);
-            break;
-        case RIGHT_C:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.1f, -1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.1f, -1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.Z, -0.1f, 1.f);
-            } else {
-                continueTurn(Axis.X, -0.1f, 1.f);
+    // Saves the cube as it should look for draw(), which may run on another
+    // thread. The models are only copied when a turn has been committed since
+    // the back buffer was last filled; while a turn plays only its angle
+    // changes.
+    private void publishPose() {
+        final Pose pose = poses.getBackBuffer();
+        if (pose.cubies != cube || pose.version != poseVersion) {
+            if (pose.models == null || pose.models.length != cube.length * 16) {
+                pose.models = new float[cube.length * 16];
             }
-            break;
-        case RIGHT_CC:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.1f, 1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.1f, 1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.Z, -0.1f, -1.f);
-            } else {
-                continueTurn(Axis.X, -0.1f, -1.f);
-            }
-            break;
-        case LEFT_C:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.Z, -0.1f, 1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.X, -0.1f, 1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.1f, -1.f);
-            } else {
-                continueTurn(Axis.X, 0.1f, -1.f);
-            }
-            break;
-        case LEFT_CC:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.Z, -0.1f, -1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.X, -0.1f, -1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.1f, 1.f);
-            } else {
-                continueTurn(Axis.X, 0.1f, 1.f);
-            }
-            break;
-        case FRONT_C:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.X, -0.1f, 1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.1f, -1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.1f, -1.f);
-            } else {
-                continueTurn(Axis.Z, -0.1f, 1.f);
-            }
-            break;
-        case FRONT_CC:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.X, -0.1f, -1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.1f, 1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.1f, 1.f);
-            } else {
-                continueTurn(Axis.Z, -0.1f, -1.f);
+            for (int i = 0; i < cube.length; i++) {
+                cube[i].getModel(pose.models, i * 16);
             }
+            pose.cubies = cube;
+            pose.version = poseVersion;
+            pose.capCount = currentMove == null ? 0 : putTurnCaps(currentMove, pose);
+        }
+        if (currentMove != null) {
+            pose.turnAxis = currentMove.getAxis();
+            pose.turnMin = Cubie.getLayerOffset(size, currentMove.getFirstLayer() - 0.5);
+            pose.turnMax = Cubie.getLayerOffset(size, currentMove.getLastLayer() + 0.5);
+            pose.turnAngle = turnAngle;
+        } else {
+            pose.turnAxis = null;
+        }
+        poses.publish();
+        isPoseStale = false;
+    }
+
+    // One face the size of the whole cross-section on each side of every
+    // boundary between turning and still layers. The interior faces of the
+    // cubies are never drawn, and the inside of a cube larger than 3x3 is
+    // hollow, so without the caps a turn would open a hole in the cube.
+    private int putTurnCaps(Turn move, Pose pose) {
+        int count = 0;
+        if (move.getFirstLayer() > 0) {
+            count = putTurnCap(pose, count, move.getAxis(), move.getFirstLayer(), -1);
+            count = putTurnCap(pose, count, move.getAxis(), move.getFirstLayer() - 1, 1);
+        }
+        if (move.getLastLayer() < size - 1) {
+            count = putTurnCap(pose, count, move.getAxis(), move.getLastLayer(), 1);
+            count = putTurnCap(pose, count, move.getAxis(), move.getLastLayer() + 1, -1);
+        }
+        return count;
+    }
+
+    // The face of the layer that points along the axis with the sign
+    private int putTurnCap(Pose pose, int index, Axis axis, int layer, int sign) {
+        Cubie.getLayerModel(size, axis, layer, pose.capModels, index * 16);
+        switch (axis) {
+        case X:
+            pose.capFaces[index] = sign > 0 ? Renderer.CubeFace.RIGHT : Renderer.CubeFace.LEFT;
             break;
-        case BACK_C:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.1f, -1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.Z, -0.1f, 1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.X, -0.1f, 1.f);
-            } else {
-                continueTurn(Axis.Z, 0.1f, -1.f);
-            }
+        case Y:
+            pose.capFaces[index] = sign > 0 ? Renderer.CubeFace.TOP : Renderer.CubeFace.BOTTOM;
             break;
-        case BACK_CC:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.1f, 1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.Z, -0.1f, -1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.X, -0.1f, -1.f);
-            } else {
-                continueTurn(Axis.Z, 0.1f, 1.f);
-            }
+        case Z:
+            pose.capFaces[index] = sign > 0 ? Renderer.CubeFace.FRONT : Renderer.CubeFace.BACK;
             break;
-        case MIDDLE_C:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.f, 1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.f, 1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.f, -1.f);
-            } else {
-                continueTurn(Axis.X, 0.f, -1.f);
-            }
-            break;
-        case MIDDLE_CC:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.f, -1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.f, -1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.f, 1.f);
-            } else {
-                continueTurn(Axis.X, 0.f, 1.f);
+        }
+        return index + 1;
+    }
+
+    // A failed recording stops, rather than the game
+    private void record(Turn move) {
+        try {
+            if (recorder.isSnapshotDue()) {
+                recorder.recordSnapshot(saveSnapshot());
             }
-            break;
-        case SLICE_C:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.f, 1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.f, -1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.f, -1.f);
-            } else {
-                continueTurn(Axis.Z, 0.f, 1.f);
+            recorder.recordMove(move);
+        } catch (IOException e) {
+            System.err.println("Recording stopped: " + e.getMessage());
+            recorder = null;
+        }
+    }
+
+    private void recordCamera(Renderer renderer) {
+        try {
+            recorder.recordCamera(renderer.getCameraAngleX(), renderer.getCameraAngleY());
+        } catch (IOException e) {
+            System.err.println("Recording stopped: " + e.getMessage());
+            recorder = null;
+        }
+    }
+
+    // Queues the replayed moves that are due by the replay clock, which runs
+    // replaySpeed times as fast as the game's
+    private void advanceReplay(Renderer renderer, double deltaTime) {
+        if (replaySpeed == 0) {
+            replay = null;
+            return;
+        }
+        replayTime += (long) (deltaTime * replaySpeed * 1e9);
+        while (replay.hasNext() && replay.getNextTime() <= replayTime) {
+            replay.next();
+            switch (replay.getType()) {
+            case MOVE:
+                moveQueue.add(replay.getMove());
+                break;
+            case CAMERA:
+                renderer.setCameraAngles(replay.getCameraX(), replay.getCameraY());
+                break;
+            case SNAPSHOT:
+                break;
             }
-            break;
-        case SLICE_CC:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.f, -1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.Z, 0.f, 1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.X, 0.f, 1.f);
-            } else {
-                continueTurn(Axis.Z, 0.f, -1.f);
+        }
+        if (!replay.hasNext()) {
+            replay = null;
+        }
+    }
+
+    private void startMove(Turn move) {
+        if (recorder != null) {
+            record(move);
+        }
+        currentMove = move;
+        turnElapsed = 0.0;
+        turnAngle = 0.0;
+        collectTurningCubies(move);
+        // The caps of the turn are sent with the cubies
+        poseVersion++;
+        isPoseStale = true;
+        moveStartTime = System.nanoTime();
+        moveFrameCount = 0;
+        moveEvent = new MoveLockedEvent();
+        moveEvent.begin();
+
+        final MoveDequeuedEvent event = new MoveDequeuedEvent();
+        if (event.shouldCommit()) {
+            event.notation = move.getNotation();
+            event.axis = move.getAxis().name();
+            event.firstLayer = move.getFirstLayer();
+            event.lastLayer = move.getLastLayer();
+            event.direction = move.getDirection();
+            event.queueDepth = moveQueue.size();
+            event.commit();
+        }
+    }
+
+    private void finishMove(Renderer renderer) {
+        final Turn move = currentMove;
+        commitTurningCubies(move);
+        currentMove = null;
+
+        renderer.getMetrics().recordMove(System.nanoTime() - moveStartTime);
+        moveEvent.end();
+        if (moveEvent.shouldCommit()) {
+            moveEvent.notation = move.getNotation();
+            moveEvent.axis = move.getAxis().name();
+            moveEvent.firstLayer = move.getFirstLayer();
+            moveEvent.lastLayer = move.getLastLayer();
+            moveEvent.direction = move.getDirection();
+            moveEvent.frames = moveFrameCount;
+            moveEvent.commit();
+        }
+    }
+
+    // Applies the backlog without animation, leaving only the last few moves
+    // to play out
+    private void fastForward(Renderer renderer) {
+        if (currentMove != null) {
+            finishMove(renderer);
+        }
+        while (moveQueue.size() > fastForwardTail) {
+            startMove(moveQueue.remove());
+            finishMove(renderer);
+        }
+    }
+
+    // With a layer depth typed first, a face key turns the single layer that
+    // deep counted from that face. Returns null for M, E and S on a 2x2.
+    private Turn toTurn(MoveType move) {
+        if (layerDepth > 1 && !move.isRotation() && move.getLayer() != 0) {
+            final int layer = move.getLayer() > 0 ? size - layerDepth : layerDepth - 1;
+            return new Turn(size, move.getAxis(), layer, layer, move.getDirection());
+        }
+        if (size == 2 && !move.isRotation() && move.getLayer() == 0) {
+            return null;
+        }
+        return Turn.of(move, size);
+    }
+
+    // Keys name moves relative to the camera; the queue holds world moves. A
+    // move key turns clockwise, counter-clockwise with Shift held and a half
+    // turn with Control held. MoveType has no half slice turns or half
+    // rotations, so for those half is null and the half turn is made from
+    // the clockwise one.
+    private void enqueue(Renderer renderer, MoveType clockwise, MoveType counterClockwise, MoveType half) {
+        Turn turn;
+        if (isLeftControlHeld && half == null) {
+            turn = toTurn(clockwise);
+            if (turn != null) {
+                turn = new Turn(size, turn.getAxis(), turn.getFirstLayer(), turn.getLastLayer(), 2);
             }
-            break;
-        case EQUATOR_C:
-            continueTurn(Axis.Y, 0.f, 1.f);
-            break;
-        case EQUATOR_CC:
-            continueTurn(Axis.Y, 0.f, -1.f);
-            break;
-        case X_ROTATION_C:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.Z, Float.NaN, -1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.X, Float.NaN, -1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.Z, Float.NaN, 1.f);
-            } else {
-                continueTurn(Axis.X, Float.NaN, 1.f);
+        } else if (isLeftControlHeld) {
+            turn = toTurn(half);
+        } else if (isLeftShiftHeld) {
+            turn = toTurn(counterClockwise);
+        } else {
+            turn = toTurn(clockwise);
+        }
+        if (turn != null) {
+            moveQueue.add(turn.fromCameraAngle(renderer.getCameraAngleY()));
+        }
+    }
+
+    // A 3x3 goes to a uniformly random state, with a scramble from the pool
+    // when one is ready and 30 random face turns otherwise. Bigger cubes get
+    // more random single-layer turns, inner layers included.
+    private void scramble() {
+        final List<MoveType> scramble = scramblePool == null ? null : scramblePool.poll();
+        int moveCount = size == 3 ? 30 : Math.max(30, 20 * (size - 2));
+        if (scramble != null) {
+            moveCount = scramble.size();
+            for (MoveType move : scramble) {
+                moveQueue.add(Turn.of(move, size));
             }
-            break;
-        case X_ROTATION_CC:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.Z, Float.NaN, 1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.X, Float.NaN, 1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.Z, Float.NaN, -1.f);
-            } else {
-                continueTurn(Axis.X, Float.NaN, -1.f);
+        } else if (size == 3) {
+            for (int i = 0; i < moveCount; i++) {
+                moveQueue.add(Turn.of(MoveType.values()[random.nextInt(MoveType.UP_C.ordinal(),
+                                                                       MoveType.BACK_CC.ordinal() + 1)], size));
             }
-            break;
-        case Z_ROTATION_C:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.X, Float.NaN, 1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.Z, Float.NaN, -1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.X, Float.NaN, -1.f);
-            } else {
-                continueTurn(Axis.Z, Float.NaN, 1.f);
+        } else {
+            for (int i = 0; i < moveCount; i++) {
+                final int layer = random.nextInt(size);
+                moveQueue.add(new Turn(size, Axis.values()[random.nextInt(3)], layer, layer,
+                                       random.nextBoolean() ? 1 : -1));
             }
-            break;
-        case Z_ROTATION_CC:
-            if (angleSin > inverseSquareRoot2) {
-                continueTurn(Axis.X, Float.NaN, -1.f);
-            } else if (angleCos > inverseSquareRoot2) {
-                continueTurn(Axis.Z, Float.NaN, 1.f);
-            } else if (angleSin < -inverseSquareRoot2) {
-                continueTurn(Axis.X, Float.NaN, 1.f);
-            } else {
-                continueTurn(Axis.Z, Float.NaN, -1.f);
+        }
+        final ScrambleEvent event = new ScrambleEvent();
+        if (event.shouldCommit()) {
+            event.moveCount = moveCount;
+            event.queueDepth = moveQueue.size();
+            event.commit();
+        }
+    }
+
+    // Solves the state the cube will be in once every queued move has played,
+    // off the game thread. A solve asked for while one is running is ignored.
+    private void solve() {
+        if (size != 3) {
+            System.err.println("Only a 3x3 cube can be solved.");
+            return;
+        }
+        if (pendingSolve != null) {
+            return;
+        }
+        if (solver == null) {
+            solver = new TwoPhaseSolver();
+        }
+        final PendingSolve solve = new PendingSolve(getTargetStickers());
+        final Thread thread = new Thread(() -> {
+            solve.event.begin();
+            try {
+                solve.solution = solutions.solve(solve.target, solver);
+            } catch (RuntimeException e) {
+                System.err.println("Solve failed: " + e.getMessage());
             }
-            break;
-        default:
-            break;
+            solve.event.end();
+            solve.isDone = true;
+        }, "Solver");
+        thread.setDaemon(true);
+        pendingSolve = solve;
+        thread.start();
+    }
+
+    private void finishSolve() {
+        final PendingSolve solve = pendingSolve;
+        pendingSolve = null;
+        if (solve.solution == null || !solve.target.equals(getTargetStickers())) {
+            return;
+        }
+        if (solve.event.shouldCommit()) {
+            solve.event.solutionLength = solve.solution.size();
+            solve.event.queueDepth = moveQueue.size();
+            solve.event.commit();
+        }
+        for (MoveType move : solve.solution) {
+            moveQueue.add(Turn.of(move, size));
         }
     }
 
-    private void scramble() {
-        for (int i = 0; i < 30; i++) {
-            moveQueue.add(MoveType.values()[random.nextInt(1, 12)]);
+    // Package-private methods
+
+    // The committed state, for session snapshots: the stickers, then the
+    // layers and orientation of each cubie in turn
+    byte[] saveSnapshot() {
+        final byte[] stickerBytes = stickers.toBytes();
+        final byte[] state = new byte[stickerBytes.length + 4 * cube.length];
+        System.arraycopy(stickerBytes, 0, state, 0, stickerBytes.length);
+        int i = stickerBytes.length;
+        for (Cubie cubie : cube) {
+            state[i++] = (byte) cubie.getX();
+            state[i++] = (byte) cubie.getY();
+            state[i++] = (byte) cubie.getZ();
+            state[i++] = (byte) cubie.getOrientation();
+        }
+        return state;
+    }
+
+    // Drops anything playing or queued and puts the cube in a saved state
+    void restoreSnapshot(byte[] state) {
+        final int stickerCount = StickerCube.FACE_COUNT * size * size;
+        if (state.length != stickerCount + 4 * cube.length) {
+            throw new IllegalArgumentException("Snapshot of " + state.length + " bytes is not for size " + size);
+        }
+        currentMove = null;
+        moveQueue.clear();
+        turningCubies.clear();
+        stickers = StickerCube.fromBytes(size, state, 0);
+        int i = stickerCount;
+        for (Cubie cubie : cube) {
+            layers.remove(cubie);
+            cubie.setPose(state[i], state[i + 1], state[i + 2], state[i + 3]);
+            layers.add(cubie);
+            i += 4;
         }
+        poseVersion++;
+        publishPose();
     }
 
     // Public methods
 
     public PuzzleCubeGame() {
+        this(DEFAULT_SIZE);
+    }
+
+    public PuzzleCubeGame(int size) {
+        if (size < MIN_SIZE || size > MAX_SIZE) {
+            throw new IllegalArgumentException("Cube size must be from " + MIN_SIZE + " to " + MAX_SIZE + ": "
+                                               + size);
+        }
+        this.size = size;
         isCameraMode = false;
-        currentMove = MoveType.NO_MOVE;
-        moveQueue = new LinkedList<MoveType>();
-        random = new Random();
-        isFirstMove = false;
+        layerDepth = 0;
+        moveQueue = new MoveQueue();
+        random = new SplittableRandom();
+        turnDuration = 1.0 / DEFAULT_TURNS_PER_SECOND;
+        fastForwardDepth = DEFAULT_FAST_FORWARD_DEPTH;
+        fastForwardTail = DEFAULT_FAST_FORWARD_TAIL;
         oldX = 0.f;
         oldY = 0.f;
         isLeftShiftHeld = false;
         isLeftControlHeld = false;
+        reset();
+    }
+
+    // Back to a solved cube with nothing queued
+    public void reset() {
+        currentMove = null;
+        moveQueue.clear();
+        turningCubies.clear();
+        stickers = new StickerCube(size);
+        cube = buildCube(size);
+        layers = new LayerIndex(0, size - 1);
+        for (Cubie cubie : cube) {
+            layers.add(cubie);
+        }
+        poseVersion++;
+        publishPose();
+    }
+
+    // Applies turns at once, without animation, for showing a given state
+    public void apply(Iterable<Turn> turns) {
+        if (isAnimating()) {
+            throw new IllegalStateException("Cannot apply turns while moves are playing");
+        }
+        for (Turn turn : turns) {
+            if (turn.getSize() != size) {
+                throw new IllegalArgumentException("Turn " + turn + " is for size " + turn.getSize()
+                                                   + ", not " + size);
+            }
+            if (recorder != null) {
+                record(turn);
+            }
+            collectTurningCubies(turn);
+            commitTurningCubies(turn);
+        }
+        if (isPoseStale) {
+            publishPose();
+        }
+    }
+
+    // Makes scrambles reproducible; call before the game is loaded
+    public void setSeed(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    // Records every move dequeued from now on, and camera changes; null
+    // stops recording. The log starts with a snapshot of the cube as it is,
+    // so even a session without moves can be replayed. Closing the recorder
+    // is up to the caller.
+    public void setRecorder(SessionRecorder recorder) throws IOException {
+        if (recorder != null && recorder.getSize() != size) {
+            throw new IllegalArgumentException("Recorder is for size " + recorder.getSize() + ", not " + size);
+        }
+        if (recorder != null && currentMove != null) {
+            throw new IllegalStateException("Cannot start recording while a move is playing");
+        }
+        if (recorder != null) {
+            recorder.recordSnapshot(saveSnapshot());
+        }
+        this.recorder = recorder;
+    }
+
+    // Plays a session from wherever its cursor is, at the given multiple of
+    // its recorded speed, ignoring the keyboard until it ends. Seek first to
+    // start part of the way in. A speed of 0 only shows the state and camera
+    // at the cursor.
+    public void setReplay(SessionReplay replay, double speed) {
+        if (replay.getSize() != size) {
+            throw new IllegalArgumentException("Session is for size " + replay.getSize() + ", not " + size);
+        }
+        if (!(speed >= 0)) {
+            throw new IllegalArgumentException("Replay speed must not be negative: " + speed);
+        }
+        this.replay = replay;
+        replaySpeed = speed;
+        replayTime = replay.getTime();
+    }
+
+    public boolean isReplaying() {
+        return replay != null;
+    }
+
+    public static Renderer.FaceColor getFaceColor(int face) {
+        return faceColors[face];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // A copy of the sticker state, including moves still playing or queued
+    public StickerCube getTargetStickers() {
+        final StickerCube target = stickers.copy();
+        if (currentMove != null) {
+            target.apply(currentMove);
+        }
+        target.apply(moveQueue);
+        return target;
+    }
 
-        cube = new Cubie[] {
-            // Top
-            new Cubie(-0.1f, 0.1f, -0.1f, Renderer.FaceColor.WHITE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLUE, Renderer.FaceColor.ORANGE,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.f, 0.1f, -0.1f, Renderer.FaceColor.WHITE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLUE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.1f, 0.1f, -0.1f, Renderer.FaceColor.WHITE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLUE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.RED, Renderer.FaceColor.BLACK),
-            new Cubie(-0.1f, 0.1f, 0.f, Renderer.FaceColor.WHITE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.ORANGE,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.f, 0.1f, 0.f, Renderer.FaceColor.WHITE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.1f, 0.1f, 0.f, Renderer.FaceColor.WHITE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.RED, Renderer.FaceColor.BLACK),
-            new Cubie(-0.1f, 0.1f, 0.1f, Renderer.FaceColor.WHITE, Renderer.FaceColor.GREEN,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.ORANGE,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.f, 0.1f, 0.1f, Renderer.FaceColor.WHITE, Renderer.FaceColor.GREEN,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.1f, 0.1f, 0.1f, Renderer.FaceColor.WHITE, Renderer.FaceColor.GREEN,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.RED, Renderer.FaceColor.BLACK),
-
-            // Middle
-            new Cubie(-0.1f, 0.f, -0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLUE, Renderer.FaceColor.ORANGE,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.f, 0.f, -0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLUE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.1f, 0.f, -0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLUE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.RED, Renderer.FaceColor.BLACK),
-            new Cubie(-0.1f, 0.f, 0.f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.ORANGE,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.f, 0.f, 0.f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.1f, 0.f, 0.f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.RED, Renderer.FaceColor.BLACK),
-            new Cubie(-0.1f, 0.f, 0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.GREEN,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.ORANGE,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.f, 0.f, 0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.GREEN,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK),
-            new Cubie(0.1f, 0.f, 0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.GREEN,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.RED, Renderer.FaceColor.BLACK),
-
-            // Bottom
-            new Cubie(-0.1f, -0.1f, -0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLUE, Renderer.FaceColor.ORANGE,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.YELLOW),
-            new Cubie(0.f, -0.1f, -0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLUE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.YELLOW),
-            new Cubie(0.1f, -0.1f, -0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLUE, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.RED, Renderer.FaceColor.YELLOW),
-            new Cubie(-0.1f, -0.1f, 0.f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.ORANGE,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.YELLOW),
-            new Cubie(0.f, -0.1f, 0.f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.YELLOW),
-            new Cubie(0.1f, -0.1f, 0.f, Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.RED, Renderer.FaceColor.YELLOW),
-            new Cubie(-0.1f, -0.1f, 0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.GREEN,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.ORANGE,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.YELLOW),
-            new Cubie(0.f, -0.1f, 0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.GREEN,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.YELLOW),
-            new Cubie(0.1f, -0.1f, 0.1f, Renderer.FaceColor.BLACK, Renderer.FaceColor.GREEN,
-                      Renderer.FaceColor.BLACK, Renderer.FaceColor.BLACK,
-                      Renderer.FaceColor.RED, Renderer.FaceColor.YELLOW),
-        };
+    public boolean isSolved() {
+        return stickers.isSolved();
     }
 
     public void load(Renderer renderer) {
         renderer.setBackgroundColor(0.25f, 0.25f, 0.25f, 1.f);
+        if (replay != null) {
+            renderer.setCameraAngles(replay.getCameraX(), replay.getCameraY());
+        }
+
+        // Random-state scrambles are made on the cores the game leaves idle
+        if (size == 3 && scramblePool == null) {
+            scramblePool = new ScramblePool(ScramblePool.DEFAULT_CAPACITY,
+                                            Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                                            random.nextLong());
+            scramblePool.start();
+        }
+
+        // Build the solver tables and compile the search in the background so
+        // the first solve is fast
+        final Thread solverWarmup = new Thread(() -> {
+            TwoPhaseSolver.warmUp();
+            System.err.println("Solver tables: " + TwoPhaseSolver.getTableMemoryBytes() / 1024
+                               + " KiB");
+        });
+        solverWarmup.setDaemon(true);
+        solverWarmup.start();
 
         // Print help information
         System.out.println();
@@ -503,25 +655,114 @@ public class PuzzleCubeGame implements Game {
         System.out.println("E     : Turn middle layer around y-axis");
         System.out.println("X     : Rotate around x-axis");
         System.out.println("Z     : Rotate around z-axis");
+        System.out.println("0-9   : Type a layer depth for the next face turn");
         System.out.println("Enter : Scramble cube");
+        System.out.println("Space : Solve cube (3x3 only)");
         System.out.println();
         System.out.println("By default, turns and rotations are clockwise. Hold left shift to turn/rotate");
         System.out.println("counter-clockwise. Hold left control to turn/rotate halfwise.");
         System.out.println();
+        System.out.println("Typing a layer depth before a face key turns that inner layer instead, counted");
+        System.out.println("from the face: 2 R turns the layer next to R and 1 2 U the twelfth layer from U.");
+        if (size % 2 == 0) {
+            System.out.println("On even cubes, M, S and E turn all of the inner layers together.");
+        }
+        System.out.println();
         System.out.println("Hold down the left mouse button and move the mouse to move the camera.");
     }
 
+    // Turns advance by elapsed time rather than by frame. Time left over when
+    // a turn finishes goes to the next queued move, so several short turns
+    // can finish within one frame.
     public void update(Renderer renderer, double deltaTime) {
-        if (currentMove == MoveType.NO_MOVE && !moveQueue.isEmpty()) {
-            currentMove = moveQueue.remove();
-            isFirstMove = true;
+        if (replay != null) {
+            advanceReplay(renderer, deltaTime);
+        }
+        if (recorder != null) {
+            recordCamera(renderer);
+        }
+        if (pendingSolve != null && pendingSolve.isDone) {
+            finishSolve();
+        }
+        if (fastForwardDepth > 0 && moveQueue.size() > fastForwardDepth) {
+            fastForward(renderer);
+        }
+        double remainingTime = deltaTime;
+        while (currentMove != null || !moveQueue.isEmpty()) {
+            if (currentMove == null) {
+                startMove(moveQueue.remove());
+            }
+            moveFrameCount++;
+            final double duration = getTurnDuration(currentMove);
+            final double step = Math.min(remainingTime, duration - turnElapsed);
+            turnElapsed += step;
+            remainingTime -= step;
+            if (turnElapsed < duration) {
+                turnAngle = getTurnAngle(currentMove) * turnElapsed / duration;
+                isPoseStale = true;
+                break;
+            }
+            finishMove(renderer);
+        }
+        if (isPoseStale) {
+            publishPose();
+        }
+
+        final int queueDepth = moveQueue.size();
+        renderer.getMetrics().recordQueueDepth(queueDepth);
+        if (queueDepth != lastQueueDepth) {
+            lastQueueDepth = queueDepth;
+            final QueueDepthEvent event = new QueueDepthEvent();
+            if (event.shouldCommit()) {
+                event.depth = queueDepth;
+                event.commit();
+            }
+        }
+    }
+
+    // Quarter turns per second when moves are queued back to back; half
+    // turns take one and a half times as long.
+    public void setTurnsPerSecond(double turnsPerSecond) {
+        if (!(turnsPerSecond > 0)) {
+            throw new IllegalArgumentException("Turns per second must be positive: " + turnsPerSecond);
+        }
+        turnDuration = 1.0 / turnsPerSecond;
+    }
+
+    public double getTurnsPerSecond() {
+        return 1.0 / turnDuration;
+    }
+
+    // Once more than depth moves are queued, all but the last tail moves are
+    // applied at once. A depth of 0 turns fast-forward off.
+    public void setFastForward(int depth, int tail) {
+        if (depth < 0 || tail < 0 || (depth > 0 && tail > depth)) {
+            throw new IllegalArgumentException("Invalid fast-forward depth " + depth + " and tail " + tail);
         }
-        continueMove(renderer, currentMove);
+        fastForwardDepth = depth;
+        fastForwardTail = tail;
     }
 
+    public boolean isAnimating() {
+        return currentMove != null || !moveQueue.isEmpty();
+    }
+
+    // Draws the pose last published by update(), which may be running on a
+    // simulation thread of its own. The renderer keeps the cubes of a pose
+    // version, so they are only sent again when a turn starts or commits.
     public void draw(Renderer renderer) {
-        for (Cubie cubie : cube) {
-            cubie.draw(renderer);
+        poses.update();
+        final Pose pose = poses.getFrontBuffer();
+        if (!renderer.keepCubes(pose.cubies, pose.version)) {
+            for (int i = 0; i < pose.cubies.length; i++) {
+                pose.cubies[i].draw(renderer, pose.models, i * 16);
+            }
+            for (int i = 0; i < pose.capCount; i++) {
+                renderer.drawCubeFace(pose.capModels, i * 16, pose.capFaces[i], Renderer.FaceColor.BLACK);
+            }
+        }
+        if (pose.turnAxis != null) {
+            renderer.setTurn(pose.turnAxis, pose.turnMin, pose.turnMax, pose.turnAngle);
         }
         renderer.setColor(1.f, 1.f, 1.f, 1.f);
         if (Math.pow(Math.sin(renderer.getCameraAngleY() * Math.PI / 180.0), 2.0) < 0.5) {
@@ -532,127 +773,69 @@ public class PuzzleCubeGame implements Game {
     }
 
     public void keyPressed(Renderer renderer, int key) {
+        if (replay != null) {
+            return;
+        }
         switch (key) {
+        case GLFW_KEY_0:
+        case GLFW_KEY_1:
+        case GLFW_KEY_2:
+        case GLFW_KEY_3:
+        case GLFW_KEY_4:
+        case GLFW_KEY_5:
+        case GLFW_KEY_6:
+        case GLFW_KEY_7:
+        case GLFW_KEY_8:
+        case GLFW_KEY_9:
+            layerDepth = Math.min(layerDepth * 10 + key - GLFW_KEY_0, size);
+            return;
         case GLFW_KEY_U:
-            if (isLeftControlHeld) {
-                moveQueue.add(MoveType.UP_C);
-                moveQueue.add(MoveType.UP_C);
-            } else if (isLeftShiftHeld) {
-                moveQueue.add(MoveType.UP_CC);
-            } else {
-                moveQueue.add(MoveType.UP_C);
-            }
+            enqueue(renderer, MoveType.UP_C, MoveType.UP_CC, MoveType.UP_2);
             break;
         case GLFW_KEY_D:
-            if (isLeftControlHeld) {
-                moveQueue.add(MoveType.DOWN_C);
-                moveQueue.add(MoveType.DOWN_C);
-            } else if (isLeftShiftHeld) {
-                moveQueue.add(MoveType.DOWN_CC);
-            } else {
-                moveQueue.add(MoveType.DOWN_C);
-            }
+            enqueue(renderer, MoveType.DOWN_C, MoveType.DOWN_CC, MoveType.DOWN_2);
             break;
         case GLFW_KEY_R:
-            if (isLeftControlHeld) {
-                moveQueue.add(MoveType.RIGHT_C);
-                moveQueue.add(MoveType.RIGHT_C);
-            } else if (isLeftShiftHeld) {
-                moveQueue.add(MoveType.RIGHT_CC);
-            } else {
-                moveQueue.add(MoveType.RIGHT_C);
-            }
+            enqueue(renderer, MoveType.RIGHT_C, MoveType.RIGHT_CC, MoveType.RIGHT_2);
             break;
         case GLFW_KEY_L:
-            if (isLeftControlHeld) {
-                moveQueue.add(MoveType.LEFT_C);
-                moveQueue.add(MoveType.LEFT_C);
-            } else if (isLeftShiftHeld) {
-                moveQueue.add(MoveType.LEFT_CC);
-            } else {
-                moveQueue.add(MoveType.LEFT_C);
-            }
+            enqueue(renderer, MoveType.LEFT_C, MoveType.LEFT_CC, MoveType.LEFT_2);
             break;
         case GLFW_KEY_F:
-            if (isLeftControlHeld) {
-                moveQueue.add(MoveType.FRONT_C);
-                moveQueue.add(MoveType.FRONT_C);
-            } else if (isLeftShiftHeld) {
-                moveQueue.add(MoveType.FRONT_CC);
-            } else {
-                moveQueue.add(MoveType.FRONT_C);
-            }
+            enqueue(renderer, MoveType.FRONT_C, MoveType.FRONT_CC, MoveType.FRONT_2);
             break;
         case GLFW_KEY_B:
-            if (isLeftControlHeld) {
-                moveQueue.add(MoveType.BACK_C);
-                moveQueue.add(MoveType.BACK_C);
-            } else if (isLeftShiftHeld) {
-                moveQueue.add(MoveType.BACK_CC);
-            } else {
-                moveQueue.add(MoveType.BACK_C);
-            }
+            enqueue(renderer, MoveType.BACK_C, MoveType.BACK_CC, MoveType.BACK_2);
             break;
         case GLFW_KEY_M:
-            if (isLeftControlHeld) {
-                moveQueue.add(MoveType.MIDDLE_C);
-                moveQueue.add(MoveType.MIDDLE_C);
-            } else if (isLeftShiftHeld) {
-                moveQueue.add(MoveType.MIDDLE_CC);
-            } else {
-                moveQueue.add(MoveType.MIDDLE_C);
-            }
+            enqueue(renderer, MoveType.MIDDLE_C, MoveType.MIDDLE_CC, null);
             break;
         case GLFW_KEY_S:
-            if (isLeftControlHeld) {
-                moveQueue.add(MoveType.SLICE_C);
-                moveQueue.add(MoveType.SLICE_C);
-            } else if (isLeftShiftHeld) {
-                moveQueue.add(MoveType.SLICE_CC);
-            } else {
-                moveQueue.add(MoveType.SLICE_C);
-            }
+            enqueue(renderer, MoveType.SLICE_C, MoveType.SLICE_CC, null);
             break;
         case GLFW_KEY_E:
-            if (isLeftControlHeld) {
-                moveQueue.add(MoveType.EQUATOR_C);
-                moveQueue.add(MoveType.EQUATOR_C);
-            } else if (isLeftShiftHeld) {
-                moveQueue.add(MoveType.EQUATOR_CC);
-            } else {
-                moveQueue.add(MoveType.EQUATOR_C);
-            }
+            enqueue(renderer, MoveType.EQUATOR_C, MoveType.EQUATOR_CC, null);
             break;
         case GLFW_KEY_X:
-            if (isLeftControlHeld) {
-                moveQueue.add(MoveType.X_ROTATION_C);
-                moveQueue.add(MoveType.X_ROTATION_C);
-            } else if (isLeftShiftHeld) {
-                moveQueue.add(MoveType.X_ROTATION_CC);
-            } else {
-                moveQueue.add(MoveType.X_ROTATION_C);
-            }
+            enqueue(renderer, MoveType.X_ROTATION_C, MoveType.X_ROTATION_CC, null);
             break;
         case GLFW_KEY_Z:
-            if (isLeftControlHeld) {
-                moveQueue.add(MoveType.Z_ROTATION_C);
-                moveQueue.add(MoveType.Z_ROTATION_C);
-            } else if (isLeftShiftHeld) {
-                moveQueue.add(MoveType.Z_ROTATION_CC);
-            } else {
-                moveQueue.add(MoveType.Z_ROTATION_C);
-            }
+            enqueue(renderer, MoveType.Z_ROTATION_C, MoveType.Z_ROTATION_CC, null);
             break;
         case GLFW_KEY_ENTER:
             scramble();
             break;
+        case GLFW_KEY_SPACE:
+            solve();
+            break;
         case GLFW_KEY_LEFT_SHIFT:
             isLeftShiftHeld = true;
-            break;
+            return;
         case GLFW_KEY_LEFT_CONTROL:
             isLeftControlHeld = true;
-            break;
+            return;
         }
+        layerDepth = 0;
     }
 
     public void keyReleased(Renderer renderer, int key) {
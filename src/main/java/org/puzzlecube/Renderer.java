@@ -30,6 +30,14 @@ import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL33C.*;
 import static org.lwjgl.system.MemoryUtil.*;
 
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
 public class Renderer {
 
     // Public local types
@@ -44,15 +52,99 @@ public class Renderer {
         YELLOW;
     }
 
+    // Faces of a cube, in the order of cubeTriangles
+    public enum CubeFace {
+        TOP,
+        FRONT,
+        BACK,
+        LEFT,
+        RIGHT,
+        BOTTOM;
+    }
+
     // Private fields
 
     private final String windowTitle;
     private final Game game;
+    private final FrameMetrics metrics = new FrameMetrics();
+    private MetricsReporter metricsReporter;
+
+    private static final float[][] faceColorValues = {
+        {0.f, 0.f, 0.f, 1.f},
+        {1.f, 1.f, 1.f, 1.f},
+        {0.5f, 0.f, 0.f, 1.f},
+        {0.75f, 0.5f, 0.f, 1.f},
+        {0.f, 0.f, 0.5f, 1.f},
+        {0.f, 0.75f, 0.f, 1.f},
+        {0.75f, 0.75f, 0.f, 1.f}
+    };
+
+    // Corner indices of the unit cube, two triangles per face, in the face
+    // order top, front, back, left, right, bottom. Each triangle winds
+    // counter-clockwise seen from outside the cube.
+    private static final int[] cubeTriangles = {
+        3, 1, 0, 3, 2, 1,
+        7, 2, 3, 7, 6, 2,
+        4, 0, 1, 4, 1, 5,
+        7, 3, 0, 7, 0, 4,
+        6, 1, 2, 6, 5, 1,
+        7, 4, 5, 7, 5, 6
+    };
+
+    private final int floatsPerVertex = 7;
+    private final int bytesPerFaceInstance = 17 * 4;
+
+    private static final int inputQueueCapacity = 1024;
+    private static final long maxTickLagNanos = 250_000_000L;
 
     private long window;
+    private int framebuffer, colorRenderbuffer, depthRenderbuffer;
+    private ByteBuffer pixels;
     private int shaderProgram, positionLocation, colorLocation, projectionLocation, viewLocation;
+    private int cubeProgram, cubeProjectionLocation, cubeViewLocation, paletteLocation;
+    private int turnAxisLocation, turnRangeLocation, turnAngleLocation;
+    private int vao, vbo, vboCapacity;
+    private int cubeVao, instanceVbo, instanceVboCapacity;
+    private FloatBuffer triangleVertices, lineVertices;
+    private ByteBuffer cubeInstances;
     private boolean isRunning;
-    private double cameraAngleX, cameraAngleY;
+
+    // Cube instances stay in instanceVbo from frame to frame while the game
+    // shows the same committed pose; a turn in progress is applied by the
+    // cube shader from the turn uniforms
+    private Object keptCubes, pendingCubes;
+    private long keptVersion, pendingVersion;
+    private int keptFaceCount;
+    private boolean isKeepingCubes;
+    private Axis turnAxis;
+    private float turnMin, turnMax, turnRadians;
+
+    // What the renderer last set in GL, so that calls which would change
+    // nothing are skipped and counted as elided; -1, NaN and capabilities
+    // missing from the map are unknown. Uniform values are kept per
+    // program, by location.
+    private int boundProgram, boundVertexArray, boundArrayBuffer;
+    private final Map<Integer, Boolean> capabilities = new HashMap<Integer, Boolean>();
+    private final float[] clearColor = new float[4];
+    private final Map<Integer, float[][]> uniformValues = new HashMap<Integer, float[][]>();
+    private float[][] programUniforms;
+    private final float[][] uniformScratch = {new float[1], new float[2], new float[3]};
+
+    // With a tick rate, the game is updated on a simulation thread and the
+    // GLFW callbacks reach it through the input queue
+    private double tickRate;
+    private InputQueue inputQueue;
+    private Thread simulationThread;
+    private volatile boolean isSimulating;
+    private volatile Throwable simulationError;
+
+    // The camera and cursor may be changed from the simulation thread; the
+    // changes reach GL and GLFW on the render thread before the next frame
+    private volatile double cameraAngleX, cameraAngleY;
+    private volatile boolean isCameraChanged;
+    private volatile int cursorMode = GLFW_CURSOR_NORMAL;
+    private int windowCursorMode = GLFW_CURSOR_NORMAL;
+    private float colorR, colorG, colorB, colorA;
     private float backgroundR, backgroundG, backgroundB, backgroundA;
 
     // Public fields
@@ -69,18 +161,421 @@ public class Renderer {
             float xcos = (float) Math.cos(cameraAngleXRadians);
             float ysin = (float) Math.sin(cameraAngleYRadians);
             float ycos = (float) Math.cos(cameraAngleYRadians);
-            glUseProgram(shaderProgram);
-            glUniformMatrix4fv(viewLocation, true, new float [] {
+            float[] view = {
                 ycos, 0, ysin, 0,
                 xsin * ysin, xcos, -xsin * ycos, 0,
                 -xcos * ysin, xsin, xcos * ycos, 0,
                 0, 0, 0, 1
-            });
+            };
+            useProgram(shaderProgram);
+            uploadMatrix(viewLocation, view);
+            useProgram(cubeProgram);
+            uploadMatrix(cubeViewLocation, view);
         } else {
             System.err.println("Cannot draw when the renderer is not running.");
         }
     }
 
+    private void applyCamera() {
+        if (isCameraChanged) {
+            isCameraChanged = false;
+            updateCamera();
+        }
+    }
+
+    private void applyCursorMode() {
+        final int mode = cursorMode;
+        if (mode != windowCursorMode) {
+            windowCursorMode = mode;
+            glfwSetInputMode(window, GLFW_CURSOR, mode);
+        }
+    }
+
+    private void dispatchInput(InputQueue.Type type, int code, double x, double y) {
+        switch (type) {
+        case KEY_PRESSED:
+            game.keyPressed(this, code);
+            break;
+        case KEY_RELEASED:
+            game.keyReleased(this, code);
+            break;
+        case MOUSE_BUTTON_PRESSED:
+            game.mouseButtonPressed(this, code);
+            break;
+        case MOUSE_BUTTON_RELEASED:
+            game.mouseButtonReleased(this, code);
+            break;
+        case CURSOR_MOVED:
+            game.cursorMoved(this, x, y);
+            break;
+        }
+    }
+
+    // Called from the GLFW callbacks on the render thread
+    private void handleInput(InputQueue.Type type, int code, double x, double y) {
+        if (inputQueue == null) {
+            dispatchInput(type, code, x, y);
+        } else if (!inputQueue.offer(type, code, x, y)) {
+            System.err.println("Input queue full, dropped " + type);
+        }
+    }
+
+    // Runs the game's updates at a fixed tick rate, each after the input
+    // events queued since the last one. A late tick runs at once; after
+    // falling more than maxTickLagNanos behind, the schedule restarts from
+    // now instead of running a burst of ticks to catch up.
+    private void simulate() {
+        final long tickNanos = Math.round(1e9 / tickRate);
+        final double tickSeconds = tickNanos / 1e9;
+        long nextTick = System.nanoTime();
+        try {
+            while (isSimulating) {
+                final long tickStart = System.nanoTime();
+                while (inputQueue.poll()) {
+                    dispatchInput(inputQueue.getType(), inputQueue.getCode(), inputQueue.getX(),
+                                  inputQueue.getY());
+                    metrics.recordInputLatency(System.nanoTime() - inputQueue.getTime());
+                }
+                game.update(this, tickSeconds);
+                final long tickEnd = System.nanoTime();
+                metrics.recordTick(tickEnd - tickStart);
+
+                nextTick += tickNanos;
+                if (tickEnd - nextTick > maxTickLagNanos) {
+                    nextTick = tickEnd;
+                }
+                long wait;
+                while (isSimulating && (wait = nextTick - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            // The render loop stops the game once it sees the error
+            System.err.println("Simulation thread failed: " + e);
+            simulationError = e;
+        }
+    }
+
+    private void startSimulation() {
+        inputQueue = new InputQueue(inputQueueCapacity);
+        simulationError = null;
+        isSimulating = true;
+        simulationThread = new Thread(this::simulate, "Simulation");
+        simulationThread.setDaemon(true);
+        simulationThread.start();
+    }
+
+    private void stopSimulation() {
+        if (simulationThread == null) {
+            return;
+        }
+        isSimulating = false;
+        LockSupport.unpark(simulationThread);
+        try {
+            simulationThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        simulationThread = null;
+        inputQueue = null;
+    }
+
+    // The per-frame GL calls go through these so FrameMetrics can count them
+    // and calls that change nothing are skipped
+
+    private void forgetGlState() {
+        boundProgram = -1;
+        boundVertexArray = -1;
+        boundArrayBuffer = -1;
+        Arrays.fill(clearColor, Float.NaN);
+        capabilities.clear();
+        uniformValues.clear();
+        programUniforms = null;
+    }
+
+    private void useProgram(int program) {
+        if (program == boundProgram) {
+            metrics.countElidedCall();
+            return;
+        }
+        glUseProgram(program);
+        boundProgram = program;
+        programUniforms = uniformValues.computeIfAbsent(program, key -> new float[8][]);
+        metrics.countStateChange();
+    }
+
+    private void bindVertexArray(int vertexArray) {
+        if (vertexArray == boundVertexArray) {
+            metrics.countElidedCall();
+            return;
+        }
+        glBindVertexArray(vertexArray);
+        boundVertexArray = vertexArray;
+        metrics.countStateChange();
+    }
+
+    private void enable(int capability, boolean isEnabled) {
+        if (Boolean.valueOf(isEnabled).equals(capabilities.get(capability))) {
+            metrics.countElidedCall();
+            return;
+        }
+        if (isEnabled) {
+            glEnable(capability);
+        } else {
+            glDisable(capability);
+        }
+        capabilities.put(capability, isEnabled);
+        metrics.countStateChange();
+    }
+
+    private void bindArrayBuffer(int buffer) {
+        if (buffer == boundArrayBuffer) {
+            metrics.countElidedCall();
+            return;
+        }
+        glBindBuffer(GL_ARRAY_BUFFER, buffer);
+        boundArrayBuffer = buffer;
+        metrics.countStateChange();
+    }
+
+    private void clearFrame() {
+        if (backgroundR != clearColor[0] || backgroundG != clearColor[1] || backgroundB != clearColor[2]
+            || backgroundA != clearColor[3]) {
+            glClearColor(backgroundR, backgroundG, backgroundB, backgroundA);
+            clearColor[0] = backgroundR;
+            clearColor[1] = backgroundG;
+            clearColor[2] = backgroundB;
+            clearColor[3] = backgroundA;
+            metrics.countStateChange();
+        } else {
+            metrics.countElidedCall();
+        }
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+    }
+
+    // Whether the uniform of the bound program already holds the values;
+    // if not, they are recorded as uploaded and the caller uploads them
+    private boolean isUniformCurrent(int location, float[] values) {
+        if (location < 0) {
+            return true;
+        }
+        if (location >= programUniforms.length) {
+            programUniforms = Arrays.copyOf(programUniforms, location + 8);
+            uniformValues.put(boundProgram, programUniforms);
+        }
+        final float[] current = programUniforms[location];
+        if (Arrays.equals(current, values)) {
+            metrics.countElidedCall();
+            return true;
+        }
+        if (current == null || current.length != values.length) {
+            programUniforms[location] = values.clone();
+        } else {
+            System.arraycopy(values, 0, current, 0, values.length);
+        }
+        metrics.countUniformUpload();
+        return false;
+    }
+
+    private void uploadUniform(int location, float x) {
+        final float[] values = uniformScratch[0];
+        values[0] = x;
+        if (!isUniformCurrent(location, values)) {
+            glUniform1f(location, x);
+        }
+    }
+
+    private void uploadUniform(int location, float x, float y) {
+        final float[] values = uniformScratch[1];
+        values[0] = x;
+        values[1] = y;
+        if (!isUniformCurrent(location, values)) {
+            glUniform2f(location, x, y);
+        }
+    }
+
+    private void uploadUniform(int location, float x, float y, float z) {
+        final float[] values = uniformScratch[2];
+        values[0] = x;
+        values[1] = y;
+        values[2] = z;
+        if (!isUniformCurrent(location, values)) {
+            glUniform3f(location, x, y, z);
+        }
+    }
+
+    private void allocateArrayBuffer(long size, int usage) {
+        glBufferData(GL_ARRAY_BUFFER, size, usage);
+        metrics.countBufferAllocation();
+    }
+
+    private void uploadMatrix(int location, float[] matrix) {
+        if (!isUniformCurrent(location, matrix)) {
+            glUniformMatrix4fv(location, true, matrix);
+        }
+    }
+
+    // Sends the frame's turn to the cube shader. With no turn only the angle
+    // needs to be zero.
+    private void uploadTurn() {
+        if (turnAxis == null) {
+            uploadUniform(turnAngleLocation, 0.f);
+            return;
+        }
+        uploadUniform(turnAxisLocation, turnAxis == Axis.X ? 1.f : 0.f, turnAxis == Axis.Y ? 1.f : 0.f,
+                      turnAxis == Axis.Z ? 1.f : 0.f);
+        uploadUniform(turnRangeLocation, turnMin, turnMax);
+        uploadUniform(turnAngleLocation, turnRadians);
+    }
+
+    private static int compileProgram(String vertexShaderSource, String fragmentShaderSource) {
+        final int vertexShader = glCreateShader(GL_VERTEX_SHADER);
+
+        glShaderSource(vertexShader, vertexShaderSource);
+        glCompileShader(vertexShader);
+
+        final int fragmentShader = glCreateShader(GL_FRAGMENT_SHADER);
+
+        glShaderSource(fragmentShader, fragmentShaderSource);
+        glCompileShader(fragmentShader);
+
+        final int program = glCreateProgram();
+        glAttachShader(program, vertexShader);
+        glAttachShader(program, fragmentShader);
+        glLinkProgram(program);
+
+        glDeleteShader(vertexShader);
+        glDeleteShader(fragmentShader);
+
+        return program;
+    }
+
+    // The unit cube mesh as GLSL constants: its corners, and the corner of
+    // each of the six vertices of each face
+    private static String createCubeMesh() {
+        final float[] cornerX = {-0.5f, 0.5f, 0.5f, -0.5f, -0.5f, 0.5f, 0.5f, -0.5f};
+        final float[] cornerY = {0.5f, 0.5f, 0.5f, 0.5f, -0.5f, -0.5f, -0.5f, -0.5f};
+        final float[] cornerZ = {-0.5f, -0.5f, 0.5f, 0.5f, -0.5f, -0.5f, 0.5f, 0.5f};
+
+        final StringBuilder mesh = new StringBuilder("const vec3 corners[8] = vec3[8](");
+        for (int corner = 0; corner < cornerX.length; corner++) {
+            mesh.append(corner == 0 ? "" : ", ").append("vec3(").append(cornerX[corner]).append(", ")
+                .append(cornerY[corner]).append(", ").append(cornerZ[corner]).append(")");
+        }
+        mesh.append(");const int faceCorners[").append(cubeTriangles.length).append("] = int[")
+            .append(cubeTriangles.length).append("](");
+        for (int i = 0; i < cubeTriangles.length; i++) {
+            mesh.append(i == 0 ? "" : ", ").append(cubeTriangles[i]);
+        }
+        return mesh.append(");").toString();
+    }
+
+    private void putFace(float[] models, int offset, CubeFace face, FaceColor color) {
+        if (cubeInstances.remaining() < bytesPerFaceInstance) {
+            cubeInstances = memRealloc(cubeInstances, cubeInstances.capacity() * 2);
+            metrics.countBufferAllocation();
+        }
+        for (int i = 0; i < 16; i++) {
+            cubeInstances.putFloat(models[offset + i]);
+        }
+        cubeInstances.putInt(face.ordinal() | color.ordinal() << 3);
+    }
+
+    private void putVisibleFace(float[] models, int offset, CubeFace face, FaceColor color) {
+        if (color != FaceColor.BLACK) {
+            putFace(models, offset, face, color);
+        }
+    }
+
+    private FloatBuffer putVertex(FloatBuffer vertices, float x, float y, float z) {
+        if (vertices.remaining() < floatsPerVertex) {
+            vertices = memRealloc(vertices, vertices.capacity() * 2);
+            metrics.countBufferAllocation();
+        }
+        vertices.put(x).put(y).put(z).put(colorR).put(colorG).put(colorB).put(colorA);
+        return vertices;
+    }
+
+    private void allocateBuffers() {
+        triangleVertices = memAllocFloat(1024 * floatsPerVertex);
+        lineVertices = memAllocFloat(16 * floatsPerVertex);
+        cubeInstances = memAlloc(32 * bytesPerFaceInstance);
+    }
+
+    private void freeBuffers() {
+        memFree(triangleVertices);
+        memFree(lineVertices);
+        memFree(cubeInstances);
+        triangleVertices = null;
+        lineVertices = null;
+        cubeInstances = null;
+    }
+
+    private void flush() {
+        final int faceCount;
+        if (isKeepingCubes) {
+            faceCount = keptFaceCount;
+        } else {
+            faceCount = cubeInstances.position() / bytesPerFaceInstance;
+            bindArrayBuffer(instanceVbo);
+            if (cubeInstances.position() > instanceVboCapacity) {
+                instanceVboCapacity = Math.max(cubeInstances.position(), instanceVboCapacity * 2);
+                allocateArrayBuffer(instanceVboCapacity, GL_STREAM_DRAW);
+            }
+            cubeInstances.flip();
+            glBufferSubData(GL_ARRAY_BUFFER, 0, cubeInstances);
+            cubeInstances.clear();
+            keptCubes = pendingCubes;
+            keptVersion = pendingVersion;
+            keptFaceCount = faceCount;
+        }
+
+        // Only the cube faces are culled: they are wound counter-clockwise
+        // seen from outside, which drawTriangle() does not ask of its callers.
+        // Culling is left on for frames without triangles, which are most.
+        useProgram(cubeProgram);
+        uploadTurn();
+        bindVertexArray(cubeVao);
+        enable(GL_CULL_FACE, true);
+        glDrawArraysInstanced(GL_TRIANGLES, 0, 6, faceCount);
+        metrics.countDrawCall();
+        resetCubes();
+
+        final int triangleFloats = triangleVertices.position();
+        final int lineFloats = lineVertices.position();
+        final int totalBytes = (triangleFloats + lineFloats) * Float.BYTES;
+
+        bindArrayBuffer(vbo);
+        if (totalBytes > vboCapacity) {
+            vboCapacity = Math.max(totalBytes, vboCapacity * 2);
+            allocateArrayBuffer(vboCapacity, GL_DYNAMIC_DRAW);
+        }
+
+        triangleVertices.flip();
+        lineVertices.flip();
+        glBufferSubData(GL_ARRAY_BUFFER, 0, triangleVertices);
+        glBufferSubData(GL_ARRAY_BUFFER, (long) triangleFloats * Float.BYTES, lineVertices);
+
+        useProgram(shaderProgram);
+        bindVertexArray(vao);
+        if (triangleFloats > 0) {
+            enable(GL_CULL_FACE, false);
+        }
+        glDrawArrays(GL_TRIANGLES, 0, triangleFloats / floatsPerVertex);
+        glDrawArrays(GL_LINES, triangleFloats / floatsPerVertex, lineFloats / floatsPerVertex);
+        metrics.countDrawCall();
+        metrics.countDrawCall();
+
+        triangleVertices.clear();
+        lineVertices.clear();
+    }
+
+    private void resetCubes() {
+        pendingCubes = null;
+        isKeepingCubes = false;
+        turnAxis = null;
+    }
+
     private void init() {
         GLFWErrorCallback.createPrint(System.err).set();
         if (!glfwInit()) {
@@ -98,23 +593,23 @@ public class Renderer {
 
         glfwSetKeyCallback(window, (window, key, scancode, action, mods) -> {
             if (action == GLFW_PRESS) {
-                game.keyPressed(this, key);
+                handleInput(InputQueue.Type.KEY_PRESSED, key, 0.0, 0.0);
             }
             if (action == GLFW_RELEASE) {
-                game.keyReleased(this, key);
+                handleInput(InputQueue.Type.KEY_RELEASED, key, 0.0, 0.0);
             }
         });
 
         glfwSetMouseButtonCallback(window, (window, button, action, mods) -> {
             if (action == GLFW_PRESS) {
-                game.mouseButtonPressed(this, button);
+                handleInput(InputQueue.Type.MOUSE_BUTTON_PRESSED, button, 0.0, 0.0);
             } else if (action == GLFW_RELEASE) {
-                game.mouseButtonReleased(this, button);
+                handleInput(InputQueue.Type.MOUSE_BUTTON_RELEASED, button, 0.0, 0.0);
             }
         });
 
         glfwSetCursorPosCallback(window, (window, xpos, ypos) -> {
-            game.cursorMoved(this, xpos, ypos);
+            handleInput(InputQueue.Type.CURSOR_MOVED, 0, xpos, ypos);
         });
 
         glfwMakeContextCurrent(window);
@@ -122,6 +617,11 @@ public class Renderer {
         glfwShowWindow(window);
 
         GL.createCapabilities();
+        initGraphics();
+    }
+
+    // Sets up shaders, buffers and GL state once a context is current
+    private void initGraphics() {
         System.err.println("GL_VENDOR: " + glGetString(GL_VENDOR));
         System.err.println("GL_RENDERER: " + glGetString(GL_RENDERER));
         System.err.println("GL_VERSION: " + glGetString(GL_VERSION));
@@ -131,67 +631,101 @@ public class Renderer {
         final String vertexShaderSource
             = "#version 330 core\n"
             + "in vec3 position;"
+            + "in vec4 color;"
             + "uniform mat4 view;"
             + "uniform mat4 projection;"
+            + "out vec4 vertexColor;"
             + "void main() {"
             + "gl_Position = projection * view * vec4(position, 1.0);"
+            + "vertexColor = color;"
             + "}";
 
-        final int vertexShader = glCreateShader(GL_VERTEX_SHADER);
-
-        glShaderSource(vertexShader, vertexShaderSource);
-        glCompileShader(vertexShader);
-
         final String fragmentShaderSource
             = "#version 330 core\n"
-            + "uniform vec4 color;"
+            + "in vec4 vertexColor;"
             + "out vec4 FragColor;"
             + "void main() {"
-            + "FragColor = color;"
+            + "FragColor = vertexColor;"
             + "}";
 
-        final int fragmentShader = glCreateShader(GL_FRAGMENT_SHADER);
-
-        glShaderSource(fragmentShader, fragmentShaderSource);
-        glCompileShader(fragmentShader);
+        shaderProgram = compileProgram(vertexShaderSource, fragmentShaderSource);
 
-        shaderProgram = glCreateProgram();
-        glAttachShader(shaderProgram, vertexShader);
-        glAttachShader(shaderProgram, fragmentShader);
-        glLinkProgram(shaderProgram);
+        final String cubeVertexShaderSource
+            = "#version 330 core\n"
+            + "layout(location = 0) in mat4 model;"
+            + "layout(location = 4) in uint faceColor;"
+            + "uniform mat4 view;"
+            + "uniform mat4 projection;"
+            + "uniform vec4 palette[7];"
+            + "uniform vec3 turnAxis;"
+            + "uniform vec2 turnRange;"
+            + "uniform float turnAngle;"
+            + "out vec4 vertexColor;"
+            + createCubeMesh()
+            + "void main() {"
+            + "vec3 position = corners[faceCorners[int(faceColor & 7u) * 6 + gl_VertexID]];"
+            + "vec3 world = (model * vec4(position, 1.0)).xyz;"
+            + "float along = dot(model[3].xyz, turnAxis);"
+            + "if (turnAngle != 0.0 && along > turnRange.x && along < turnRange.y) {"
+            + "float c = cos(turnAngle);"
+            + "float s = sin(turnAngle);"
+            + "world = world * c + cross(turnAxis, world) * s + turnAxis * dot(turnAxis, world) * (1.0 - c);"
+            + "}"
+            + "gl_Position = projection * view * vec4(world, 1.0);"
+            + "vertexColor = palette[faceColor >> 3u];"
+            + "}";
 
-        glDeleteShader(vertexShader);
-        glDeleteShader(fragmentShader);
+        cubeProgram = compileProgram(cubeVertexShaderSource, fragmentShaderSource);
 
         positionLocation = glGetAttribLocation(shaderProgram, "position");
-        colorLocation = glGetUniformLocation(shaderProgram, "color");
+        colorLocation = glGetAttribLocation(shaderProgram, "color");
         projectionLocation = glGetUniformLocation(shaderProgram, "projection");
         viewLocation = glGetUniformLocation(shaderProgram, "view");
-
-        glUseProgram(shaderProgram);
-        glUniform4f(colorLocation, 1.0f, 1.0f, 1.0f, 1.0f);
+        cubeProjectionLocation = glGetUniformLocation(cubeProgram, "projection");
+        cubeViewLocation = glGetUniformLocation(cubeProgram, "view");
+        paletteLocation = glGetUniformLocation(cubeProgram, "palette");
+        turnAxisLocation = glGetUniformLocation(cubeProgram, "turnAxis");
+        turnRangeLocation = glGetUniformLocation(cubeProgram, "turnRange");
+        turnAngleLocation = glGetUniformLocation(cubeProgram, "turnAngle");
 
         // Default view matrix
-        glUniformMatrix4fv(viewLocation, true, new float [] {
+        final float[] view = {
             1.f, 0.f, 0.f, 0.f,
             0.f, 1.f, 0.f, 0.f,
             0.f, 0.f, 1.f, 0.f,
             0.f, 0.f, 0.f, 1.f
-        });
+        };
 
         // Calculate projection matrix
         final float fov = 60.f;
-        final float aspect = width / height;
+        final float aspect = (float) width / height;
         final float zNear = 0.1f;
         final float zFar = 2.f;
 
         final float tanHalfFov = (float) Math.tan(fov / 2.f * Math.PI / 180.f);
-        glUniformMatrix4fv(projectionLocation, true, new float [] {
+        final float[] projection = {
             1.f / (aspect * tanHalfFov), 0.f, 0.f, 0.f,
             0.f, 1.f / tanHalfFov, 0.f, 0.f,
             0.f, 0.f, -(zFar + zNear) / (zFar - zNear), (zFar + zNear - 2 * zFar * zNear) / (zFar - zNear),
             0.f, 0.f, -1.f, 1.f
-        });
+        };
+
+        glUseProgram(shaderProgram);
+        glUniformMatrix4fv(viewLocation, true, view);
+        glUniformMatrix4fv(projectionLocation, true, projection);
+
+        final float[] palette = new float[faceColorValues.length * 4];
+        for (int i = 0; i < faceColorValues.length; i++) {
+            System.arraycopy(faceColorValues[i], 0, palette, i * 4, 4);
+        }
+
+        glUseProgram(cubeProgram);
+        glUniformMatrix4fv(cubeViewLocation, true, view);
+        glUniformMatrix4fv(cubeProjectionLocation, true, projection);
+        glUniform4fv(paletteLocation, palette);
+        glUniform1f(turnAngleLocation, 0.f);
+        keptCubes = null;
+        resetCubes();
 
         cameraAngleX = 0.f;
         cameraAngleY = 0.f;
@@ -201,25 +735,183 @@ public class Renderer {
         backgroundB = 0.5f;
         backgroundA = 1.0f;
 
+        // One long-lived interleaved buffer (position + color) holds every
+        // primitive drawn in a frame; it is refilled in place by flush().
+        allocateBuffers();
+
+        vao = glGenVertexArrays();
+        vbo = glGenBuffers();
+        vboCapacity = (triangleVertices.capacity() + lineVertices.capacity()) * Float.BYTES;
+
+        glBindVertexArray(vao);
+        glBindBuffer(GL_ARRAY_BUFFER, vbo);
+        glBufferData(GL_ARRAY_BUFFER, vboCapacity, GL_DYNAMIC_DRAW);
+        glVertexAttribPointer(positionLocation, 3, GL_FLOAT, false, floatsPerVertex * Float.BYTES, 0);
+        glEnableVertexAttribArray(positionLocation);
+        glVertexAttribPointer(colorLocation, 4, GL_FLOAT, false, floatsPerVertex * Float.BYTES,
+                              3 * Float.BYTES);
+        glEnableVertexAttribArray(colorLocation);
+        glBindVertexArray(0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        // The unit cube mesh lives in the cube shader; each visible face is an
+        // instance carrying its cube's model matrix, the face and its color.
+        cubeVao = glGenVertexArrays();
+        instanceVbo = glGenBuffers();
+        instanceVboCapacity = cubeInstances.capacity();
+
+        glBindVertexArray(cubeVao);
+        glBindBuffer(GL_ARRAY_BUFFER, instanceVbo);
+        glBufferData(GL_ARRAY_BUFFER, instanceVboCapacity, GL_STREAM_DRAW);
+        for (int column = 0; column < 4; column++) {
+            glVertexAttribPointer(column, 4, GL_FLOAT, false, bytesPerFaceInstance,
+                                  column * 4 * Float.BYTES);
+            glEnableVertexAttribArray(column);
+            glVertexAttribDivisor(column, 1);
+        }
+        glVertexAttribIPointer(4, 1, GL_UNSIGNED_INT, bytesPerFaceInstance, 16 * Float.BYTES);
+        glEnableVertexAttribArray(4);
+        glVertexAttribDivisor(4, 1);
+        glBindVertexArray(0);
+        glBindBuffer(GL_ARRAY_BUFFER, 0);
+
+        colorR = 1.0f;
+        colorG = 1.0f;
+        colorB = 1.0f;
+        colorA = 1.0f;
+
         glEnable(GL_DEPTH_TEST);
+        forgetGlState();
     }
 
+    private void freeGraphics() {
+        glDeleteBuffers(vbo);
+        glDeleteVertexArrays(vao);
+        glDeleteBuffers(instanceVbo);
+        glDeleteVertexArrays(cubeVao);
+        freeBuffers();
+        glDeleteProgram(shaderProgram);
+        glDeleteProgram(cubeProgram);
+        forgetGlState();
+    }
+
+    private void createFramebuffer() {
+        framebuffer = glGenFramebuffers();
+        glBindFramebuffer(GL_FRAMEBUFFER, framebuffer);
+
+        colorRenderbuffer = glGenRenderbuffers();
+        glBindRenderbuffer(GL_RENDERBUFFER, colorRenderbuffer);
+        glRenderbufferStorage(GL_RENDERBUFFER, GL_RGBA8, width, height);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_RENDERBUFFER, colorRenderbuffer);
+
+        depthRenderbuffer = glGenRenderbuffers();
+        glBindRenderbuffer(GL_RENDERBUFFER, depthRenderbuffer);
+        glRenderbufferStorage(GL_RENDERBUFFER, GL_DEPTH_COMPONENT24, width, height);
+        glFramebufferRenderbuffer(GL_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER, depthRenderbuffer);
+        glBindRenderbuffer(GL_RENDERBUFFER, 0);
+
+        if (glCheckFramebufferStatus(GL_FRAMEBUFFER) != GL_FRAMEBUFFER_COMPLETE) {
+            throw new IllegalStateException("Offscreen framebuffer is incomplete");
+        }
+        pixels = memAlloc(width * height * 4);
+    }
+
+    // Without a tick rate the game is updated once per frame, so vsync in
+    // glfwSwapBuffers paces the simulation too. With one, the game runs on
+    // the simulation thread and frames only draw its latest pose.
     private void loop() {
         double currentTime = 0.0;
         double lastTime = 0.0;
         double deltaTime = 0.0;
         game.load(this);
-        while (!glfwWindowShouldClose(window)) {
-            currentTime = glfwGetTime();
-            deltaTime = currentTime - lastTime;
-            lastTime = currentTime;
-            game.update(this, deltaTime);
-            glClearColor(backgroundR, backgroundG, backgroundB, backgroundA);
-            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
-            game.draw(this);
-            glfwSwapBuffers(window);
-            glfwPollEvents();
+        if (tickRate > 0) {
+            startSimulation();
+        }
+        try {
+            while (!glfwWindowShouldClose(window) && simulationError == null) {
+                currentTime = glfwGetTime();
+                deltaTime = currentTime - lastTime;
+                lastTime = currentTime;
+                final FrameEvent frameEvent = new FrameEvent();
+                frameEvent.begin();
+                final long frameStart = System.nanoTime();
+                if (simulationThread == null) {
+                    game.update(this, deltaTime);
+                }
+                applyCamera();
+                final long updateEnd = System.nanoTime();
+                clearFrame();
+                game.draw(this);
+                flush();
+                final long drawEnd = System.nanoTime();
+                glfwSwapBuffers(window);
+                final long swapEnd = System.nanoTime();
+                glfwPollEvents();
+                applyCursorMode();
+                final long pollEnd = System.nanoTime();
+                frameEvent.end();
+                if (frameEvent.shouldCommit()) {
+                    frameEvent.frameNumber = metrics.getTotalFrames();
+                    frameEvent.updateTime = updateEnd - frameStart;
+                    frameEvent.drawTime = drawEnd - updateEnd;
+                    frameEvent.swapTime = swapEnd - drawEnd;
+                    frameEvent.pollTime = pollEnd - swapEnd;
+                    frameEvent.drawCalls = metrics.getFrameDrawCalls();
+                    frameEvent.stateChanges = metrics.getFrameStateChanges();
+                    frameEvent.elidedCalls = metrics.getFrameElidedCalls();
+                    frameEvent.commit();
+                }
+                metrics.endFrame(updateEnd - frameStart, drawEnd - updateEnd, swapEnd - drawEnd,
+                                 pollEnd - swapEnd);
+                if (metricsReporter != null) {
+                    metricsReporter.frameFinished(metrics, pollEnd);
+                }
+            }
+        } finally {
+            stopSimulation();
+        }
+        if (simulationError != null) {
+            throw new RuntimeException("The simulation thread failed", simulationError);
+        }
+    }
+
+    // Package-private methods
+
+    // Lets benchmarks drive the draw calls without a window or GL context:
+    // primitives are packed into the client-side buffers as usual and then
+    // dropped by discardFrame() instead of being flushed.
+    void startHeadless() {
+        isRunning = true;
+        allocateBuffers();
+    }
+
+    void discardFrame() {
+        triangleVertices.clear();
+        lineVertices.clear();
+        cubeInstances.clear();
+        resetCubes();
+    }
+
+    void stopHeadless() {
+        freeBuffers();
+        isRunning = false;
+    }
+
+    // Converts RGBA pixels as glReadPixels() returns them, rows running
+    // bottom to top, dropping alpha
+    static BufferedImage toImage(ByteBuffer pixels, int width, int height) {
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        final int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            final int offset = (height - 1 - y) * width * 4;
+            for (int x = 0; x < width; x++) {
+                final int pixel = offset + x * 4;
+                row[x] = (pixels.get(pixel) & 0xff) << 16 | (pixels.get(pixel + 1) & 0xff) << 8
+                       | (pixels.get(pixel + 2) & 0xff);
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
         }
+        return image;
     }
 
     // Public methods
@@ -236,7 +928,7 @@ public class Renderer {
         isRunning = true;
         init();
         loop();
-        glDeleteProgram(shaderProgram);
+        freeGraphics();
         glfwFreeCallbacks(window);
         glfwDestroyWindow(window);
         glfwTerminate();
@@ -244,30 +936,109 @@ public class Renderer {
         isRunning = false;
     }
 
-    public void drawLine(float x1, float y1, float z1, float x2, float y2, float z2) {
-        if (isRunning) {
-            float[] vertices = {
-                x1, y1, z1,
-                x2, y2, z2
-            };
+    // Sets up GLFW for offscreen rendering. GLFW may only be called from the
+    // main thread, so this, createOffscreen(), destroyOffscreen() and
+    // terminateOffscreen() must all run there; only the GL work moves to
+    // other threads. With no display at all, GLFW's null platform is used
+    // with OSMesa contexts, which need Mesa's libOSMesa (llvmpipe).
+    public static void initOffscreen() {
+        GLFWErrorCallback.createPrint(System.err).set();
+        if (System.getenv("DISPLAY") == null && System.getenv("WAYLAND_DISPLAY") == null) {
+            glfwInitHint(GLFW_PLATFORM, GLFW_PLATFORM_NULL);
+        }
+        if (!glfwInit()) {
+            glfwSetErrorCallback(null).free();
+            throw new IllegalStateException("Unable to initialize GLFW");
+        }
+    }
 
-            glUseProgram(shaderProgram);
+    // Call once every offscreen renderer has been destroyed
+    public static void terminateOffscreen() {
+        glfwTerminate();
+        glfwSetErrorCallback(null).free();
+    }
 
-            int vao = glGenVertexArrays();
-            int vbo = glGenBuffers();
+    // Creates the hidden window that holds this renderer's GL context, on the
+    // main thread, after initOffscreen()
+    public void createOffscreen() {
+        glfwDefaultWindowHints();
+        glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 3);
+        glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 3);
+        glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+        if (glfwGetPlatform() == GLFW_PLATFORM_NULL) {
+            glfwWindowHint(GLFW_CONTEXT_CREATION_API, GLFW_OSMESA_CONTEXT_API);
+        }
+        window = glfwCreateWindow(width, height, windowTitle, NULL, NULL);
+        if (window == NULL) {
+            throw new RuntimeException("Failed to create offscreen GL context");
+        }
+    }
 
-            glBindVertexArray(vao);
-            glBindBuffer(GL_ARRAY_BUFFER, vbo);
-            glBufferData(GL_ARRAY_BUFFER, vertices, GL_STREAM_DRAW);
+    // Renders into a framebuffer object, so frames can be read back on
+    // machines without a screen. The context is made current on the calling
+    // thread, which may be any thread and must also call renderImage() and
+    // stopOffscreen().
+    public void startOffscreen() {
+        if (window == NULL) {
+            throw new IllegalStateException("No offscreen context; call createOffscreen() first");
+        }
+        try {
+            glfwMakeContextCurrent(window);
+            GL.createCapabilities();
+            createFramebuffer();
+            isRunning = true;
+            initGraphics();
+        } catch (RuntimeException e) {
+            stopOffscreen();
+            throw e;
+        }
+    }
 
-            glVertexAttribPointer(positionLocation, 3, GL_FLOAT, false, 0, 0);
-            glEnableVertexAttribArray(positionLocation);
+    // Draws the game once and returns the frame
+    public BufferedImage renderImage() {
+        if (!isRunning || framebuffer == 0) {
+            throw new IllegalStateException("The renderer is not running offscreen");
+        }
+        clearFrame();
+        applyCamera();
+        game.draw(this);
+        flush();
+        glReadPixels(0, 0, width, height, GL_RGBA, GL_UNSIGNED_BYTE, pixels);
+        return toImage(pixels, width, height);
+    }
 
-            glDrawArrays(GL_LINES, 0, 2);
-            glBindVertexArray(0);
+    // Frees the GL objects and releases the context from the calling thread
+    public void stopOffscreen() {
+        if (framebuffer != 0) {
+            freeGraphics();
+            glDeleteFramebuffers(framebuffer);
+            glDeleteRenderbuffers(colorRenderbuffer);
+            glDeleteRenderbuffers(depthRenderbuffer);
+            framebuffer = 0;
+            memFree(pixels);
+            pixels = null;
+        }
+        if (window != NULL) {
+            glfwMakeContextCurrent(NULL);
+            GL.setCapabilities(null);
+        }
+        isRunning = false;
+    }
 
-            glDeleteBuffers(vbo);
-            glDeleteVertexArrays(vao);
+    // Destroys the window of createOffscreen(), on the main thread, once
+    // stopOffscreen() has released its context
+    public void destroyOffscreen() {
+        if (window != NULL) {
+            glfwDestroyWindow(window);
+            window = NULL;
+        }
+    }
+
+    public void drawLine(float x1, float y1, float z1, float x2, float y2, float z2) {
+        if (isRunning) {
+            lineVertices = putVertex(lineVertices, x1, y1, z1);
+            lineVertices = putVertex(lineVertices, x2, y2, z2);
         } else {
             System.err.println("Cannot draw when the renderer is not running.");
         }
@@ -276,96 +1047,114 @@ public class Renderer {
     public void drawTriangle(float x1, float y1, float z1, float x2, float y2, float z2, float x3,
                              float y3, float z3) {
         if (isRunning) {
-            float[] vertices = {
-                x1, y1, z1,
-                x2, y2, z2,
-                x3, y3, z3
-            };
-
-            glUseProgram(shaderProgram);
-
-            int vao = glGenVertexArrays();
-            int vbo = glGenBuffers();
+            triangleVertices = putVertex(triangleVertices, x1, y1, z1);
+            triangleVertices = putVertex(triangleVertices, x2, y2, z2);
+            triangleVertices = putVertex(triangleVertices, x3, y3, z3);
+        } else {
+            System.err.println("Cannot draw when the renderer is not running.");
+        }
+    }
 
-            glBindVertexArray(vao);
-            glBindBuffer(GL_ARRAY_BUFFER, vbo);
-            glBufferData(GL_ARRAY_BUFFER, vertices, GL_STREAM_DRAW);
-    
-            glVertexAttribPointer(positionLocation, 3, GL_FLOAT, false, 0, 0);
-            glEnableVertexAttribArray(positionLocation);
+    public void setColor(float r, float g, float b, float a) {
+        colorR = r;
+        colorG = g;
+        colorB = b;
+        colorA = a;
+    }
 
-            glDrawArrays(GL_TRIANGLES, 0, 3);
+    public void setFaceColor(FaceColor color) {
+        final float[] value = faceColorValues[color.ordinal()];
+        setColor(value[0], value[1], value[2], value[3]);
+    }
 
-            glBindBuffer(GL_ARRAY_BUFFER, 0);
-            glBindVertexArray(0);
+    public void drawCube(float[] model, FaceColor top, FaceColor front, FaceColor back,
+                         FaceColor left, FaceColor right, FaceColor bottom) {
+        drawCube(model, 0, top, front, back, left, right, bottom);
+    }
 
-            glDeleteBuffers(vbo);
-            glDeleteVertexArrays(vao);
+    // The model matrix is the 16 floats from the offset. Black faces are
+    // the insides of a cube and are left out; a game that shows them, such
+    // as while a layer turns, draws them with drawCubeFace().
+    public void drawCube(float[] models, int offset, FaceColor top, FaceColor front, FaceColor back,
+                         FaceColor left, FaceColor right, FaceColor bottom) {
+        if (isKeepingCubes) {
+            System.err.println("Cannot draw cubes in a frame that keeps the last ones.");
+        } else if (isRunning) {
+            putVisibleFace(models, offset, CubeFace.TOP, top);
+            putVisibleFace(models, offset, CubeFace.FRONT, front);
+            putVisibleFace(models, offset, CubeFace.BACK, back);
+            putVisibleFace(models, offset, CubeFace.LEFT, left);
+            putVisibleFace(models, offset, CubeFace.RIGHT, right);
+            putVisibleFace(models, offset, CubeFace.BOTTOM, bottom);
         } else {
             System.err.println("Cannot draw when the renderer is not running.");
         }
     }
 
-    public void setColor(float r, float g, float b, float a) {
-        if (isRunning) {
-            glUseProgram(shaderProgram);
-            glUniform4f(colorLocation, r, g, b, a);
+    // Draws a single face of the cube with the model matrix from the offset
+    public void drawCubeFace(float[] models, int offset, CubeFace face, FaceColor color) {
+        if (isKeepingCubes) {
+            System.err.println("Cannot draw cubes in a frame that keeps the last ones.");
+        } else if (isRunning) {
+            putFace(models, offset, face, color);
         } else {
             System.err.println("Cannot draw when the renderer is not running.");
         }
     }
 
-    public void setFaceColor(FaceColor color) {
-        switch (color) {
-        case BLACK:
-            setColor(0.f, 0.f, 0.f, 1.f);
-            break;
-        case WHITE:
-            setColor(1.f, 1.f, 1.f, 1.f);
-            break;
-        case RED:
-            setColor(0.5f, 0.f, 0.f, 1.f);
-            break;
-        case ORANGE:
-            setColor(0.75f, 0.5f, 0.f, 1.f);
-            break;
-        case BLUE:
-            setColor(0.f, 0.f, 0.5f, 1.f);
-            break;
-        case GREEN:
-            setColor(0.f, 0.75f, 0.f, 1.f);
-            break;
-        case YELLOW:
-            setColor(0.75f, 0.75f, 0.f, 1.f);
-            break;
+    // Lets a game skip drawCube() when its cubes have not changed. Returns
+    // true if the cubes last sent to GL were drawn for the same owner and
+    // version; they are then drawn again without being sent, and no other
+    // cube may be drawn this frame. Otherwise the cubes drawn this frame are
+    // kept under the owner and version.
+    public boolean keepCubes(Object owner, long version) {
+        if (owner == keptCubes && version == keptVersion && cubeInstances.position() == 0) {
+            isKeepingCubes = true;
+            return true;
         }
+        pendingCubes = owner;
+        pendingVersion = version;
+        return false;
     }
 
-    public void drawCube(float[] x, float[] y, float[] z, FaceColor top, FaceColor front,
-                         FaceColor back, FaceColor left, FaceColor right, FaceColor bottom) {
-        setFaceColor(top);
-        drawTriangle(x[3], y[3], z[3], x[1], y[1], z[1], x[0], y[0], z[0]);
-        drawTriangle(x[3], y[3], z[3], x[2], y[2], z[2], x[1], y[1], z[1]);
+    // Shows the cubes drawn this frame whose centers lie strictly between min
+    // and max along the axis turned about it by the angle, as a layer turn
+    // in progress, without changing their instance data
+    public void setTurn(Axis axis, float min, float max, double degrees) {
+        turnAxis = axis;
+        turnMin = min;
+        turnMax = max;
+        turnRadians = (float) (degrees * Math.PI / 180.0);
+    }
 
-        setFaceColor(front);
-        drawTriangle(x[7], y[7], z[7], x[2], y[2], z[2], x[3], y[3], z[3]);
-        drawTriangle(x[7], y[7], z[7], x[6], y[6], z[6], x[2], y[2], z[2]);
+    // The color as 0xRRGGBB, for drawing without GL
+    public static int getFaceColorRgb(FaceColor color) {
+        final float[] value = faceColorValues[color.ordinal()];
+        return Math.round(value[0] * 255) << 16 | Math.round(value[1] * 255) << 8 | Math.round(value[2] * 255);
+    }
 
-        setFaceColor(back);
-        drawTriangle(x[4], y[4], z[4], x[0], y[0], z[0], x[1], y[1], z[1]);
-        drawTriangle(x[4], y[4], z[4], x[1], y[1], z[1], x[5], y[5], z[5]);
+    public FrameMetrics getMetrics() {
+        return metrics;
+    }
 
-        setFaceColor(left);
-        drawTriangle(x[7], y[7], z[7], x[3], y[3], z[3], x[0], y[0], z[0]);
-        drawTriangle(x[7], y[7], z[7], x[0], y[0], z[0], x[4], y[4], z[4]);
+    // The reporter is handed the metrics after every frame; starting and
+    // stopping it is up to the caller.
+    public void setMetricsReporter(MetricsReporter metricsReporter) {
+        this.metricsReporter = metricsReporter;
+    }
 
-        setFaceColor(right);
-        drawTriangle(x[6], y[6], z[6], x[1], y[1], z[1], x[2], y[2], z[2]);
-        drawTriangle(x[6], y[6], z[6], x[5], y[5], z[5], x[1], y[1], z[1]);
+    // Ticks per second of the game's updates on a simulation thread of their
+    // own, or 0 to update once per frame on the render thread. Takes effect
+    // when run() starts.
+    public void setTickRate(double ticksPerSecond) {
+        if (!(ticksPerSecond >= 0)) {
+            throw new IllegalArgumentException("Tick rate must not be negative: " + ticksPerSecond);
+        }
+        tickRate = ticksPerSecond;
+    }
 
-        setFaceColor(bottom);
-        drawTriangle(x[7], y[7], z[7], x[4], y[4], z[4], x[5], y[5], z[5]);
-        drawTriangle(x[7], y[7], z[7], x[5], y[5], z[5], x[6], y[6], z[6]);
+    public double getTickRate() {
+        return tickRate;
     }
 
     public void setBackgroundColor(float r, float g, float b, float a) {
@@ -379,12 +1168,18 @@ public class Renderer {
         if (cameraAngleX + degrees <= 90 && cameraAngleX + degrees >= -90) {
             cameraAngleX += degrees;
         }
-        updateCamera();
+        isCameraChanged = true;
     }
 
     public void rotateCameraY(double degrees) {
         cameraAngleY += degrees;
-        updateCamera();
+        isCameraChanged = true;
+    }
+
+    public void setCameraAngles(double x, double y) {
+        cameraAngleX = Math.max(-90.0, Math.min(90.0, x));
+        cameraAngleY = y;
+        isCameraChanged = true;
     }
 
     public double getCameraAngleX() {
@@ -397,7 +1192,7 @@ public class Renderer {
 
     public void turnOffCursor() {
         if (isRunning) {
-            glfwSetInputMode(window, GLFW_CURSOR, GLFW_CURSOR_DISABLED);
+            cursorMode = GLFW_CURSOR_DISABLED;
         } else {
             System.err.println("Cannot draw when the renderer is not running.");
         }
@@ -405,7 +1200,7 @@ public class Renderer {
 
     public void turnOnCursor() {
         if (isRunning) {
-            glfwSetInputMode(window, GLFW_CURSOR, GLFW_CURSOR_NORMAL);
+            cursorMode = GLFW_CURSOR_NORMAL;
         } else {
             System.err.println("Cannot draw when the renderer is not running.");
         }
@@ -0,0 +1,219 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Scrambles that leave a 3x3 cube in a uniformly random state: a random
+// arrangement of the pieces, among those a cube can reach, is solved with
+// the two-phase solver and the solution played backwards. Solving takes
+// milliseconds, so producer threads at low priority keep up to capacity
+// scrambles ready and poll() never waits.
+//
+// Scramble n is made from the nth stream split off a SplittableRandom with
+// the given seed, and scrambles are handed out in order, so a seed gives
+// the same states in the same order however the threads are scheduled. The
+// solver gets a generous timeout so the moves come out the same as well.
+public class ScramblePool {
+
+    // Public fields
+
+    public static final int DEFAULT_CAPACITY = 16;
+    public static final long SOLVE_TIMEOUT_MILLIS = 10000;
+
+    // Private fields
+
+    private final SplittableRandom seeds;
+    private final List<List<MoveType>> ready;
+    private final Thread[] producers;
+    private long nextToMake, nextToTake;
+    private boolean isRunning;
+
+    // Private methods
+
+    private static int[] shuffled(SplittableRandom random, int length) {
+        final int[] values = CubeCoordinates.identity(length);
+        for (int i = length - 1; i > 0; i--) {
+            final int j = random.nextInt(i + 1);
+            final int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+        return values;
+    }
+
+    private void produce() {
+        final TwoPhaseSolver solver = new TwoPhaseSolver();
+        while (true) {
+            final long index;
+            final SplittableRandom random;
+            synchronized (ready) {
+                while (isRunning && nextToMake - nextToTake >= ready.size()) {
+                    try {
+                        ready.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (!isRunning) {
+                    return;
+                }
+                index = nextToMake++;
+                random = seeds.split();
+            }
+            final List<MoveType> scramble = generate(random, solver);
+            synchronized (ready) {
+                ready.set((int) (index % ready.size()), scramble);
+                ready.notifyAll();
+            }
+        }
+    }
+
+    // Public methods
+
+    // Every state a cube can reach is equally likely: the permutations are
+    // uniform with matching parity, and all but the last corner twist and
+    // edge flip are free.
+    public static CubeState randomState(SplittableRandom random) {
+        final int[] corners = shuffled(random, CubeState.CORNER_COUNT);
+        final int[] edges = shuffled(random, CubeState.EDGE_COUNT);
+        if (CubeCoordinates.isOddPermutation(corners) != CubeCoordinates.isOddPermutation(edges)) {
+            final int edge = edges[0];
+            edges[0] = edges[1];
+            edges[1] = edge;
+        }
+        final int[] twists = new int[CubeState.CORNER_COUNT];
+        int twistSum = 0;
+        for (int i = 0; i < twists.length - 1; i++) {
+            twists[i] = random.nextInt(3);
+            twistSum += twists[i];
+        }
+        twists[twists.length - 1] = (3 - twistSum % 3) % 3;
+        final int[] flips = new int[CubeState.EDGE_COUNT];
+        int flipSum = 0;
+        for (int i = 0; i < flips.length - 1; i++) {
+            flips[i] = random.nextInt(2);
+            flipSum += flips[i];
+        }
+        flips[flips.length - 1] = flipSum % 2;
+        return CubeState.fromPieces(corners, twists, edges, flips);
+    }
+
+    // The moves that take a solved cube to a random state
+    public static List<MoveType> generate(SplittableRandom random, TwoPhaseSolver solver) {
+        final List<MoveType> solution = solver.solve(randomState(random), TwoPhaseSolver.DEFAULT_MAX_LENGTH,
+                                                     SOLVE_TIMEOUT_MILLIS);
+        final List<MoveType> scramble = new ArrayList<MoveType>(solution.size());
+        for (MoveType move : solution) {
+            scramble.add(move.getInverse());
+        }
+        Collections.reverse(scramble);
+        return scramble;
+    }
+
+    public ScramblePool(int capacity, int threadCount, long seed) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+        seeds = new SplittableRandom(seed);
+        ready = new ArrayList<List<MoveType>>(Collections.nCopies(capacity, (List<MoveType>) null));
+        producers = new Thread[threadCount];
+    }
+
+    public void start() {
+        synchronized (ready) {
+            if (isRunning) {
+                return;
+            }
+            isRunning = true;
+        }
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = new Thread(this::produce, "Scramble producer " + i);
+            producers[i].setDaemon(true);
+            producers[i].setPriority(Thread.MIN_PRIORITY);
+            producers[i].start();
+        }
+    }
+
+    // Scrambles being made when the pool stops are finished first
+    public void stop() throws InterruptedException {
+        synchronized (ready) {
+            isRunning = false;
+            ready.notifyAll();
+        }
+        for (Thread producer : producers) {
+            if (producer != null) {
+                producer.join();
+            }
+        }
+    }
+
+    // The next scramble, or null if it is not ready yet
+    public List<MoveType> poll() {
+        synchronized (ready) {
+            final int slot = (int) (nextToTake % ready.size());
+            final List<MoveType> scramble = ready.get(slot);
+            if (scramble != null) {
+                ready.set(slot, null);
+                nextToTake++;
+                ready.notifyAll();
+            }
+            return scramble;
+        }
+    }
+
+    // The next scramble, waiting for it if need be. Once the pool stops,
+    // the scrambles still ready or being made are handed out and then this
+    // throws.
+    public List<MoveType> take() throws InterruptedException {
+        synchronized (ready) {
+            List<MoveType> scramble;
+            while ((scramble = poll()) == null) {
+                if (!isRunning && nextToMake == nextToTake) {
+                    throw new IllegalStateException("The scramble pool is not running");
+                }
+                ready.wait();
+            }
+            return scramble;
+        }
+    }
+
+    public int getReadyCount() {
+        synchronized (ready) {
+            int count = 0;
+            for (List<MoveType> scramble : ready) {
+                if (scramble != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Records a session to an append-only binary log in a memory-mapped file:
+// every move the game dequeues and every camera change, each stamped with
+// System.nanoTime() relative to the start of the recording, plus snapshots
+// of the whole cube, one as recording starts and then one every
+// snapshotInterval moves, so SessionReplay can seek without replaying from
+// the start.
+//
+// The file is a fixed header followed by records. Each record is a tag byte
+// and the time since the previous record as a varint, then:
+//
+//   move      tag below 64: bits 0-3 axis * 3 + direction (1, -1, 2), bits
+//             4-5 the layers: 0 the first, 1 the last, 2 all of them, or 3
+//             a varint first and last layer following
+//   camera    CAMERA_TAG, the x and y angles as floats
+//   snapshot  SNAPSHOT_TAG, varints of the absolute time, the number of
+//             moves before it and the offset of the previous snapshot (0 for
+//             none), the camera angles as floats, then a varint length and
+//             the state saved by PuzzleCubeGame
+//
+// The header keeps the end of the last whole record, the move count and the
+// offset of the last snapshot, updated in place after every record, so the
+// log reads back correctly even if the process dies while recording. Only
+// one thread may record.
+public class SessionRecorder implements Closeable {
+
+    // Public fields
+
+    public static final int DEFAULT_SNAPSHOT_INTERVAL = 1000;
+
+    // Package-private fields
+
+    static final int MAGIC = 0x5043534c;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 48;
+    static final int SIZE_OFFSET = 5;
+    static final int SNAPSHOT_INTERVAL_OFFSET = 8;
+    static final int END_OFFSET = 16;
+    static final int MOVE_COUNT_OFFSET = 24;
+    static final int LAST_SNAPSHOT_OFFSET = 32;
+    static final int LAST_TIME_OFFSET = 40;
+    static final int CAMERA_TAG = 0x40;
+    static final int SNAPSHOT_TAG = 0x41;
+
+    // Private fields
+
+    private static final int initialCapacity = 1 << 20;
+
+    private final FileChannel channel;
+    private final int size, snapshotInterval;
+    private final long startTime;
+    private MappedByteBuffer buffer;
+    private long lastTime, moveCount, lastSnapshot;
+    private int movesSinceSnapshot;
+    private float cameraX, cameraY;
+
+    // Private methods
+
+    // Remaps the file bigger when fewer than the given bytes are left
+    private void reserve(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        final long capacity = Math.max((long) buffer.capacity() * 2, (long) buffer.position() + bytes);
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Session log is full");
+        }
+        final int position = buffer.position();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.position(position);
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7fL) != 0) {
+            buffer.put((byte) (value & 0x7f | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private long startRecord(int tag) {
+        final long time = System.nanoTime() - startTime;
+        buffer.put((byte) tag);
+        putVarint(time - lastTime);
+        lastTime = time;
+        return time;
+    }
+
+    private void endRecord() {
+        buffer.putLong(END_OFFSET, buffer.position());
+        buffer.putLong(MOVE_COUNT_OFFSET, moveCount);
+        buffer.putLong(LAST_SNAPSHOT_OFFSET, lastSnapshot);
+        buffer.putLong(LAST_TIME_OFFSET, lastTime);
+    }
+
+    // Public methods
+
+    public SessionRecorder(Path path, int size, int snapshotInterval) throws IOException {
+        if (size < PuzzleCubeGame.MIN_SIZE || size > PuzzleCubeGame.MAX_SIZE) {
+            throw new IllegalArgumentException("Cube size must be from " + PuzzleCubeGame.MIN_SIZE + " to "
+                                               + PuzzleCubeGame.MAX_SIZE + ": " + size);
+        }
+        if (snapshotInterval < 1) {
+            throw new IllegalArgumentException("Snapshot interval must be positive: " + snapshotInterval);
+        }
+        this.size = size;
+        this.snapshotInterval = snapshotInterval;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                                   StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, initialCapacity);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        buffer.putInt(MAGIC);
+        buffer.put((byte) VERSION);
+        buffer.put((byte) size);
+        buffer.putInt(SNAPSHOT_INTERVAL_OFFSET, snapshotInterval);
+        buffer.position(HEADER_BYTES);
+        startTime = System.nanoTime();
+        endRecord();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public long getMoveCount() {
+        return moveCount;
+    }
+
+    public long getByteCount() {
+        return buffer.position();
+    }
+
+    // Whether the game should record a snapshot before its next move
+    public boolean isSnapshotDue() {
+        return lastSnapshot == 0 || movesSinceSnapshot >= snapshotInterval;
+    }
+
+    public void recordMove(Turn move) throws IOException {
+        if (move.getSize() != size) {
+            throw new IllegalArgumentException("Turn " + move + " is for size " + move.getSize() + ", not " + size);
+        }
+        reserve(32);
+        final int direction = move.getDirection() == 1 ? 0 : move.getDirection() == -1 ? 1 : 2;
+        final int layers;
+        if (move.isRotation()) {
+            layers = 2;
+        } else if (move.getFirstLayer() == move.getLastLayer() && move.getFirstLayer() == 0) {
+            layers = 0;
+        } else if (move.getFirstLayer() == move.getLastLayer() && move.getFirstLayer() == size - 1) {
+            layers = 1;
+        } else {
+            layers = 3;
+        }
+        startRecord(layers << 4 | move.getAxis().ordinal() * 3 + direction);
+        if (layers == 3) {
+            putVarint(move.getFirstLayer());
+            putVarint(move.getLastLayer());
+        }
+        moveCount++;
+        movesSinceSnapshot++;
+        endRecord();
+    }
+
+    // Records the angles only when they have changed
+    public void recordCamera(double x, double y) throws IOException {
+        if ((float) x == cameraX && (float) y == cameraY) {
+            return;
+        }
+        reserve(32);
+        cameraX = (float) x;
+        cameraY = (float) y;
+        startRecord(CAMERA_TAG);
+        buffer.putFloat(cameraX);
+        buffer.putFloat(cameraY);
+        endRecord();
+    }
+
+    public void recordSnapshot(byte[] state) throws IOException {
+        reserve(state.length + 64);
+        final long offset = buffer.position();
+        final long time = startRecord(SNAPSHOT_TAG);
+        putVarint(time);
+        putVarint(moveCount);
+        putVarint(lastSnapshot);
+        buffer.putFloat(cameraX);
+        buffer.putFloat(cameraY);
+        putVarint(state.length);
+        buffer.put(state);
+        lastSnapshot = offset;
+        movesSinceSnapshot = 0;
+        endRecord();
+    }
+
+    // Flushes the log and cuts the file down to the records written
+    public void close() throws IOException {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            buffer.force();
+            channel.truncate(buffer.position());
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -0,0 +1,297 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads back a log written by SessionRecorder. The file is mapped read-only
+// and the snapshots are found by following the chain back from the last one
+// named in the header, so opening costs nothing per move. A cursor walks the
+// records in order: next() reads one into the current-record fields read
+// through the getters. Seeking restores the nearest snapshot at or before
+// the target into a game and applies the moves from there, so it costs at
+// most one snapshot interval of moves however long the session is.
+public class SessionReplay {
+
+    // Public local types
+
+    public enum RecordType {
+        MOVE,
+        CAMERA,
+        SNAPSHOT;
+    }
+
+    // Private fields
+
+    private static final Axis[] axes = Axis.values();
+
+    private final ByteBuffer buffer;
+    private final int size, snapshotInterval;
+    private final long end, moveCount, duration;
+    private final long[] snapshotOffsets, snapshotMoves, snapshotTimes;
+
+    private RecordType type;
+    private long time, moveIndex;
+    private Turn move;
+    private float cameraX, cameraY;
+    private int stateOffset, stateLength;
+
+    // Private methods
+
+    private long getVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Invalid varint at " + buffer.position());
+    }
+
+    // Reads the body of a snapshot record, after its tag and time delta, and
+    // moves the cursor to the time and move count it holds
+    private void readSnapshot() {
+        time = getVarint();
+        moveIndex = getVarint();
+        getVarint();
+        cameraX = buffer.getFloat();
+        cameraY = buffer.getFloat();
+        stateLength = (int) getVarint();
+        stateOffset = buffer.position();
+        buffer.position(stateOffset + stateLength);
+    }
+
+    // Restores snapshot i into the game and puts the cursor just after it
+    private void restore(int i, PuzzleCubeGame game) {
+        buffer.position((int) snapshotOffsets[i] + 1);
+        getVarint();
+        readSnapshot();
+        type = RecordType.SNAPSHOT;
+        final byte[] state = new byte[stateLength];
+        buffer.get(stateOffset, state);
+        game.restoreSnapshot(state);
+    }
+
+    // The last snapshot whose value in the sorted array is at most target
+    private static int findSnapshot(long[] values, long target) {
+        int low = 0;
+        int high = values.length - 1;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (values[middle] <= target) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    // Public methods
+
+    public SessionReplay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Session log is too big: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < SessionRecorder.HEADER_BYTES || buffer.getInt(0) != SessionRecorder.MAGIC) {
+            throw new IllegalArgumentException("Not a session log: " + path);
+        }
+        if (buffer.get(4) != SessionRecorder.VERSION) {
+            throw new IllegalArgumentException("Unsupported session log version " + buffer.get(4) + ": " + path);
+        }
+        size = buffer.get(SessionRecorder.SIZE_OFFSET);
+        snapshotInterval = buffer.getInt(SessionRecorder.SNAPSHOT_INTERVAL_OFFSET);
+        end = buffer.getLong(SessionRecorder.END_OFFSET);
+        moveCount = buffer.getLong(SessionRecorder.MOVE_COUNT_OFFSET);
+        duration = buffer.getLong(SessionRecorder.LAST_TIME_OFFSET);
+        if (end < SessionRecorder.HEADER_BYTES || end > buffer.capacity()) {
+            throw new IllegalArgumentException("Session log is truncated: " + path);
+        }
+        buffer.limit((int) end);
+
+        // Snapshots come back newest first
+        final List<long[]> snapshots = new ArrayList<long[]>();
+        long offset = buffer.getLong(SessionRecorder.LAST_SNAPSHOT_OFFSET);
+        while (offset != 0) {
+            buffer.position((int) offset + 1);
+            getVarint();
+            final long snapshotTime = getVarint();
+            final long snapshotMove = getVarint();
+            snapshots.add(new long[] {offset, snapshotMove, snapshotTime});
+            final long previous = getVarint();
+            if (previous != 0 && (previous < SessionRecorder.HEADER_BYTES || previous >= offset)) {
+                throw new IllegalArgumentException("Session log has a broken snapshot chain: " + path);
+            }
+            offset = previous;
+        }
+        if (snapshots.isEmpty()) {
+            throw new IllegalArgumentException("Session log has no snapshot: " + path);
+        }
+        final int count = snapshots.size();
+        snapshotOffsets = new long[count];
+        snapshotMoves = new long[count];
+        snapshotTimes = new long[count];
+        for (int i = 0; i < count; i++) {
+            final long[] snapshot = snapshots.get(count - 1 - i);
+            snapshotOffsets[i] = snapshot[0];
+            snapshotMoves[i] = snapshot[1];
+            snapshotTimes[i] = snapshot[2];
+        }
+        buffer.position((int) snapshotOffsets[0]);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    public long getMoveCount() {
+        return moveCount;
+    }
+
+    // Nanoseconds from the start of the recording to its last record
+    public long getDuration() {
+        return duration;
+    }
+
+    public int getSnapshotCount() {
+        return snapshotOffsets.length;
+    }
+
+    public long getByteCount() {
+        return end;
+    }
+
+    // Puts the game in the state it was in just before move index (counting
+    // from 0) was dequeued, and the cursor just before that move
+    public void seekToMove(long index, PuzzleCubeGame game) {
+        if (index < 0 || index > moveCount) {
+            throw new IllegalArgumentException("Move " + index + " is outside the session's " + moveCount
+                                               + " moves");
+        }
+        restore(findSnapshot(snapshotMoves, index), game);
+        final List<Turn> moves = new ArrayList<Turn>();
+        while (moveIndex < index) {
+            next();
+            if (type == RecordType.MOVE) {
+                moves.add(move);
+            }
+        }
+        game.apply(moves);
+    }
+
+    // Puts the game in the state it was in at the given time since the start
+    // of the recording, with the cursor on the first record after it
+    public void seekToTime(long nanos, PuzzleCubeGame game) {
+        restore(findSnapshot(snapshotTimes, nanos), game);
+        final List<Turn> moves = new ArrayList<Turn>();
+        while (hasNext() && getNextTime() <= nanos) {
+            next();
+            if (type == RecordType.MOVE) {
+                moves.add(move);
+            }
+        }
+        game.apply(moves);
+    }
+
+    public boolean hasNext() {
+        return buffer.position() < end;
+    }
+
+    // The time of the next record, without moving the cursor
+    public long getNextTime() {
+        final int position = buffer.position();
+        buffer.get();
+        final long delta = getVarint();
+        buffer.position(position);
+        return time + delta;
+    }
+
+    public void next() {
+        final int tag = buffer.get() & 0xff;
+        time += getVarint();
+        if (tag < SessionRecorder.CAMERA_TAG) {
+            type = RecordType.MOVE;
+            final int direction = tag & 0xf;
+            final int layers = tag >> 4;
+            final int first = layers == 1 ? size - 1 : layers == 3 ? (int) getVarint() : 0;
+            final int last = layers == 0 ? 0 : layers == 3 ? (int) getVarint() : size - 1;
+            move = new Turn(size, axes[direction / 3], first, last,
+                            direction % 3 == 0 ? 1 : direction % 3 == 1 ? -1 : 2);
+            moveIndex++;
+        } else if (tag == SessionRecorder.CAMERA_TAG) {
+            type = RecordType.CAMERA;
+            cameraX = buffer.getFloat();
+            cameraY = buffer.getFloat();
+        } else if (tag == SessionRecorder.SNAPSHOT_TAG) {
+            type = RecordType.SNAPSHOT;
+            readSnapshot();
+        } else {
+            throw new IllegalStateException("Invalid record tag " + tag + " at " + (buffer.position() - 1));
+        }
+    }
+
+    // The record last read by next(), or the snapshot a seek started from
+
+    public RecordType getType() {
+        return type;
+    }
+
+    // Nanoseconds since the start of the recording
+    public long getTime() {
+        return time;
+    }
+
+    // Moves before the cursor
+    public long getMoveIndex() {
+        return moveIndex;
+    }
+
+    public Turn getMove() {
+        return move;
+    }
+
+    // Camera angles as of the cursor
+    public double getCameraX() {
+        return cameraX;
+    }
+
+    public double getCameraY() {
+        return cameraY;
+    }
+
+}
@@ -0,0 +1,226 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Solutions of 3x3 cubes keyed by canonical form, so one entry answers all
+// of a state's symmetric images, whole-cube rotations and recolorings. A
+// solution is stored as it solves the canonical form, one byte per move in
+// a fixed slot, and mapped back to the asking cube's orientation on the
+// way out. The least recently used entry is evicted past the entry limit.
+// The slots can live off the heap, where the collector never scans them;
+// the index of keys stays on the heap. Safe to share between threads.
+public class SolutionCache {
+
+    // Public local types
+
+    // A cube's canonical form, packed six colors to a digit, and the
+    // symmetry that takes the cube there. Keys of symmetric cubes are equal.
+    public static final class Key {
+
+        private final long high, low;
+        private final int symmetry;
+
+        private Key(long high, long low, int symmetry) {
+            this.high = high;
+            this.low = low;
+            this.symmetry = symmetry;
+        }
+
+        public int getSymmetry() {
+            return symmetry;
+        }
+
+        // Maps a solution of the cube to one of the canonical form
+        public List<MoveType> toCanonical(List<MoveType> solution) {
+            return CubeSymmetry.transform(solution, symmetry);
+        }
+
+        // Maps a solution of the canonical form to one of the cube
+        public List<MoveType> fromCanonical(List<MoveType> solution) {
+            return CubeSymmetry.transform(solution, CubeSymmetry.getInverse(symmetry));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).high == high && ((Key) other).low == low;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(high * 31 + low);
+        }
+
+    }
+
+    // Public fields
+
+    public static final int DEFAULT_MAX_ENTRIES = 65536;
+    public static final int MAX_SOLUTION_LENGTH = 31;
+
+    // Private fields
+
+    private static final int slotBytes = MAX_SOLUTION_LENGTH + 1;
+    private static final MoveType[] moves = MoveType.values();
+
+    // About what one entry of the key index costs on the heap: the key, the
+    // map node, the boxed slot and the table reference
+    private static final int indexEntryBytes = 96;
+
+    private final int maxEntries;
+    private final boolean isOffHeap;
+    private final ByteBuffer slots;
+    private final Map<Key, Integer> index = new LinkedHashMap<Key, Integer>(16, 0.75f, true);
+    private final int[] freeSlots;
+    private int freeCount;
+    private long hits, misses;
+
+    // Public methods
+
+    public SolutionCache(int maxEntries, boolean isOffHeap) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Entry count must not be negative: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.isOffHeap = isOffHeap;
+        slots = isOffHeap ? ByteBuffer.allocateDirect(maxEntries * slotBytes)
+                          : ByteBuffer.allocate(maxEntries * slotBytes);
+        freeSlots = new int[maxEntries];
+        for (int slot = 0; slot < maxEntries; slot++) {
+            freeSlots[slot] = maxEntries - 1 - slot;
+        }
+        freeCount = maxEntries;
+    }
+
+    public static Key getKey(StickerCube cube) {
+        final byte[] canonical = new byte[StickerCube.FACE_COUNT * 9];
+        final int symmetry = CubeSymmetry.canonicalize(cube, canonical);
+        // The centers are the same in every canonical form, which leaves 48
+        // stickers, 24 to a long
+        long high = 0;
+        long low = 0;
+        int digits = 0;
+        for (int sticker = 0; sticker < canonical.length; sticker++) {
+            if (sticker % 9 == 4) {
+                continue;
+            }
+            if (digits++ < 24) {
+                high = high * StickerCube.FACE_COUNT + canonical[sticker];
+            } else {
+                low = low * StickerCube.FACE_COUNT + canonical[sticker];
+            }
+        }
+        return new Key(high, low, symmetry);
+    }
+
+    // The cached solution for the key's cube, or null if it has to be solved
+    public synchronized List<MoveType> get(Key key) {
+        final Integer slot = index.get(key);
+        if (slot == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        final int offset = slot * slotBytes;
+        final List<MoveType> solution = new ArrayList<MoveType>(slots.get(offset));
+        for (int move = 0; move < slots.get(offset); move++) {
+            solution.add(moves[slots.get(offset + 1 + move)]);
+        }
+        return key.fromCanonical(solution);
+    }
+
+    // Caches a solution of the key's cube. Solutions longer than
+    // MAX_SOLUTION_LENGTH moves are not kept.
+    public synchronized void put(Key key, List<MoveType> solution) {
+        if (maxEntries == 0 || solution.size() > MAX_SOLUTION_LENGTH) {
+            return;
+        }
+        final List<MoveType> canonical = key.toCanonical(solution);
+        Integer slot = index.get(key);
+        if (slot == null) {
+            if (freeCount == 0) {
+                final Iterator<Integer> eldest = index.values().iterator();
+                freeSlots[freeCount++] = eldest.next();
+                eldest.remove();
+            }
+            slot = freeSlots[--freeCount];
+            index.put(key, slot);
+        }
+        final int offset = slot * slotBytes;
+        slots.put(offset, (byte) canonical.size());
+        for (int move = 0; move < canonical.size(); move++) {
+            slots.put(offset + 1 + move, (byte) canonical.get(move).ordinal());
+        }
+    }
+
+    // The cached solution of a 3x3 cube, solved and cached on a miss
+    public List<MoveType> solve(StickerCube cube, TwoPhaseSolver solver) {
+        final Key key = getKey(cube);
+        List<MoveType> solution = get(key);
+        if (solution == null) {
+            solution = solver.solve(CubeState.fromStickers(cube));
+            put(key, solution);
+        }
+        return solution;
+    }
+
+    public synchronized int getSize() {
+        return index.size();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public boolean isOffHeap() {
+        return isOffHeap;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized double getHitRate() {
+        return hits / (double) Math.max(1, hits + misses);
+    }
+
+    // Estimated heap taken by the key index, and by the slots unless they
+    // are off the heap
+    public synchronized long getHeapBytes() {
+        return (long) index.size() * indexEntryBytes + (isOffHeap ? 0 : slots.capacity());
+    }
+
+    public long getOffHeapBytes() {
+        return isOffHeap ? slots.capacity() : 0;
+    }
+
+}
@@ -0,0 +1,117 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+// Blocking client for a SolverServer. Each call sends one request and waits
+// for its response; calls from several threads take turns on the one
+// connection.
+public class SolverClient implements Closeable {
+
+    // Private fields
+
+    private final SocketChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(SolverServer.HEADER_BYTES);
+    private int nextId;
+
+    // Private methods
+
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("The solver server closed the connection");
+            }
+        }
+    }
+
+    private synchronized String request(int kind, byte[] payload, int expectedStatus) throws IOException {
+        if (payload.length > SolverServer.MAX_PAYLOAD_BYTES) {
+            throw new IllegalArgumentException("Request too long: " + payload.length + " bytes");
+        }
+        final int id = nextId++;
+        final ByteBuffer request = ByteBuffer.allocate(SolverServer.HEADER_BYTES + payload.length);
+        request.put((byte) kind).putInt(id).putShort((short) payload.length).put(payload).flip();
+        while (request.hasRemaining()) {
+            channel.write(request);
+        }
+        header.clear();
+        readFully(header);
+        header.flip();
+        final int status = header.get() & 0xff;
+        final int responseId = header.getInt();
+        final ByteBuffer response = ByteBuffer.allocate(header.getShort() & 0xffff);
+        readFully(response);
+        if (responseId != id) {
+            throw new IOException("Response " + responseId + " does not match request " + id);
+        }
+        final String text = new String(response.array(), StandardCharsets.UTF_8);
+        if (status == SolverServer.RESPONSE_ERROR) {
+            throw new IllegalArgumentException(text);
+        }
+        if (status != expectedStatus) {
+            throw new IOException("Unexpected response status: " + status);
+        }
+        return text;
+    }
+
+    // Public methods
+
+    public SolverClient(SocketAddress address) throws IOException {
+        channel = address instanceof UnixDomainSocketAddress
+            ? SocketChannel.open(StandardProtocolFamily.UNIX)
+            : SocketChannel.open();
+        channel.connect(address);
+    }
+
+    // Solutions come back in standard notation; a scramble or state the
+    // server rejects throws IllegalArgumentException with its reason
+    public String solve(String scramble) throws IOException {
+        return request(SolverServer.REQUEST_SCRAMBLE, scramble.getBytes(StandardCharsets.UTF_8),
+                       SolverServer.RESPONSE_SOLUTION);
+    }
+
+    public String solve(StickerCube cube) throws IOException {
+        if (cube.getSize() != 3) {
+            throw new IllegalArgumentException("Only a 3x3 cube can be solved, not size " + cube.getSize());
+        }
+        return request(SolverServer.REQUEST_STICKERS, cube.toBytes(), SolverServer.RESPONSE_SOLUTION);
+    }
+
+    public String getStats() throws IOException {
+        return request(SolverServer.REQUEST_STATS, new byte[0], SolverServer.RESPONSE_STATS);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,585 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Solves 3x3 cubes for clients on a local TCP port or Unix-domain socket.
+// Every frame, both ways, is a 7-byte header (a kind or status byte, a
+// 32-bit request id the response echoes and a 16-bit payload length, big
+// endian) and the payload. A request carries a scramble in UTF-8, the 54
+// stickers of StickerCube.toBytes() or nothing, to ask for statistics; the
+// response carries the solution in standard notation, an error message or
+// the statistics as text. Responses to one connection may come out of
+// order, matched by id.
+//
+// One selector thread reads requests and writes responses. States whose
+// canonical form is in the solution cache are answered at once; the rest
+// wait in a queue for the batching thread, which takes whatever has arrived
+// (up to the batch size, waiting at most the batch window for more), merges
+// states with one canonical form and splits the batch across the solver
+// pool. While a batch solves, new requests pile up into the next one, so
+// batches grow with the load.
+public class SolverServer implements Closeable {
+
+    // Public fields
+
+    public static final int REQUEST_SCRAMBLE = 1;
+    public static final int REQUEST_STICKERS = 2;
+    public static final int REQUEST_STATS = 3;
+    public static final int RESPONSE_SOLUTION = 0;
+    public static final int RESPONSE_ERROR = 1;
+    public static final int RESPONSE_STATS = 2;
+    public static final int HEADER_BYTES = 7;
+    public static final int MAX_PAYLOAD_BYTES = 0xffff;
+
+    public static final int DEFAULT_PORT = 9465;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final long DEFAULT_BATCH_WINDOW_MICROS = 200;
+
+    // Private local types
+
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer input = ByteBuffer.allocate(HEADER_BYTES + MAX_PAYLOAD_BYTES);
+        final ConcurrentLinkedQueue<ByteBuffer> output = new ConcurrentLinkedQueue<ByteBuffer>();
+        final AtomicLong outputBytes = new AtomicLong();
+        ByteBuffer writing;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private static class Request {
+        final Connection connection;
+        final int id;
+        final CubeState state;
+        final SolutionCache.Key key;
+        final long startTime;
+
+        Request(Connection connection, int id, CubeState state, SolutionCache.Key key, long startTime) {
+            this.connection = connection;
+            this.id = id;
+            this.state = state;
+            this.key = key;
+            this.startTime = startTime;
+        }
+    }
+
+    // Private fields
+
+    private static final int maxQueuedRequests = 1 << 16;
+
+    // Reading from a connection pauses while this many bytes of responses
+    // wait to be written to it, and a client that lets its responses pile up
+    // to maxOutputBytes anyway, from requests already read, is dropped
+    private static final long pauseReadingOutputBytes = 1 << 20;
+    private static final long maxOutputBytes = 16 << 20;
+
+    private final SocketAddress address;
+    private final int threadCount, batchSize;
+    private final long batchWindowNanos;
+    private final ThreadLocal<TwoPhaseSolver> solvers = ThreadLocal.withInitial(TwoPhaseSolver::new);
+    private final BlockingQueue<Request> requests = new LinkedBlockingQueue<Request>(maxQueuedRequests);
+    private final ConcurrentLinkedQueue<Connection> flushes = new ConcurrentLinkedQueue<Connection>();
+    private final SolutionCache cache;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong batchedRequests = new AtomicLong();
+    private final AtomicLong solveCount = new AtomicLong();
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private ExecutorService pool;
+    private Thread selectorThread, batchThread;
+    private volatile boolean isRunning;
+
+    // Private methods
+
+    private static ByteBuffer frame(int kind, int id, byte[] payload) {
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.put((byte) kind).putInt(id).putShort((short) payload.length).put(payload);
+        return buffer.flip();
+    }
+
+    private static byte[] encode(String text) {
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= MAX_PAYLOAD_BYTES ? bytes : "Response too long".getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Called from any thread; the selector thread does the writing
+    private void respond(Connection connection, int status, int id, String text) {
+        if (!connection.channel.isOpen()) {
+            return;
+        }
+        final ByteBuffer frame = frame(status, id, encode(text));
+        if (connection.outputBytes.addAndGet(frame.remaining()) > maxOutputBytes) {
+            try {
+                connection.channel.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+            return;
+        }
+        connection.output.add(frame);
+        flushes.add(connection);
+        selector.wakeup();
+    }
+
+    // Answers with the solution of the canonical form mapped to the
+    // request's cube
+    private void complete(Request request, List<MoveType> canonicalSolution) {
+        final String solution = MoveType.toNotation(request.key.fromCanonical(canonicalSolution));
+        latencies.record(System.nanoTime() - request.startTime);
+        respond(request.connection, RESPONSE_SOLUTION, request.id, solution);
+    }
+
+    private void fail(Connection connection, int id, String message) {
+        errorCount.incrementAndGet();
+        respond(connection, RESPONSE_ERROR, id, message);
+    }
+
+    private StickerCube parseCube(int kind, byte[] payload) {
+        switch (kind) {
+        case REQUEST_SCRAMBLE:
+            final StickerCube cube = new StickerCube(3);
+            cube.apply(Turn.parseSequence(new String(payload, StandardCharsets.UTF_8), 3));
+            return cube;
+        case REQUEST_STICKERS:
+            if (payload.length != StickerCube.FACE_COUNT * 9) {
+                throw new IllegalArgumentException("Expected " + StickerCube.FACE_COUNT * 9 + " stickers, not "
+                                                   + payload.length);
+            }
+            final StickerCube stickers = StickerCube.fromBytes(3, payload, 0);
+            if (!CubeState.fromStickers(stickers).isSolvable()) {
+                throw new IllegalArgumentException("The stickers are not of a solvable cube");
+            }
+            return stickers;
+        default:
+            throw new IllegalArgumentException("Unknown request kind: " + kind);
+        }
+    }
+
+    private void handleRequest(Connection connection, int kind, int id, byte[] payload) {
+        final long startTime = System.nanoTime();
+        if (kind == REQUEST_STATS) {
+            respond(connection, RESPONSE_STATS, id, getStats());
+            return;
+        }
+        requestCount.incrementAndGet();
+        final Request request;
+        try {
+            final StickerCube cube = parseCube(kind, payload);
+            request = new Request(connection, id, CubeState.fromStickers(cube), SolutionCache.getKey(cube), startTime);
+        } catch (IllegalArgumentException e) {
+            fail(connection, id, e.getMessage());
+            return;
+        }
+        final List<MoveType> cached = cache.get(request.key);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            complete(request, request.key.toCanonical(cached));
+            return;
+        }
+        if (!requests.offer(request)) {
+            fail(connection, id, "Too many requests waiting");
+            return;
+        }
+        maxQueueDepth.accumulateAndGet(requests.size(), Math::max);
+    }
+
+    private void accept() throws IOException {
+        final SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    private void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Already gone
+        }
+    }
+
+    // Handles every whole frame read so far and keeps the rest for later
+    private void read(SelectionKey key) throws IOException {
+        final Connection connection = (Connection) key.attachment();
+        final ByteBuffer input = connection.input;
+        if (connection.channel.read(input) < 0) {
+            close(key);
+            return;
+        }
+        input.flip();
+        while (input.remaining() >= HEADER_BYTES) {
+            final int length = input.getShort(input.position() + 5) & 0xffff;
+            if (input.remaining() < HEADER_BYTES + length) {
+                break;
+            }
+            final int kind = input.get() & 0xff;
+            final int id = input.getInt();
+            input.getShort();
+            final byte[] payload = new byte[length];
+            input.get(payload);
+            handleRequest(connection, kind, id, payload);
+        }
+        input.compact();
+        if (connection.outputBytes.get() >= pauseReadingOutputBytes) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        }
+    }
+
+    // Reads again once the responses waiting for the connection drop below
+    // the pause threshold
+    private static int getReadInterest(Connection connection) {
+        return connection.outputBytes.get() < pauseReadingOutputBytes ? SelectionKey.OP_READ : 0;
+    }
+
+    // Writes as much as the socket takes and waits for OP_WRITE for the rest
+    private void write(SelectionKey key) throws IOException {
+        final Connection connection = (Connection) key.attachment();
+        while (true) {
+            if (connection.writing == null) {
+                connection.writing = connection.output.poll();
+                if (connection.writing == null) {
+                    key.interestOps(getReadInterest(connection));
+                    return;
+                }
+            }
+            connection.channel.write(connection.writing);
+            if (connection.writing.hasRemaining()) {
+                key.interestOps(getReadInterest(connection) | SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.outputBytes.addAndGet(-connection.writing.capacity());
+            connection.writing = null;
+        }
+    }
+
+    private void runSelector() {
+        try {
+            while (isRunning) {
+                selector.select();
+                for (Connection connection; (connection = flushes.poll()) != null;) {
+                    final SelectionKey key = connection.channel.keyFor(selector);
+                    if (key != null && key.isValid()) {
+                        try {
+                            write(key);
+                        } catch (IOException e) {
+                            close(key);
+                        }
+                    }
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    try {
+                        if (key.isValid() && key.isAcceptable()) {
+                            accept();
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(key);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(key);
+                        }
+                    } catch (IOException e) {
+                        if (key.channel() == serverChannel) {
+                            throw e;
+                        }
+                        close(key);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException | RuntimeException e) {
+            if (isRunning) {
+                System.err.println("Solver server stopped: " + e);
+            }
+        }
+    }
+
+    // Takes the next batch: blocks for the first request, then waits up to
+    // the batch window for more
+    private List<Request> takeBatch() throws InterruptedException {
+        final List<Request> batch = new ArrayList<Request>(batchSize);
+        batch.add(requests.take());
+        requests.drainTo(batch, batchSize - 1);
+        final long deadline = System.nanoTime() + batchWindowNanos;
+        while (batch.size() < batchSize) {
+            final long remaining = deadline - System.nanoTime();
+            final Request request = remaining > 0 ? requests.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (request == null) {
+                break;
+            }
+            batch.add(request);
+            requests.drainTo(batch, batchSize - batch.size());
+        }
+        return batch;
+    }
+
+    private void solveBatch(List<Request> batch) throws InterruptedException {
+        batchCount.incrementAndGet();
+        batchedRequests.addAndGet(batch.size());
+        // Requests with one canonical form share a solve; states solved
+        // since they were queued come from the cache
+        final Map<SolutionCache.Key, List<Request>> unique = new HashMap<SolutionCache.Key, List<Request>>();
+        for (Request request : batch) {
+            final List<MoveType> cached = cache.get(request.key);
+            if (cached != null) {
+                cacheHits.incrementAndGet();
+                complete(request, request.key.toCanonical(cached));
+            } else {
+                unique.computeIfAbsent(request.key, key -> new ArrayList<Request>()).add(request);
+            }
+        }
+        final List<List<Request>> groups = new ArrayList<List<Request>>(unique.values());
+        final int taskCount = Math.min(threadCount, groups.size());
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(taskCount);
+        for (int task = 0; task < taskCount; task++) {
+            final int first = task;
+            tasks.add(() -> {
+                for (int i = first; i < groups.size(); i += taskCount) {
+                    solveGroup(groups.get(i));
+                }
+                return null;
+            });
+        }
+        pool.invokeAll(tasks);
+    }
+
+    private void solveGroup(List<Request> group) {
+        final Request first = group.get(0);
+        final List<MoveType> solution;
+        try {
+            solution = solvers.get().solve(first.state);
+        } catch (RuntimeException e) {
+            for (Request request : group) {
+                fail(request.connection, request.id, "Solver failed: " + e);
+            }
+            return;
+        }
+        solveCount.incrementAndGet();
+        cache.put(first.key, solution);
+        final List<MoveType> canonicalSolution = first.key.toCanonical(solution);
+        for (Request request : group) {
+            complete(request, canonicalSolution);
+        }
+    }
+
+    private static boolean isSocketFile(Path path) throws IOException {
+        try {
+            final int mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+            return (mode & 0170000) == 0140000;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private void runBatches() {
+        try {
+            while (isRunning) {
+                solveBatch(takeBatch());
+            }
+        } catch (InterruptedException e) {
+            // Stopping
+        }
+    }
+
+    // Public methods
+
+    // The address is an InetSocketAddress or a UnixDomainSocketAddress
+    public SolverServer(SocketAddress address, int threadCount, int batchSize, long batchWindowMicros,
+                        SolutionCache cache) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        if (batchWindowMicros < 0) {
+            throw new IllegalArgumentException("Batch window must not be negative: " + batchWindowMicros);
+        }
+        this.address = address;
+        this.threadCount = threadCount;
+        this.batchSize = batchSize;
+        this.cache = cache;
+        batchWindowNanos = batchWindowMicros * 1000;
+    }
+
+    public static SocketAddress getLocalAddress(int port) {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    public void start() throws IOException {
+        if (isRunning) {
+            throw new IllegalStateException("The solver server is already running");
+        }
+        TwoPhaseSolver.warmUp();
+        if (address instanceof UnixDomainSocketAddress) {
+            // A socket file left by an earlier run would make bind() fail;
+            // anything else at the path is left alone
+            final Path path = ((UnixDomainSocketAddress) address).getPath();
+            if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+                if (!isSocketFile(path)) {
+                    throw new IllegalArgumentException("Not a socket, refusing to replace it: " + path);
+                }
+                Files.delete(path);
+            }
+            serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            serverChannel = ServerSocketChannel.open();
+        }
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        selector = Selector.open();
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        pool = Executors.newFixedThreadPool(threadCount);
+        isRunning = true;
+        selectorThread = new Thread(this::runSelector, "Solver server selector");
+        batchThread = new Thread(this::runBatches, "Solver server batches");
+        selectorThread.start();
+        batchThread.start();
+    }
+
+    public SocketAddress getAddress() throws IOException {
+        return serverChannel.getLocalAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isRunning) {
+            return;
+        }
+        isRunning = false;
+        batchThread.interrupt();
+        selector.wakeup();
+        try {
+            batchThread.join();
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pool.shutdownNow();
+        for (SelectionKey key : selector.keys()) {
+            close(key);
+        }
+        selector.close();
+        serverChannel.close();
+        if (address instanceof UnixDomainSocketAddress) {
+            final Path path = ((UnixDomainSocketAddress) address).getPath();
+            if (Files.exists(path, LinkOption.NOFOLLOW_LINKS) && isSocketFile(path)) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    public double getCacheHitRate() {
+        return cacheHits.get() / (double) Math.max(1, requestCount.get() - errorCount.get());
+    }
+
+    public long getSolveCount() {
+        return solveCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public int getQueueDepth() {
+        return requests.size();
+    }
+
+    public long getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public double getMeanBatchSize() {
+        return batchedRequests.get() / (double) Math.max(1, batchCount.get());
+    }
+
+    public SolutionCache getCache() {
+        return cache;
+    }
+
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public String getStats() {
+        return String.format(
+            "%d requests (%d errors), %d solves, cache hit rate %.1f%% (%d entries, %d KiB heap, %d KiB off heap), "
+            + "queue depth %d (max %d), %d batches of %.1f, latency p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+            requestCount.get(), errorCount.get(), solveCount.get(), getCacheHitRate() * 100, cache.getSize(),
+            cache.getHeapBytes() / 1024, cache.getOffHeapBytes() / 1024,
+            getQueueDepth(), maxQueueDepth.get(), batchCount.get(), getMeanBatchSize(),
+            latencies.getPercentile(0.5) / 1e6, latencies.getPercentile(0.99) / 1e6, latencies.getMax() / 1e6);
+    }
+
+}
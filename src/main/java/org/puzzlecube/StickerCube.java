@@ -0,0 +1,304 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import java.util.Arrays;
+
+// Sticker state of a cube of any size: one byte per sticker, holding the
+// face the sticker started on, in one array per face. Faces use the order
+// U R F D L B. Each face is stored row by row as seen from outside the cube,
+// with U seen with F at the bottom, D with F at the top and the side faces
+// with U at the top.
+//
+// Sticker positions are worked out on a lattice doubled around the cube's
+// center, where layer i of N sits at 2i - (N - 1). A quarter turn is then
+// the same integer rotation for every cube size.
+public class StickerCube {
+
+    // Public fields
+
+    public static final int FACE_COUNT = 6;
+
+    // Private fields
+
+    private static final Axis[] axes = Axis.values();
+
+    // Normal axis and sign of each face, and the axis and sign its columns
+    // and rows run along
+    private static final Axis[] normalAxes = {Axis.Y, Axis.X, Axis.Z, Axis.Y, Axis.X, Axis.Z};
+    private static final int[] normalSigns = {1, 1, 1, -1, -1, -1};
+    private static final Axis[] columnAxes = {Axis.X, Axis.Z, Axis.X, Axis.X, Axis.Z, Axis.X};
+    private static final int[] columnSigns = {1, -1, 1, 1, 1, -1};
+    private static final Axis[] rowAxes = {Axis.Z, Axis.Y, Axis.Y, Axis.Z, Axis.Y, Axis.Y};
+    private static final int[] rowSigns = {1, -1, -1, -1, -1, -1};
+
+    private final int size;
+    private final byte[][] faces, spare;
+
+    // Private methods
+
+    private StickerCube(int size, byte[][] faces) {
+        this.size = size;
+        this.faces = faces;
+        spare = new byte[FACE_COUNT][size * size];
+    }
+
+    private int toLattice(int layer) {
+        return 2 * layer - (size - 1);
+    }
+
+    private int toLayer(int lattice) {
+        return (lattice + size - 1) / 2;
+    }
+
+    // Index of the sticker on the face at the given lattice position
+    private int stickerIndex(int face, int[] position) {
+        final int column = toLayer(columnSigns[face] * position[columnAxes[face].ordinal()]);
+        final int row = toLayer(rowSigns[face] * position[rowAxes[face].ordinal()]);
+        return row * size + column;
+    }
+
+    private void stickerPosition(int face, int index, int[] position) {
+        position[normalAxes[face].ordinal()] = normalSigns[face] * (size - 1);
+        position[columnAxes[face].ordinal()] = columnSigns[face] * toLattice(index % size);
+        position[rowAxes[face].ordinal()] = rowSigns[face] * toLattice(index / size);
+    }
+
+    // Copies one sticker of a turned layer to where the turn takes it
+    private void moveSticker(Turn turn, int face, int index, int[] position) {
+        final int axis = turn.getAxis().ordinal();
+        final int a = (axis + 1) % 3;
+        final int b = (axis + 2) % 3;
+        stickerPosition(face, index, position);
+        int normalA = normalAxes[face].ordinal() == a ? normalSigns[face] : 0;
+        int normalB = normalAxes[face].ordinal() == b ? normalSigns[face] : 0;
+        // Counter-clockwise quarter turns in the plane (a, b)
+        for (int i = Math.floorMod(turn.getDirection(), 4); i > 0; i--) {
+            int value = position[a];
+            position[a] = -position[b];
+            position[b] = value;
+            value = normalA;
+            normalA = -normalB;
+            normalB = value;
+        }
+        final int target = normalA != 0 ? findFace(axes[a], normalA)
+                         : normalB != 0 ? findFace(axes[b], normalB)
+                         : face;
+        spare[target][stickerIndex(target, position)] = faces[face][index];
+    }
+
+    private void visitSticker(Turn turn, int face, int index, boolean isMoving, int[] position) {
+        if (isMoving) {
+            moveSticker(turn, face, index, position);
+        } else {
+            faces[face][index] = spare[face][index];
+        }
+    }
+
+    // Moves every sticker of the turned layers into spare, or copies each
+    // one back from there
+    private void visitTurnedStickers(Turn turn, boolean isMoving, int[] position) {
+        final Axis axis = turn.getAxis();
+        for (int face = 0; face < FACE_COUNT; face++) {
+            if (normalAxes[face] == axis) {
+                if (turn.isInLayer(normalSigns[face] > 0 ? size - 1 : 0)) {
+                    for (int index = 0; index < size * size; index++) {
+                        visitSticker(turn, face, index, isMoving, position);
+                    }
+                }
+                continue;
+            }
+            final boolean isColumn = columnAxes[face] == axis;
+            final int sign = isColumn ? columnSigns[face] : rowSigns[face];
+            for (int line = 0; line < size; line++) {
+                if (!turn.isInLayer(sign > 0 ? line : size - 1 - line)) {
+                    continue;
+                }
+                for (int i = 0; i < size; i++) {
+                    visitSticker(turn, face, isColumn ? i * size + line : line * size + i, isMoving,
+                                 position);
+                }
+            }
+        }
+    }
+
+    // Public methods
+
+    public StickerCube(int size) {
+        this(size, new byte[FACE_COUNT][size * size]);
+        if (size < 2) {
+            throw new IllegalArgumentException("Cube size must be at least 2: " + size);
+        }
+        for (int face = 0; face < FACE_COUNT; face++) {
+            Arrays.fill(faces[face], (byte) face);
+        }
+    }
+
+    public static Axis getNormalAxis(int face) {
+        return normalAxes[face];
+    }
+
+    public static int getNormalSign(int face) {
+        return normalSigns[face];
+    }
+
+    public static int findFace(Axis axis, int sign) {
+        for (int face = 0; face < FACE_COUNT; face++) {
+            if (normalAxes[face] == axis && normalSigns[face] == sign) {
+                return face;
+            }
+        }
+        throw new IllegalArgumentException("No face along " + axis + " with sign " + sign);
+    }
+
+    public StickerCube copy() {
+        final byte[][] copied = new byte[FACE_COUNT][];
+        for (int face = 0; face < FACE_COUNT; face++) {
+            copied[face] = faces[face].clone();
+        }
+        return new StickerCube(size, copied);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getSticker(int face, int row, int column) {
+        return faces[face][row * size + column];
+    }
+
+    // The sticker on the face of the cubie in the given layers, which must
+    // lie on that face
+    public int getSticker(int face, int x, int y, int z) {
+        final int[] position = {toLattice(x), toLattice(y), toLattice(z)};
+        if (position[normalAxes[face].ordinal()] != normalSigns[face] * (size - 1)) {
+            throw new IllegalArgumentException("Cubie " + x + ", " + y + ", " + z + " is not on face " + face);
+        }
+        return faces[face][stickerIndex(face, position)];
+    }
+
+    // Only the stickers in the turned layers are visited: whole faces for
+    // outer layers and single rows or columns of the faces around the axis.
+    // They are moved into spare, and the turn takes them onto each other, so
+    // a second pass over the same places copies them back.
+    public void apply(Turn turn) {
+        if (turn.getSize() != size) {
+            throw new IllegalArgumentException("Turn " + turn + " is for size " + turn.getSize()
+                                               + ", not " + size);
+        }
+        final int[] position = new int[3];
+        visitTurnedStickers(turn, true, position);
+        visitTurnedStickers(turn, false, position);
+    }
+
+    // The stickers of every face in turn, row by row
+    public byte[] toBytes() {
+        final byte[] bytes = new byte[FACE_COUNT * size * size];
+        for (int face = 0; face < FACE_COUNT; face++) {
+            System.arraycopy(faces[face], 0, bytes, face * size * size, size * size);
+        }
+        return bytes;
+    }
+
+    // Reads stickers written by toBytes() from the offset
+    public static StickerCube fromBytes(int size, byte[] bytes, int offset) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Cube size must be at least 2: " + size);
+        }
+        if (offset < 0 || bytes.length - offset < FACE_COUNT * size * size) {
+            throw new IllegalArgumentException("Too few bytes for the stickers of size " + size);
+        }
+        final byte[][] faces = new byte[FACE_COUNT][size * size];
+        for (int face = 0; face < FACE_COUNT; face++) {
+            for (int i = 0; i < size * size; i++) {
+                final byte sticker = bytes[offset + face * size * size + i];
+                if (sticker < 0 || sticker >= FACE_COUNT) {
+                    throw new IllegalArgumentException("Invalid sticker: " + sticker);
+                }
+                faces[face][i] = sticker;
+            }
+        }
+        return new StickerCube(size, faces);
+    }
+
+    // Where each sticker, by its index in toBytes(), goes when the whole
+    // cube is mapped by the matrix. The matrix must permute the axes and may
+    // change their signs, which makes it one of the 48 rotations and
+    // reflections of the cube.
+    public int[] mapStickers(int[][] matrix) {
+        final int[] targets = new int[FACE_COUNT * size * size];
+        final int[] position = new int[3];
+        final int[] mapped = new int[3];
+        for (int face = 0; face < FACE_COUNT; face++) {
+            final int normal = normalAxes[face].ordinal();
+            int mappedAxis = -1;
+            int mappedSign = 0;
+            for (int axis = 0; axis < 3; axis++) {
+                if (matrix[axis][normal] != 0) {
+                    mappedAxis = axis;
+                    mappedSign = matrix[axis][normal] * normalSigns[face];
+                }
+            }
+            final int target = findFace(axes[mappedAxis], mappedSign);
+            for (int index = 0; index < size * size; index++) {
+                stickerPosition(face, index, position);
+                for (int axis = 0; axis < 3; axis++) {
+                    mapped[axis] = matrix[axis][0] * position[0] + matrix[axis][1] * position[1]
+                        + matrix[axis][2] * position[2];
+                }
+                targets[face * size * size + index] = target * size * size + stickerIndex(target, mapped);
+            }
+        }
+        return targets;
+    }
+
+    public void apply(Iterable<Turn> turns) {
+        for (Turn turn : turns) {
+            apply(turn);
+        }
+    }
+
+    // Solved when every face shows a single color, whichever way the cube
+    // as a whole is turned
+    public boolean isSolved() {
+        for (byte[] stickers : faces) {
+            for (byte sticker : stickers) {
+                if (sticker != stickers[0]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof StickerCube && Arrays.deepEquals(faces, ((StickerCube) other).faces);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(faces);
+    }
+
+}
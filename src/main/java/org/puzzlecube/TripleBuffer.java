@@ -0,0 +1,79 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands the latest of a stream of values from one writer thread to one
+// reader thread without locks or copying. The writer fills the back buffer
+// and publishes it; the reader takes whatever was published last and keeps
+// reading it until something newer arrives. Neither side ever waits for the
+// other, and a buffer is never written while it is being read. The three
+// buffers are swapped by index through a single atomic holding the middle
+// buffer and whether it is newer than what the reader has.
+public class TripleBuffer<T> {
+
+    // Private fields
+
+    private static final int freshBit = 4;
+
+    private final Object[] buffers;
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    // Public methods
+
+    public TripleBuffer(T first, T second, T third) {
+        buffers = new Object[] {first, second, third};
+    }
+
+    // Writer only
+    @SuppressWarnings("unchecked")
+    public T getBackBuffer() {
+        return (T) buffers[back];
+    }
+
+    // Writer only. The back buffer becomes the newest value and the writer
+    // gets another buffer to fill next, which holds an older value.
+    public void publish() {
+        back = middle.getAndSet(back | freshBit) & ~freshBit;
+    }
+
+    // Reader only. Takes the newest published value if there is one; returns
+    // whether the front buffer changed.
+    public boolean update() {
+        if ((middle.get() & freshBit) == 0) {
+            return false;
+        }
+        front = middle.getAndSet(front) & ~freshBit;
+        return true;
+    }
+
+    // Reader only
+    @SuppressWarnings("unchecked")
+    public T getFrontBuffer() {
+        return (T) buffers[front];
+    }
+
+}
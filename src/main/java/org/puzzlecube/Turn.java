@@ -0,0 +1,331 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// A move on a cube of any size: a quarter or half turn of a run of adjacent
+// layers about a world axis. Layers are numbered 0 to size - 1 from the
+// negative side of the axis, so on a 3x3 the L layer is 0 and the R layer 2.
+// The direction follows MoveType: positive turns counter-clockwise when
+// looking down the positive axis, and 2 is a half turn. A turn of every
+// layer is a whole-cube rotation.
+public final class Turn {
+
+    // Private fields
+
+    // Optional layer depths, the letter, a w for wide turns and the suffix
+    private static final Pattern notationPattern
+        = Pattern.compile("(?:(\\d+)(?:-(\\d+))?)?([URFDLBMESxyz])(w?)(['2]?)");
+
+    private final int size;
+    private final Axis axis;
+    private final int firstLayer, lastLayer, direction;
+
+    // Private methods
+
+    private static String faceLetter(Axis axis, int sign) {
+        switch (axis) {
+        case X:
+            return sign > 0 ? "R" : "L";
+        case Y:
+            return sign > 0 ? "U" : "D";
+        case Z:
+        default:
+            return sign > 0 ? "F" : "B";
+        }
+    }
+
+    // M turns like L, E like D and S like F
+    private static int middleSign(Axis axis) {
+        return axis == Axis.Z ? 1 : -1;
+    }
+
+    private static String middleLetter(Axis axis) {
+        switch (axis) {
+        case X:
+            return "M";
+        case Y:
+            return "E";
+        case Z:
+        default:
+            return "S";
+        }
+    }
+
+    // Suffix for the turn as seen looking at the face on the given side
+    private String suffix(int sign) {
+        if (isHalfTurn()) {
+            return "2";
+        }
+        return -direction * sign > 0 ? "" : "'";
+    }
+
+    // Public methods
+
+    public Turn(int size, Axis axis, int firstLayer, int lastLayer, int direction) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Cube size must be at least 2: " + size);
+        }
+        if (axis == null) {
+            throw new IllegalArgumentException("Turn axis is missing");
+        }
+        if (firstLayer < 0 || lastLayer >= size || firstLayer > lastLayer) {
+            throw new IllegalArgumentException("Invalid layers " + firstLayer + " to " + lastLayer
+                                               + " for size " + size);
+        }
+        if (direction != 1 && direction != -1 && direction != 2) {
+            throw new IllegalArgumentException("Invalid turn direction: " + direction);
+        }
+        this.size = size;
+        this.axis = axis;
+        this.firstLayer = firstLayer;
+        this.lastLayer = lastLayer;
+        this.direction = direction;
+    }
+
+    // The turn a 3x3 move makes on a cube of the given size. Face turns move
+    // the outer layer; M, E and S move the center layer of odd cubes and all
+    // inner layers of even ones.
+    public static Turn of(MoveType move, int size) {
+        if (move == MoveType.NO_MOVE) {
+            throw new IllegalArgumentException("No move to turn");
+        }
+        if (move.isRotation()) {
+            return new Turn(size, move.getAxis(), 0, size - 1, move.getDirection());
+        }
+        switch (move.getLayer()) {
+        case 1:
+            return new Turn(size, move.getAxis(), size - 1, size - 1, move.getDirection());
+        case -1:
+            return new Turn(size, move.getAxis(), 0, 0, move.getDirection());
+        default:
+            if (size % 2 == 1) {
+                return new Turn(size, move.getAxis(), size / 2, size / 2, move.getDirection());
+            }
+            if (size == 2) {
+                throw new IllegalArgumentException("A 2x2 cube has no middle layer: " + move.getNotation());
+            }
+            return new Turn(size, move.getAxis(), 1, size - 2, move.getDirection());
+        }
+    }
+
+    // Parses the notation getNotation() produces
+    public static Turn fromNotation(String notation, int size) {
+        final Matcher matcher = notationPattern.matcher(notation);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Unknown move: " + notation);
+        }
+        final char letter = matcher.group(3).charAt(0);
+        final boolean isWide = !matcher.group(4).isEmpty();
+        final String suffix = matcher.group(5);
+        final int index = "RUFLDBxyzMES".indexOf(letter);
+        final Axis axis = Axis.values()[index % 3];
+        final int sign = index < 3 || index >= 6 && index < 9 ? 1 : index < 6 ? -1 : middleSign(axis);
+        final int direction = suffix.equals("2") ? 2 : suffix.isEmpty() ? -sign : sign;
+        if (index >= 6) {
+            if (matcher.group(1) != null || isWide) {
+                throw new IllegalArgumentException("Unknown move: " + notation);
+            }
+            if (index < 9) {
+                return new Turn(size, axis, 0, size - 1, direction);
+            }
+            if (size % 2 == 1) {
+                return new Turn(size, axis, size / 2, size / 2, direction);
+            }
+            if (size == 2) {
+                throw new IllegalArgumentException("A 2x2 cube has no middle layer: " + notation);
+            }
+            return new Turn(size, axis, 1, size - 2, direction);
+        }
+
+        final int depth = matcher.group(1) == null ? (isWide ? 2 : 1) : Integer.parseInt(matcher.group(1));
+        final int near = isWide ? 1 : depth;
+        final int far = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : depth;
+        if ((isWide && matcher.group(2) != null) || near < 1 || near > far || far > size) {
+            throw new IllegalArgumentException("No such layers on a cube of size " + size + ": " + notation);
+        }
+        if (sign > 0) {
+            return new Turn(size, axis, size - far, size - near, direction);
+        }
+        return new Turn(size, axis, near - 1, far - 1, direction);
+    }
+
+    // Parses whitespace-separated turns such as "R 2U' 3Rw2 x"
+    public static List<Turn> parseSequence(String sequence, int size) {
+        final List<Turn> turns = new ArrayList<Turn>();
+        for (String token : sequence.trim().split("\\s+")) {
+            if (!token.isEmpty()) {
+                turns.add(fromNotation(token, size));
+            }
+        }
+        return turns;
+    }
+
+    public static String toNotation(Iterable<Turn> turns) {
+        final StringBuilder notation = new StringBuilder();
+        for (Turn turn : turns) {
+            if (notation.length() > 0) {
+                notation.append(' ');
+            }
+            notation.append(turn.getNotation());
+        }
+        return notation.toString();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public Axis getAxis() {
+        return axis;
+    }
+
+    public int getFirstLayer() {
+        return firstLayer;
+    }
+
+    public int getLastLayer() {
+        return lastLayer;
+    }
+
+    public int getDirection() {
+        return direction;
+    }
+
+    public boolean isHalfTurn() {
+        return direction == 2;
+    }
+
+    public boolean isRotation() {
+        return firstLayer == 0 && lastLayer == size - 1;
+    }
+
+    public boolean isInLayer(int layer) {
+        return layer >= firstLayer && layer <= lastLayer;
+    }
+
+    public Turn getInverse() {
+        return isHalfTurn() ? this : new Turn(size, axis, firstLayer, lastLayer, -direction);
+    }
+
+    // The equivalent 3x3 move, or NO_MOVE when there is none (other cube
+    // sizes, wide turns and half slice turns)
+    public MoveType toMoveType() {
+        if (size != 3) {
+            return MoveType.NO_MOVE;
+        }
+        if (isRotation()) {
+            return MoveType.of(axis, 0, direction, true);
+        }
+        if (firstLayer != lastLayer) {
+            return MoveType.NO_MOVE;
+        }
+        return MoveType.of(axis, firstLayer - 1, direction, false);
+    }
+
+    // SiGN notation: R and 3R turn the first and third layers from the right,
+    // Rw and 3Rw the first two and three, 2-3R the second and third, M, E and
+    // S the middle layers and x, y and z the whole cube.
+    public String getNotation() {
+        if (isRotation()) {
+            return axis.name().toLowerCase() + suffix(1);
+        }
+        if (firstLayer + lastLayer == size - 1
+         && (firstLayer == lastLayer || (size % 2 == 0 && firstLayer == 1))) {
+            return middleLetter(axis) + suffix(middleSign(axis));
+        }
+
+        final int sign;
+        if (lastLayer == size - 1) {
+            sign = 1;
+        } else if (firstLayer == 0) {
+            sign = -1;
+        } else if (firstLayer + lastLayer != size - 1) {
+            sign = firstLayer + lastLayer > size - 1 ? 1 : -1;
+        } else {
+            sign = middleSign(axis);
+        }
+        final int near = sign > 0 ? size - lastLayer : firstLayer + 1;
+        final int far = sign > 0 ? size - firstLayer : lastLayer + 1;
+        final String letter = faceLetter(axis, sign);
+        if (near == far) {
+            return (near == 1 ? "" : String.valueOf(near)) + letter + suffix(sign);
+        }
+        if (near == 1) {
+            return (far == 2 ? "" : String.valueOf(far)) + letter + "w" + suffix(sign);
+        }
+        return near + "-" + far + letter + suffix(sign);
+    }
+
+    // Maps a turn given relative to a camera turned by cameraAngleY degrees
+    // around the y-axis onto the world turn it performs.
+    public Turn fromCameraAngle(double cameraAngleY) {
+        final int quarterTurns = MoveType.getCameraQuarterTurns(cameraAngleY);
+        if (axis == Axis.Y || quarterTurns == 0) {
+            return this;
+        }
+
+        // Each quarter turn of the camera sends x to z and z to -x
+        Axis newAxis = axis;
+        int sign = 1;
+        for (int i = 0; i < quarterTurns; i++) {
+            if (newAxis == Axis.X) {
+                newAxis = Axis.Z;
+            } else {
+                newAxis = Axis.X;
+                sign = -sign;
+            }
+        }
+        if (sign > 0) {
+            return new Turn(size, newAxis, firstLayer, lastLayer, direction);
+        }
+        return new Turn(size, newAxis, size - 1 - lastLayer, size - 1 - firstLayer,
+                        isHalfTurn() ? direction : -direction);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Turn)) {
+            return false;
+        }
+        final Turn turn = (Turn) other;
+        return size == turn.size && axis == turn.axis && firstLayer == turn.firstLayer
+            && lastLayer == turn.lastLayer && direction == turn.direction;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(size, axis, firstLayer, lastLayer, direction);
+    }
+
+    @Override
+    public String toString() {
+        return getNotation();
+    }
+
+}
@@ -0,0 +1,524 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package org.puzzlecube;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Kociemba's two-phase algorithm. Phase 1 brings the cube into the subgroup
+// <U, D, R2, L2, F2, B2>, where every piece is oriented and the middle-layer
+// edges sit in the middle layer; phase 2 solves the cube inside that
+// subgroup. Both phases are depth-first searches over coordinate move tables
+// bounded by nibble-packed pruning tables. The tables are shared by every
+// solver and built once, on first use; a solver instance only holds its own
+// search stacks, so use one instance per thread.
+//
+// As in Chen Shuang's min2phase, the cube is searched from six directions at
+// once, one phase 1 depth at a time: with each of its three axes as the U-D
+// axis, for the state and for its inverse. The directions share one length
+// limit, so the direction where short solutions come easiest cuts the search
+// short for the others.
+public class TwoPhaseSolver {
+
+    // Public local types
+
+    // No solution turned up before the search gave up; the state itself may
+    // well be solvable
+    public static class SolveTimeoutException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private SolveTimeoutException(String message) {
+            super(message);
+        }
+
+    }
+
+    // Public fields
+
+    public static final int DEFAULT_MAX_LENGTH = 21;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 90;
+
+    // Past its timeout a search keeps going until it has a solution, which
+    // only takes this long on a cold JIT or a badly overloaded machine
+    public static final long GIVE_UP_MILLIS = 10000;
+
+    // Private fields
+
+    private static final int moveCount = 18;
+    private static final int phase2MoveCount = 10;
+    private static final int twistCount = CubeCoordinates.TWIST_COUNT;
+    private static final int flipCount = CubeCoordinates.FLIP_COUNT;
+    private static final int sliceCount = CubeCoordinates.SLICE_COUNT;
+    private static final int edgeGroupCount = CubeCoordinates.EDGE_GROUP_COUNT;
+    private static final int permutationCount = 40320;
+    private static final int slicePermutationCount = 24;
+    private static final int maxPhase1Length = 20;
+    private static final int maxPhase2Length = 12;
+    private static final int maxSolutionLength = 30;
+    private static final int directionCount = 6;
+    private static final int warmUpSolveCount = 50;
+
+    private static final MoveType[] moves = MoveType.getFaceTurns();
+    private static final int[] phase2Moves = {0, 1, 2, 4, 7, 9, 10, 11, 13, 16};
+    private static final boolean[] isPhase2Move = new boolean[moveCount];
+
+    // The rotation that takes each axis to the U-D axis, and the face turn
+    // each face turn of a rotated search stands for on the cube itself
+    private static final MoveType[] axisRotations = {null, MoveType.Z_ROTATION_C, MoveType.X_ROTATION_C};
+    private static final int[][] axisMoves = new int[axisRotations.length][moveCount];
+
+    private final Search[] searches = new Search[directionCount];
+
+    private int[] bestMoves;
+    private int bestDirection, maxLength, lengthLimit;
+    private long deadline, giveUpTime, nodeCount;
+    private boolean isAborted;
+
+    // Private methods
+
+    static {
+        for (int move : phase2Moves) {
+            isPhase2Move[move] = true;
+        }
+        final CubeState[] moveStates = new CubeState[moveCount];
+        for (int move = 0; move < moveCount; move++) {
+            moveStates[move] = new CubeState();
+            moveStates[move].apply(moves[move]);
+        }
+        for (int axis = 0; axis < axisRotations.length; axis++) {
+            for (int move = 0; move < moveCount; move++) {
+                final CubeState state = new CubeState();
+                if (axis > 0) {
+                    state.apply(axisRotations[axis]);
+                }
+                state.apply(moves[move]);
+                if (axis > 0) {
+                    state.apply(axisRotations[axis].getInverse());
+                }
+                axisMoves[axis][move] = Arrays.asList(moveStates).indexOf(state);
+            }
+        }
+    }
+
+    // The state seen with the given axis as the U-D axis
+    private static CubeState rotate(CubeState state, int axis) {
+        if (axis == 0) {
+            return state;
+        }
+        final CubeState rotated = new CubeState();
+        rotated.apply(axisRotations[axis].getInverse());
+        rotated.apply(state);
+        rotated.apply(axisRotations[axis]);
+        return rotated;
+    }
+
+    // Breadth-first distances from the goal over the product of two
+    // coordinates, one nibble per entry. Unreached entries keep 15, which is
+    // still a valid lower bound.
+    private static PruningTable buildPruningTable(char[] outerMoves, int outerCount,
+                                                  char[] innerMoves, int innerCount,
+                                                  int movesPerCoordinate, int goal) {
+        final int size = outerCount * innerCount;
+        final PruningTable table = new PruningTable(size);
+        table.set(goal, 0);
+        int filled = 1;
+        for (int depth = 0; depth < 14 && filled < size; depth++) {
+            for (int index = 0; index < size; index++) {
+                if (table.get(index) != depth) {
+                    continue;
+                }
+                final int outer = index / innerCount;
+                final int inner = index % innerCount;
+                for (int move = 0; move < movesPerCoordinate; move++) {
+                    final int next = outerMoves[outer * movesPerCoordinate + move] * innerCount
+                                   + innerMoves[inner * movesPerCoordinate + move];
+                    if (table.get(next) == PruningTable.UNKNOWN) {
+                        table.set(next, depth + 1);
+                        filled++;
+                    }
+                }
+            }
+        }
+        return table;
+    }
+
+    // Past the deadline only a solution in hand ends the search
+    private boolean isTimeUp() {
+        if ((++nodeCount & 1023) == 0) {
+            final long now = System.nanoTime();
+            if (now > giveUpTime || (bestMoves != null && now > deadline)) {
+                isAborted = true;
+            }
+        }
+        return isAborted;
+    }
+
+    private static boolean isRedundant(int move, int previousMove) {
+        final int face = move / 3;
+        final int previousFace = previousMove / 3;
+        return face == previousFace || face == previousFace - 3;
+    }
+
+    private static int phase2Distance(int cornerPermutation, int edgePermutation,
+                                      int slicePermutation) {
+        return Math.max(
+            Tables.sliceCornerPruning.get(slicePermutation * permutationCount + cornerPermutation),
+            Tables.sliceEdgePruning.get(slicePermutation * permutationCount + edgePermutation));
+    }
+
+    // The search stacks of one direction. Phase 1 follows the twist, flip
+    // and middle-layer edges at every node; the corners and the U and D
+    // layer edges are only brought up to date along the current path, from
+    // readyDepth, when phase 2 is about to start.
+    private class Search {
+
+        final int direction;
+        final int[] moveAt = new int[maxPhase1Length + maxPhase2Length];
+        final int[] twistAt = new int[maxPhase1Length + 1];
+        final int[] flipAt = new int[maxPhase1Length + 1];
+        final int[] sliceEdgesAt = new int[maxPhase1Length + 1];
+        final int[] cornersAt = new int[maxPhase1Length + 1];
+        final int[] upEdgesAt = new int[maxPhase1Length + 1];
+        final int[] downEdgesAt = new int[maxPhase1Length + 1];
+        final int[] cornerPermutationAt = new int[maxPhase2Length + 1];
+        final int[] edgePermutationAt = new int[maxPhase2Length + 1];
+        final int[] slicePermutationAt = new int[maxPhase2Length + 1];
+        final int[] groupSlots = new int[4];
+        final int[] groupEdges = new int[4];
+        final int[] edges = new int[8];
+        int readyDepth, distance;
+
+        Search(int direction) {
+            this.direction = direction;
+        }
+
+        void start(CubeState state) {
+            twistAt[0] = CubeCoordinates.twist(state);
+            flipAt[0] = CubeCoordinates.flip(state);
+            sliceEdgesAt[0] = CubeCoordinates.edgeGroup(state, 8);
+            cornersAt[0] = CubeCoordinates.cornerPermutation(state);
+            upEdgesAt[0] = CubeCoordinates.edgeGroup(state, 0);
+            downEdgesAt[0] = CubeCoordinates.edgeGroup(state, 4);
+            readyDepth = 0;
+            final int slice = sliceEdgesAt[0] / 24;
+            distance = Math.max(Math.max(Tables.sliceTwistPruning.get(slice * twistCount + twistAt[0]),
+                                         Tables.sliceFlipPruning.get(slice * flipCount + flipAt[0])),
+                                Tables.twistFlipPruning.get(twistAt[0] * flipCount + flipAt[0]));
+        }
+
+        // Returns true when the whole search is to stop
+        boolean searchPhase1(int depth, int remaining) {
+            if (remaining == 0) {
+                if (depth == 0 || !isPhase2Move[moveAt[depth - 1]]) {
+                    startPhase2(depth);
+                }
+                return false;
+            }
+            for (int move = 0; move < moveCount; move++) {
+                if (depth > 0 && isRedundant(move, moveAt[depth - 1])) {
+                    continue;
+                }
+                final int twist = Tables.twistMoves[twistAt[depth] * moveCount + move];
+                final int flip = Tables.flipMoves[flipAt[depth] * moveCount + move];
+                final int sliceEdges = Tables.edgeGroupMoves[sliceEdgesAt[depth] * moveCount + move];
+                final int slice = sliceEdges / 24;
+                final int distance = Math.max(Math.max(
+                    Tables.sliceTwistPruning.get(slice * twistCount + twist),
+                    Tables.sliceFlipPruning.get(slice * flipCount + flip)),
+                    Tables.twistFlipPruning.get(twist * flipCount + flip));
+                if (distance >= remaining || (distance == 0 && remaining > 1)) {
+                    continue;
+                }
+                twistAt[depth + 1] = twist;
+                flipAt[depth + 1] = flip;
+                sliceEdgesAt[depth + 1] = sliceEdges;
+                moveAt[depth] = move;
+                readyDepth = Math.min(readyDepth, depth);
+                if (searchPhase1(depth + 1, remaining - 1) || isTimeUp()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Searches phase 2 from the end of the phase 1 path. Most paths are
+        // given up on from the corners alone, before the edges are worked out.
+        void startPhase2(int phase1Length) {
+            for (int i = readyDepth; i < phase1Length; i++) {
+                final int move = moveAt[i];
+                cornersAt[i + 1] = Tables.cornerMoves[cornersAt[i] * moveCount + move];
+                upEdgesAt[i + 1] = Tables.edgeGroupMoves[upEdgesAt[i] * moveCount + move];
+                downEdgesAt[i + 1] = Tables.edgeGroupMoves[downEdgesAt[i] * moveCount + move];
+            }
+            readyDepth = phase1Length;
+
+            final int limit = Math.min(lengthLimit - phase1Length, maxPhase2Length);
+            cornerPermutationAt[0] = cornersAt[phase1Length];
+            slicePermutationAt[0] = sliceEdgesAt[phase1Length] % 24;
+            if (Tables.sliceCornerPruning.get(slicePermutationAt[0] * permutationCount
+                                              + cornerPermutationAt[0]) > limit) {
+                return;
+            }
+            putEdges(upEdgesAt[phase1Length], 0);
+            putEdges(downEdgesAt[phase1Length], 4);
+            edgePermutationAt[0] = CubeCoordinates.rankPermutation(edges);
+
+            final int distance = phase2Distance(cornerPermutationAt[0], edgePermutationAt[0],
+                                                slicePermutationAt[0]);
+            for (int phase2Length = distance; phase2Length <= limit; phase2Length++) {
+                if (searchPhase2(phase1Length, 0, phase2Length)) {
+                    final int length = phase1Length + phase2Length;
+                    bestMoves = Arrays.copyOf(moveAt, length);
+                    bestDirection = direction;
+                    lengthLimit = length - 1;
+                    if (length <= maxLength || System.nanoTime() > deadline) {
+                        isAborted = true;
+                    }
+                    return;
+                }
+                if (isAborted) {
+                    return;
+                }
+            }
+        }
+
+        // Writes the U or D layer edges of the group into the edges in slots
+        // 0 to 7, where phase 2 keeps them
+        void putEdges(int group, int firstEdge) {
+            CubeCoordinates.getEdgeGroupSlots(group, groupSlots, groupEdges);
+            for (int i = 0; i < 4; i++) {
+                edges[groupSlots[i]] = firstEdge + groupEdges[i];
+            }
+        }
+
+        boolean searchPhase2(int offset, int depth, int remaining) {
+            if (remaining == 0) {
+                return cornerPermutationAt[depth] == 0 && edgePermutationAt[depth] == 0
+                    && slicePermutationAt[depth] == 0;
+            }
+            for (int i = 0; i < phase2MoveCount; i++) {
+                final int move = phase2Moves[i];
+                if (offset + depth > 0 && isRedundant(move, moveAt[offset + depth - 1])) {
+                    continue;
+                }
+                // The edge table is only read when the corners leave the move open
+                final int cornerPermutation = Tables.cornerMoves[cornerPermutationAt[depth] * moveCount + move];
+                final int slicePermutation = Tables.slicePermutationMoves[slicePermutationAt[depth] * phase2MoveCount + i];
+                if (Tables.sliceCornerPruning.get(slicePermutation * permutationCount + cornerPermutation) >= remaining) {
+                    continue;
+                }
+                final int edgePermutation = Tables.edgePermutationMoves[edgePermutationAt[depth] * phase2MoveCount + i];
+                if (Tables.sliceEdgePruning.get(slicePermutation * permutationCount + edgePermutation) >= remaining) {
+                    continue;
+                }
+                cornerPermutationAt[depth + 1] = cornerPermutation;
+                edgePermutationAt[depth + 1] = edgePermutation;
+                slicePermutationAt[depth + 1] = slicePermutation;
+                moveAt[offset + depth] = move;
+                if (searchPhase2(offset, depth + 1, remaining - 1)) {
+                    return true;
+                }
+                if (isTimeUp()) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    // Built on first use of any solver
+    private static class Tables {
+
+        static final char[] twistMoves = new char[twistCount * moveCount];
+        static final char[] flipMoves = new char[flipCount * moveCount];
+        static final char[] sliceMoves = new char[sliceCount * moveCount];
+        static final char[] edgeGroupMoves = new char[edgeGroupCount * moveCount];
+        static final char[] cornerMoves = new char[permutationCount * moveCount];
+        static final char[] edgePermutationMoves = new char[permutationCount * phase2MoveCount];
+        static final char[] slicePermutationMoves = new char[slicePermutationCount * phase2MoveCount];
+        static final PruningTable sliceTwistPruning, sliceFlipPruning, twistFlipPruning;
+        static final PruningTable sliceCornerPruning, sliceEdgePruning;
+
+        static {
+            for (int twist = 0; twist < twistCount; twist++) {
+                for (int move = 0; move < moveCount; move++) {
+                    final CubeState state = CubeCoordinates.fromTwist(twist);
+                    state.apply(moves[move]);
+                    twistMoves[twist * moveCount + move] = (char) CubeCoordinates.twist(state);
+                }
+            }
+            for (int flip = 0; flip < flipCount; flip++) {
+                for (int move = 0; move < moveCount; move++) {
+                    final CubeState state = CubeCoordinates.fromFlip(flip);
+                    state.apply(moves[move]);
+                    flipMoves[flip * moveCount + move] = (char) CubeCoordinates.flip(state);
+                }
+            }
+            for (int slice = 0; slice < sliceCount; slice++) {
+                for (int move = 0; move < moveCount; move++) {
+                    final CubeState state = CubeCoordinates.fromSlice(slice);
+                    state.apply(moves[move]);
+                    sliceMoves[slice * moveCount + move] = (char) CubeCoordinates.slice(state);
+                }
+            }
+            for (int group = 0; group < edgeGroupCount; group++) {
+                for (int move = 0; move < moveCount; move++) {
+                    final CubeState state = CubeCoordinates.fromEdgeGroup(group);
+                    state.apply(moves[move]);
+                    edgeGroupMoves[group * moveCount + move] = (char) CubeCoordinates.edgeGroup(state, 8);
+                }
+            }
+            for (int permutation = 0; permutation < permutationCount; permutation++) {
+                for (int move = 0; move < moveCount; move++) {
+                    final CubeState state = CubeCoordinates.fromPermutations(permutation, 0, 0);
+                    state.apply(moves[move]);
+                    cornerMoves[permutation * moveCount + move] = (char) CubeCoordinates.cornerPermutation(state);
+                }
+                for (int i = 0; i < phase2MoveCount; i++) {
+                    final CubeState state = CubeCoordinates.fromPermutations(0, permutation, 0);
+                    state.apply(moves[phase2Moves[i]]);
+                    edgePermutationMoves[permutation * phase2MoveCount + i] = (char) CubeCoordinates.edgePermutation(state);
+                }
+            }
+            for (int permutation = 0; permutation < slicePermutationCount; permutation++) {
+                for (int i = 0; i < phase2MoveCount; i++) {
+                    final CubeState state = CubeCoordinates.fromPermutations(0, 0, permutation);
+                    state.apply(moves[phase2Moves[i]]);
+                    slicePermutationMoves[permutation * phase2MoveCount + i] = (char) CubeCoordinates.slicePermutation(state);
+                }
+            }
+
+            sliceTwistPruning = buildPruningTable(sliceMoves, sliceCount, twistMoves, twistCount,
+                                                  moveCount, CubeCoordinates.SOLVED_SLICE * twistCount);
+            sliceFlipPruning = buildPruningTable(sliceMoves, sliceCount, flipMoves, flipCount,
+                                                 moveCount, CubeCoordinates.SOLVED_SLICE * flipCount);
+            twistFlipPruning = buildPruningTable(twistMoves, twistCount, flipMoves, flipCount,
+                                                 moveCount, 0);
+            final char[] phase2CornerMoves = new char[permutationCount * phase2MoveCount];
+            for (int permutation = 0; permutation < permutationCount; permutation++) {
+                for (int i = 0; i < phase2MoveCount; i++) {
+                    phase2CornerMoves[permutation * phase2MoveCount + i]
+                        = cornerMoves[permutation * moveCount + phase2Moves[i]];
+                }
+            }
+            sliceCornerPruning = buildPruningTable(slicePermutationMoves, slicePermutationCount,
+                                                   phase2CornerMoves, permutationCount,
+                                                   phase2MoveCount, 0);
+            sliceEdgePruning = buildPruningTable(slicePermutationMoves, slicePermutationCount,
+                                                 edgePermutationMoves, permutationCount,
+                                                 phase2MoveCount, 0);
+        }
+
+    }
+
+    // Public methods
+
+    public TwoPhaseSolver() {
+        getTableMemoryBytes();
+        for (int direction = 0; direction < directionCount; direction++) {
+            searches[direction] = new Search(direction);
+        }
+    }
+
+    public static long getTableMemoryBytes() {
+        return (long) Character.BYTES * (Tables.twistMoves.length + Tables.flipMoves.length
+                                         + Tables.sliceMoves.length + Tables.edgeGroupMoves.length
+                                         + Tables.cornerMoves.length
+                                         + Tables.edgePermutationMoves.length
+                                         + Tables.slicePermutationMoves.length)
+             + Tables.sliceTwistPruning.getMemoryBytes() + Tables.sliceFlipPruning.getMemoryBytes()
+             + Tables.twistFlipPruning.getMemoryBytes()
+             + Tables.sliceCornerPruning.getMemoryBytes() + Tables.sliceEdgePruning.getMemoryBytes();
+    }
+
+    // Builds the tables and solves a few random states, so that the search
+    // is compiled before the first solve anyone waits for
+    public static void warmUp() {
+        final TwoPhaseSolver solver = new TwoPhaseSolver();
+        final SplittableRandom random = new SplittableRandom(0);
+        for (int i = 0; i < warmUpSolveCount; i++) {
+            solver.solve(ScramblePool.randomState(random));
+        }
+    }
+
+    public List<MoveType> solve(CubeState state) {
+        return solve(state, DEFAULT_MAX_LENGTH, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    // Returns face turns in the world frame that solve the given state. The
+    // search keeps looking for shorter solutions until it finds one of at
+    // most maxLength moves or the timeout passes, and returns the shortest
+    // one found; if it has none by then, it returns the first it finds.
+    // Throws IllegalArgumentException if the state cannot be solved, and
+    // SolveTimeoutException if no solution turns up in GIVE_UP_MILLIS.
+    public List<MoveType> solve(CubeState state, int maxLength, long timeoutMillis) {
+        if (!state.isSolvable()) {
+            throw new IllegalArgumentException("Cube state cannot be solved: " + state);
+        }
+        final CubeState start = state.reoriented();
+        final CubeState inverse = start.inverse();
+        this.maxLength = maxLength;
+        lengthLimit = maxSolutionLength;
+        bestMoves = null;
+        final long startTime = System.nanoTime();
+        deadline = startTime + timeoutMillis * 1000000L;
+        giveUpTime = startTime + Math.max(timeoutMillis, GIVE_UP_MILLIS) * 1000000L;
+        isAborted = false;
+
+        for (int direction = 0; direction < directionCount; direction++) {
+            searches[direction].start(rotate(direction < 3 ? start : inverse, direction % 3));
+        }
+        for (int length = 0; length <= Math.min(lengthLimit, maxPhase1Length) && !isAborted; length++) {
+            for (Search search : searches) {
+                if (length >= search.distance && length <= lengthLimit) {
+                    search.searchPhase1(0, length);
+                    if (isAborted) {
+                        break;
+                    }
+                }
+            }
+        }
+        if (bestMoves == null) {
+            throw new SolveTimeoutException("No solution found in "
+                                            + Math.max(timeoutMillis, GIVE_UP_MILLIS) + " ms");
+        }
+
+        // A solution of the inverse, played backwards and inverted, solves
+        // the state
+        final int[] axisMove = axisMoves[bestDirection % 3];
+        final List<MoveType> solution = new ArrayList<MoveType>();
+        for (int i = 0; i < bestMoves.length; i++) {
+            if (bestDirection < 3) {
+                solution.add(state.toPhysical(moves[axisMove[bestMoves[i]]]));
+            } else {
+                final MoveType move = moves[axisMove[bestMoves[bestMoves.length - 1 - i]]];
+                solution.add(state.toPhysical(move.getInverse()));
+            }
+        }
+        return solution;
+    }
+
+}
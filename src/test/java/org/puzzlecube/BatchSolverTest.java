@@ -0,0 +1,96 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class BatchSolverTest {
+
+    // Private methods
+
+    private static String randomScramble(SplittableRandom random) {
+        final MoveType[] faceTurns = MoveType.getFaceTurns();
+        final List<MoveType> moves = new ArrayList<MoveType>();
+        for (int i = random.nextInt(25); i > 0; i--) {
+            moves.add(faceTurns[random.nextInt(faceTurns.length)]);
+        }
+        return MoveType.toNotation(moves);
+    }
+
+    private static String[] solve(BatchSolver solver, List<String> lines) throws IOException,
+                                                                             InterruptedException {
+        final StringWriter output = new StringWriter();
+        solver.run(new BufferedReader(new StringReader(String.join("\n", lines) + "\n")), output);
+        return output.toString().split("\n", -1);
+    }
+
+    // Public methods
+
+    // More lines than the ring holds, with solve times that vary enough for
+    // the workers to finish out of order
+    @Test
+    public void writesSolutionsInInputOrder() throws IOException, InterruptedException {
+        final SplittableRandom random = new SplittableRandom(23);
+        final List<String> lines = new ArrayList<String>();
+        for (int i = 0; i < 600; i++) {
+            lines.add(i % 100 == 50 ? "R Q" : randomScramble(random));
+        }
+        final BatchSolver solver = new BatchSolver(2);
+        final String[] solutions = solve(solver, lines);
+        assertEquals(lines.size() + 1, solutions.length);
+        assertEquals("", solutions[lines.size()]);
+        assertEquals(lines.size(), solver.getLineCount());
+        assertEquals(6, solver.getErrorCount());
+        for (int i = 0; i < lines.size(); i++) {
+            if (i % 100 == 50) {
+                assertTrue(solutions[i], solutions[i].startsWith("error: "));
+                continue;
+            }
+            final CubeState state = new CubeState();
+            state.apply(MoveType.parseSequence(lines.get(i)));
+            state.apply(MoveType.parseSequence(solutions[i]));
+            assertTrue("Line " + i + ": " + lines.get(i) + " -> " + solutions[i], state.isSolved());
+        }
+    }
+
+    @Test
+    public void solvesEmptyInput() throws IOException, InterruptedException {
+        final BatchSolver solver = new BatchSolver(1);
+        final StringWriter output = new StringWriter();
+        solver.run(new BufferedReader(new StringReader("")), output);
+        assertEquals("", output.toString());
+        assertEquals(0, solver.getLineCount());
+    }
+
+}
@@ -0,0 +1,101 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class CubeCoordinatesTest {
+
+    // Public methods
+
+    @Test
+    public void permutationsRoundTrip() {
+        for (int rank = 0; rank < 24; rank++) {
+            assertEquals(rank, CubeCoordinates.rankPermutation(CubeCoordinates.unrankPermutation(rank, 4)));
+        }
+        for (int rank = 0; rank < CubeCoordinates.CORNER_PERMUTATION_COUNT; rank++) {
+            assertEquals(rank, CubeCoordinates.rankPermutation(CubeCoordinates.unrankPermutation(rank, 8)));
+        }
+        final SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 10000; i++) {
+            final int rank = random.nextInt(CubeCoordinates.FULL_EDGE_PERMUTATION_COUNT);
+            assertEquals(rank, CubeCoordinates.rankPermutation(CubeCoordinates.unrankPermutation(rank, 12)));
+        }
+        assertArrayEquals(CubeCoordinates.identity(12), CubeCoordinates.unrankPermutation(0, 12));
+    }
+
+    @Test
+    public void orientationsRoundTrip() {
+        for (int twist = 0; twist < CubeCoordinates.TWIST_COUNT; twist++) {
+            assertEquals(twist, CubeCoordinates.twist(CubeCoordinates.fromTwist(twist)));
+        }
+        for (int flip = 0; flip < CubeCoordinates.FLIP_COUNT; flip++) {
+            assertEquals(flip, CubeCoordinates.flip(CubeCoordinates.fromFlip(flip)));
+        }
+    }
+
+    @Test
+    public void edgeGroupsRoundTrip() {
+        for (int slice = 0; slice < CubeCoordinates.SLICE_COUNT; slice++) {
+            assertEquals(slice, CubeCoordinates.slice(CubeCoordinates.fromSlice(slice)));
+        }
+        assertEquals(CubeCoordinates.SOLVED_SLICE, CubeCoordinates.slice(new CubeState()));
+        for (int group = 0; group < CubeCoordinates.EDGE_GROUP_COUNT; group++) {
+            assertEquals(group, CubeCoordinates.edgeGroup(CubeCoordinates.fromEdgeGroup(group), 8));
+        }
+    }
+
+    @Test
+    public void permutationCoordinatesRoundTrip() {
+        final SplittableRandom random = new SplittableRandom(2);
+        for (int i = 0; i < 1000; i++) {
+            final int corners = random.nextInt(CubeCoordinates.CORNER_PERMUTATION_COUNT);
+            final int edges = random.nextInt(CubeCoordinates.CORNER_PERMUTATION_COUNT);
+            final int slice = random.nextInt(24);
+            final CubeState state = CubeCoordinates.fromPermutations(corners, edges, slice);
+            assertEquals(corners, CubeCoordinates.cornerPermutation(state));
+            assertEquals(edges, CubeCoordinates.edgePermutation(state));
+            assertEquals(slice, CubeCoordinates.slicePermutation(state));
+        }
+    }
+
+    @Test
+    public void indicesRoundTrip() {
+        final SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < 1000; i++) {
+            final CubeState state = ScramblePool.randomState(random);
+            final int cornerIndex = CubeCoordinates.cornerIndex(state);
+            final long edgeIndex = CubeCoordinates.edgeIndex(state);
+            final CubeState rebuilt = CubeCoordinates.fromIndices(cornerIndex, edgeIndex);
+            assertEquals(state, rebuilt);
+            assertEquals(cornerIndex, CubeCoordinates.cornerIndex(rebuilt));
+            assertEquals(edgeIndex, CubeCoordinates.edgeIndex(rebuilt));
+        }
+    }
+
+}
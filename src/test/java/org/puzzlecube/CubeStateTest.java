@@ -0,0 +1,139 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class CubeStateTest {
+
+    // Private methods
+
+    private static List<MoveType> randomMoves(SplittableRandom random, int count) {
+        final List<MoveType> moves = new ArrayList<MoveType>();
+        for (int i = 0; i < count; i++) {
+            moves.add(MoveType.values()[random.nextInt(1, MoveType.values().length)]);
+        }
+        return moves;
+    }
+
+    // Public methods
+
+    // The move tables agree with turning the stickers, rotations and slice
+    // moves included
+    @Test
+    public void movesMatchStickers() {
+        final SplittableRandom random = new SplittableRandom(19);
+        for (int trial = 0; trial < 200; trial++) {
+            final CubeState state = new CubeState();
+            final StickerCube stickers = new StickerCube(3);
+            for (MoveType move : randomMoves(random, 30)) {
+                state.apply(move);
+                stickers.apply(Turn.of(move, 3));
+                assertEquals(move.getNotation(), CubeState.fromStickers(stickers), state);
+            }
+        }
+    }
+
+    @Test
+    public void movesHaveTheirOrder() {
+        for (MoveType move : MoveType.values()) {
+            if (move == MoveType.NO_MOVE) {
+                continue;
+            }
+            final CubeState state = new CubeState();
+            state.apply(move);
+            assertFalse(move.getNotation(), state.equals(new CubeState()));
+            state.apply(move.getInverse());
+            assertEquals(move.getNotation(), new CubeState(), state);
+            for (int i = 0; i < (move.isHalfTurn() ? 2 : 4); i++) {
+                state.apply(move);
+            }
+            assertEquals(move.getNotation(), new CubeState(), state);
+        }
+    }
+
+    @Test
+    public void composesAndInverts() {
+        final SplittableRandom random = new SplittableRandom(20);
+        for (int trial = 0; trial < 200; trial++) {
+            final List<MoveType> first = randomMoves(random, 20);
+            final List<MoveType> second = randomMoves(random, 20);
+            final CubeState expected = new CubeState();
+            expected.apply(first);
+            expected.apply(second);
+            final CubeState moves = new CubeState();
+            moves.apply(second);
+            final CubeState state = new CubeState();
+            state.apply(first);
+            state.apply(moves);
+            assertEquals(expected, state);
+            state.apply(moves.inverse());
+            final CubeState firstOnly = new CubeState();
+            firstOnly.apply(first);
+            assertEquals(firstOnly, state);
+        }
+    }
+
+    @Test
+    public void solvesWithRotations() {
+        final CubeState state = new CubeState();
+        state.apply(MoveType.parseSequence("x z' x"));
+        assertTrue(state.isSolved());
+        assertEquals(new CubeState(), state.reoriented());
+        state.apply(MoveType.RIGHT_C);
+        assertFalse(state.isSolved());
+        assertTrue(state.isSolvable());
+    }
+
+    @Test
+    public void checksSolvability() {
+        final int[] corners = CubeCoordinates.identity(CubeState.CORNER_COUNT);
+        final int[] edges = CubeCoordinates.identity(CubeState.EDGE_COUNT);
+        final int[] twists = new int[CubeState.CORNER_COUNT];
+        final int[] flips = new int[CubeState.EDGE_COUNT];
+        assertTrue(CubeState.fromPieces(corners, twists, edges, flips).isSolvable());
+        twists[0] = 1;
+        assertFalse(CubeState.fromPieces(corners, twists, edges, flips).isSolvable());
+        twists[1] = 2;
+        assertTrue(CubeState.fromPieces(corners, twists, edges, flips).isSolvable());
+        flips[3] = 1;
+        assertFalse(CubeState.fromPieces(corners, twists, edges, flips).isSolvable());
+        flips[7] = 1;
+        assertTrue(CubeState.fromPieces(corners, twists, edges, flips).isSolvable());
+        edges[0] = 1;
+        edges[1] = 0;
+        assertFalse(CubeState.fromPieces(corners, twists, edges, flips).isSolvable());
+        corners[0] = 1;
+        corners[1] = 0;
+        assertTrue(CubeState.fromPieces(corners, twists, edges, flips).isSolvable());
+    }
+
+}
@@ -0,0 +1,143 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class CubieTest {
+
+    // Private methods
+
+    private static Cubie cubie(int size, int x, int y, int z) {
+        return new Cubie(size, x, y, z, null, null, null, null, null, null);
+    }
+
+    private static int[] pose(Cubie cubie) {
+        return new int[] {cubie.getX(), cubie.getY(), cubie.getZ(), cubie.getOrientation()};
+    }
+
+    // The integer rotation of a committed pose, row by row, read back from
+    // the model matrix
+    private static int[] rotation(Cubie cubie) {
+        final float[] model = new float[16];
+        cubie.getModel(model, 0);
+        final int[] rotation = new int[9];
+        for (int row = 0; row < 3; row++) {
+            for (int column = 0; column < 3; column++) {
+                rotation[row * 3 + column] = (int) Math.signum(model[column * 4 + row]);
+            }
+        }
+        return rotation;
+    }
+
+    private static List<Turn> randomTurns(SplittableRandom random, int size, int count) {
+        final int[] directions = {1, -1, 2};
+        final List<Turn> turns = new ArrayList<Turn>();
+        for (int i = 0; i < count; i++) {
+            final Axis axis = Axis.values()[random.nextInt(3)];
+            final int firstLayer = random.nextInt(size);
+            final int lastLayer = firstLayer + random.nextInt(size - firstLayer);
+            turns.add(new Turn(size, axis, firstLayer, lastLayer, directions[random.nextInt(3)]));
+        }
+        return turns;
+    }
+
+    // Public methods
+
+    @Test
+    public void reachesEveryOrientation() {
+        final Set<Integer> orientations = new HashSet<Integer>();
+        final SplittableRandom random = new SplittableRandom(15);
+        final Cubie cubie = cubie(3, 1, 1, 1);
+        for (int i = 0; i < 1000; i++) {
+            cubie.commitTurn(Axis.values()[random.nextInt(3)], 1);
+            orientations.add(cubie.getOrientation());
+        }
+        assertEquals(24, orientations.size());
+    }
+
+    @Test
+    public void undoesTurns() {
+        final SplittableRandom random = new SplittableRandom(16);
+        final Cubie cubie = cubie(5, 0, 1, 4);
+        for (int i = 0; i < 1000; i++) {
+            final Axis axis = Axis.values()[random.nextInt(3)];
+            final int[] before = pose(cubie);
+            cubie.commitTurn(axis, 1);
+            assertNotEquals(before[3], cubie.getOrientation());
+            cubie.commitTurn(axis, -1);
+            assertArrayEquals(before, pose(cubie));
+            cubie.commitTurn(axis, 2);
+            cubie.commitTurn(axis, 1);
+            cubie.commitTurn(axis, 1);
+            assertArrayEquals(before, pose(cubie));
+            cubie.commitTurn(axis, random.nextInt(4));
+        }
+    }
+
+    // However many turns are played, each sticker the cubie poses imply is
+    // where StickerCube has it
+    @Test
+    public void posesMatchStickers() {
+        final SplittableRandom random = new SplittableRandom(17);
+        for (int size = 2; size <= 5; size++) {
+            final PuzzleCubeGame game = new PuzzleCubeGame(size);
+            final byte[] start = game.saveSnapshot();
+            game.apply(randomTurns(random, size, 500));
+            final byte[] state = game.saveSnapshot();
+            final StickerCube stickers = game.getTargetStickers();
+            final int stickerCount = StickerCube.FACE_COUNT * size * size;
+            for (int i = stickerCount; i < state.length; i += 4) {
+                final Cubie cubie = cubie(size, 0, 0, 0);
+                cubie.setPose(state[i], state[i + 1], state[i + 2], state[i + 3]);
+                final int[] rotation = rotation(cubie);
+                for (int face = 0; face < StickerCube.FACE_COUNT; face++) {
+                    final int axis = StickerCube.getNormalAxis(face).ordinal();
+                    final int sign = StickerCube.getNormalSign(face);
+                    if (start[i + axis] != (sign > 0 ? size - 1 : 0)) {
+                        continue;
+                    }
+                    int turnedFace = -1;
+                    for (int row = 0; row < 3; row++) {
+                        if (rotation[row * 3 + axis] != 0) {
+                            turnedFace = StickerCube.findFace(Axis.values()[row],
+                                                              rotation[row * 3 + axis] * sign);
+                        }
+                    }
+                    assertEquals(face, stickers.getSticker(turnedFace, state[i], state[i + 1], state[i + 2]));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class InputQueueTest {
+
+    // Public methods
+
+    @Test
+    public void roundsCapacityUp() {
+        assertEquals(1, new InputQueue(1).getCapacity());
+        assertEquals(8, new InputQueue(5).getCapacity());
+        assertEquals(64, new InputQueue(64).getCapacity());
+    }
+
+    @Test
+    public void keepsEventsInOrder() {
+        final InputQueue queue = new InputQueue(4);
+        for (int round = 0; round < 10; round++) {
+            assertTrue(queue.offer(InputQueue.Type.KEY_PRESSED, round, 0, 0));
+            assertTrue(queue.offer(InputQueue.Type.CURSOR_MOVED, 0, round, -round));
+            assertTrue(queue.offer(InputQueue.Type.KEY_RELEASED, round, 0, 0));
+            assertEquals(3, queue.size());
+            assertTrue(queue.poll());
+            assertEquals(InputQueue.Type.KEY_PRESSED, queue.getType());
+            assertEquals(round, queue.getCode());
+            assertTrue(queue.poll());
+            assertEquals(InputQueue.Type.CURSOR_MOVED, queue.getType());
+            assertEquals(round, queue.getX(), 0);
+            assertEquals(-round, queue.getY(), 0);
+            assertTrue(queue.poll());
+            assertEquals(InputQueue.Type.KEY_RELEASED, queue.getType());
+            assertFalse(queue.poll());
+        }
+    }
+
+    @Test
+    public void dropsEventsWhenFull() {
+        final InputQueue queue = new InputQueue(2);
+        assertTrue(queue.offer(InputQueue.Type.KEY_PRESSED, 1, 0, 0));
+        assertTrue(queue.offer(InputQueue.Type.KEY_PRESSED, 2, 0, 0));
+        assertFalse(queue.offer(InputQueue.Type.KEY_PRESSED, 3, 0, 0));
+        assertTrue(queue.poll());
+        assertTrue(queue.offer(InputQueue.Type.KEY_PRESSED, 4, 0, 0));
+        assertTrue(queue.poll());
+        assertEquals(2, queue.getCode());
+        assertTrue(queue.poll());
+        assertEquals(4, queue.getCode());
+    }
+
+    // One producer and one consumer thread, as on the render and simulation
+    // threads: every event arrives once, whole and in order
+    @Test
+    public void handsEventsBetweenThreads() throws InterruptedException {
+        final int eventCount = 100000;
+        final InputQueue queue = new InputQueue(64);
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final Thread consumer = new Thread(() -> {
+            int expected = 0;
+            while (expected < eventCount) {
+                if (!queue.poll()) {
+                    Thread.yield();
+                    continue;
+                }
+                if (queue.getCode() != expected || queue.getX() != expected || queue.getY() != -expected) {
+                    failure.set("Event " + expected + " arrived as " + queue.getCode() + ", " + queue.getX()
+                                + ", " + queue.getY());
+                    return;
+                }
+                expected++;
+            }
+        });
+        consumer.setDaemon(true);
+        consumer.start();
+        for (int i = 0; i < eventCount; i++) {
+            while (!queue.offer(InputQueue.Type.CURSOR_MOVED, i, i, -i)) {
+                if (!consumer.isAlive()) {
+                    break;
+                }
+                Thread.yield();
+            }
+        }
+        consumer.join(30000);
+        assertEquals(null, failure.get());
+        assertFalse(consumer.isAlive());
+        assertEquals(0, queue.size());
+    }
+
+}
@@ -0,0 +1,116 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class LayerIndexTest {
+
+    // Private methods
+
+    private static List<Cubie> buildCubies(int size) {
+        final List<Cubie> cubies = new ArrayList<Cubie>();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    cubies.add(new Cubie(size, x, y, z, null, null, null, null, null, null));
+                }
+            }
+        }
+        return cubies;
+    }
+
+    // Each layer holds exactly the cubies a scan would find in it
+    private static void checkLayers(LayerIndex index, List<Cubie> cubies, int size) {
+        for (Axis axis : Axis.values()) {
+            for (int layer = 0; layer < size; layer++) {
+                final List<Cubie> expected = new ArrayList<Cubie>();
+                for (Cubie cubie : cubies) {
+                    if (cubie.getPosition(axis) == layer) {
+                        expected.add(cubie);
+                    }
+                }
+                final List<Cubie> actual = index.get(axis, layer);
+                assertEquals(expected.size(), actual.size());
+                assertEquals(new HashSet<Cubie>(expected), new HashSet<Cubie>(actual));
+            }
+        }
+    }
+
+    // Public methods
+
+    @Test
+    public void followsTurns() {
+        final SplittableRandom random = new SplittableRandom(18);
+        for (int size = 2; size <= 6; size++) {
+            final List<Cubie> cubies = buildCubies(size);
+            final LayerIndex index = new LayerIndex(0, size - 1);
+            for (Cubie cubie : cubies) {
+                index.add(cubie);
+            }
+            checkLayers(index, cubies, size);
+            for (int i = 0; i < 200; i++) {
+                final Axis axis = Axis.values()[random.nextInt(3)];
+                final int firstLayer = random.nextInt(size);
+                final int lastLayer = firstLayer + random.nextInt(size - firstLayer);
+                final int direction = random.nextInt(1, 4);
+                final List<Cubie> turning = new ArrayList<Cubie>();
+                for (int layer = firstLayer; layer <= lastLayer; layer++) {
+                    turning.addAll(index.get(axis, layer));
+                }
+                for (Cubie cubie : turning) {
+                    index.remove(cubie);
+                    cubie.commitTurn(axis, direction);
+                    index.add(cubie);
+                }
+                checkLayers(index, cubies, size);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAddingTwice() {
+        final Cubie cubie = new Cubie(3, 0, 0, 0, null, null, null, null, null, null);
+        final LayerIndex index = new LayerIndex(0, 2);
+        index.add(cubie);
+        index.add(cubie);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRemovingMissingCubies() {
+        new LayerIndex(0, 2).remove(new Cubie(3, 0, 0, 0, null, null, null, null, null, null));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void keepsLayersReadOnly() {
+        new LayerIndex(0, 2).get(Axis.X, 0).add(new Cubie(3, 0, 0, 0, null, null, null, null, null, null));
+    }
+
+}
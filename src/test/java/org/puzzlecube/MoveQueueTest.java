@@ -0,0 +1,96 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class MoveQueueTest {
+
+    // Private methods
+
+    private static MoveQueue queue(String sequence, int size) {
+        final MoveQueue queue = new MoveQueue();
+        queue.addAll(Turn.parseSequence(sequence, size));
+        return queue;
+    }
+
+    // Public methods
+
+    @Test
+    public void mergesTurns() {
+        assertEquals("", Turn.toNotation(queue("R R'", 3)));
+        assertEquals("R2", Turn.toNotation(queue("R R", 3)));
+        assertEquals("R'", Turn.toNotation(queue("R2 R", 3)));
+        assertEquals("R2 L", Turn.toNotation(queue("R L R", 3)));
+        assertEquals("x2", Turn.toNotation(queue("x x", 3)));
+        assertEquals("R U R", Turn.toNotation(queue("R U R", 3)));
+        final MoveQueue queue = queue("R L R R' R'", 3);
+        assertEquals("L", Turn.toNotation(queue));
+        assertEquals(3, queue.getSimplifiedCount());
+    }
+
+    // Simplifying never changes what the queued turns do, on any cube; the
+    // turns are picked from few layers of one or two axes so that most of
+    // them merge
+    @Test
+    public void keepsTheState() {
+        final SplittableRandom random = new SplittableRandom(14);
+        final int[] directions = {1, -1, 2};
+        for (int size = 2; size <= 5; size++) {
+            for (int trial = 0; trial < 200; trial++) {
+                final List<Turn> turns = new ArrayList<Turn>();
+                for (int i = 0; i < 40; i++) {
+                    final Axis axis = Axis.values()[random.nextInt(trial % 2 + 1)];
+                    final int firstLayer = random.nextInt(2);
+                    final int lastLayer = firstLayer + random.nextInt(size - firstLayer);
+                    turns.add(new Turn(size, axis, firstLayer, lastLayer, directions[random.nextInt(3)]));
+                }
+                final MoveQueue queue = new MoveQueue();
+                queue.addAll(turns);
+                assertTrue(queue.size() <= turns.size());
+                final StickerCube expected = new StickerCube(size);
+                expected.apply(turns);
+                final StickerCube actual = new StickerCube(size);
+                actual.apply(queue);
+                assertEquals(Turn.toNotation(turns), expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void removesInOrder() {
+        final MoveQueue queue = queue("R U F", 3);
+        assertEquals(Turn.fromNotation("R", 3), queue.remove());
+        assertEquals(Turn.fromNotation("U", 3), queue.remove());
+        assertEquals(Turn.fromNotation("F", 3), queue.remove());
+        assertTrue(queue.isEmpty());
+    }
+
+}
@@ -0,0 +1,137 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class OptimalSolverTest {
+
+    // Private fields
+
+    private static final MoveType[] faceTurns = MoveType.getFaceTurns();
+
+    private static OptimalSolver solver;
+
+    // Private methods
+
+    // Whether some sequence of exactly depth face turns solves the state,
+    // never turning the same face twice in a row
+    private static boolean isSolvableIn(CubeState state, int depth, MoveType previous) {
+        if (depth == 0) {
+            return state.isSolved();
+        }
+        for (MoveType move : faceTurns) {
+            if (previous != null && move.getAxis() == previous.getAxis()
+                && move.getLayer() == previous.getLayer()) {
+                continue;
+            }
+            final CubeState next = state.copy();
+            next.apply(move);
+            if (isSolvableIn(next, depth - 1, move)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int bruteForceLength(CubeState state) {
+        int depth = 0;
+        while (!isSolvableIn(state, depth, null)) {
+            depth++;
+        }
+        return depth;
+    }
+
+    // Public methods
+
+    @BeforeClass
+    public static void createSolver() {
+        solver = new OptimalSolver(2);
+    }
+
+    @AfterClass
+    public static void dropSolver() {
+        solver = null;
+    }
+
+    // Short scrambles, so that a brute-force search can prove what the
+    // shortest solution is
+    @Test
+    public void findsShortestSolutions() {
+        final SplittableRandom random = new SplittableRandom(21);
+        for (int trial = 0; trial < 30; trial++) {
+            final List<MoveType> scramble = new ArrayList<MoveType>();
+            for (int i = 0; i < 5; i++) {
+                scramble.add(faceTurns[random.nextInt(faceTurns.length)]);
+            }
+            final CubeState state = new CubeState();
+            state.apply(scramble);
+            final OptimalSolver.Result result = solver.solve(state.copy());
+            assertTrue(result.isOptimal());
+            assertEquals(MoveType.toNotation(scramble), bruteForceLength(state), result.getMoves().size());
+            assertEquals(result.getMoves().size(), result.getLowerBound());
+            state.apply(result.getMoves());
+            assertTrue(state.isSolved());
+        }
+    }
+
+    @Test
+    public void solvesLongerScrambles() {
+        final CubeState state = new CubeState();
+        state.apply(MoveType.parseSequence("R U2 F' L D B2 R' U F2 D'"));
+        final OptimalSolver.Result result = solver.solve(state.copy());
+        assertTrue(result.isOptimal());
+        assertTrue(result.getMoves().size() <= 10);
+        state.apply(result.getMoves());
+        assertTrue(state.isSolved());
+    }
+
+    @Test
+    public void solvesRotatedCubes() {
+        final CubeState state = new CubeState();
+        state.apply(MoveType.parseSequence("x R U R' U' z'"));
+        final OptimalSolver.Result result = solver.solve(state.copy());
+        assertEquals(4, result.getMoves().size());
+        state.apply(result.getMoves());
+        assertTrue(state.isSolved());
+    }
+
+    @Test
+    public void returnsNothingWithoutTime() {
+        final CubeState state = ScramblePool.randomState(new SplittableRandom(22));
+        final OptimalSolver.Result result = solver.solve(state, 0);
+        assertFalse(result.isOptimal());
+        assertTrue(result.getMoves().isEmpty());
+    }
+
+}
@@ -0,0 +1,157 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+public class RendererTest {
+
+    // Private fields
+
+    private static final int imageSize = 128;
+    private static final int background = 0x404040;
+    private static final int white = 0xffffff;
+    private static final int yellow = 0xbfbf00;
+
+    // Private methods
+
+    private static boolean isNear(int rgb, int expected) {
+        for (int shift = 0; shift < 24; shift += 8) {
+            if (Math.abs((rgb >> shift & 0xff) - (expected >> shift & 0xff)) > 2) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] getPixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static BufferedImage read(Path path) throws IOException {
+        final BufferedImage image = ImageIO.read(path.toFile());
+        assertEquals(imageSize, image.getWidth());
+        assertEquals(imageSize, image.getHeight());
+        return image;
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        final String[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+
+    private static void deleteTree(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted((a, b) -> b.compareTo(a)).toArray(Path[]::new)) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    // Public methods
+
+    @Test
+    public void flipsReadbackRows() {
+        final ByteBuffer pixels = ByteBuffer.allocateDirect(3 * 2 * 4);
+        for (int i = 0; i < pixels.capacity(); i++) {
+            pixels.put(i, (byte) (i * 10 + 5));
+        }
+        final BufferedImage image = Renderer.toImage(pixels, 3, 2);
+        assertEquals(3, image.getWidth());
+        assertEquals(2, image.getHeight());
+        for (int y = 0; y < 2; y++) {
+            for (int x = 0; x < 3; x++) {
+                final int pixel = ((1 - y) * 3 + x) * 4;
+                final int expected = (pixel * 10 + 5) << 16 | (pixel * 10 + 15) << 8 | (pixel * 10 + 25);
+                assertEquals(expected, image.getRGB(x, y) & 0xffffff);
+            }
+        }
+    }
+
+    // Runs both command-line render modes on a real GL context, which needs
+    // a display or Mesa's libOSMesa; without either it is skipped. The
+    // default camera looks down on the front right corner, so a solved cube
+    // shows white on top and no yellow, on the background everywhere else.
+    @Test
+    public void rendersCubes() throws IOException, InterruptedException {
+        final Path directory = Files.createTempDirectory("renderer");
+        try {
+            final String[] size = {"--width", String.valueOf(imageSize), "--height", String.valueOf(imageSize)};
+            final Path solvedPath = directory.resolve("solved.png");
+            try {
+                App.main(concat(new String[] {"--render", "", solvedPath.toString()}, size));
+            } catch (RuntimeException | LinkageError e) {
+                Assume.assumeNoException("No offscreen GL context", e);
+            }
+            final BufferedImage solved = read(solvedPath);
+            assertTrue(isNear(solved.getRGB(0, 0), background));
+            assertTrue(isNear(solved.getRGB(imageSize - 1, imageSize - 1), background));
+            long whiteY = 0;
+            int whiteCount = 0;
+            for (int y = 0; y < imageSize; y++) {
+                for (int x = 0; x < imageSize; x++) {
+                    final int rgb = solved.getRGB(x, y);
+                    assertFalse(isNear(rgb, yellow));
+                    if (isNear(rgb, white)) {
+                        whiteY += y;
+                        whiteCount++;
+                    }
+                }
+            }
+            assertTrue(whiteCount > 0);
+            assertTrue(whiteY / whiteCount < imageSize / 2);
+            assertFalse(isNear(solved.getRGB(imageSize / 2, imageSize / 2), background));
+
+            final Path input = directory.resolve("scrambles.txt");
+            Files.write(input, "\nR\nR Q\nR U\n".getBytes(StandardCharsets.UTF_8));
+            final Path output = directory.resolve("images");
+            App.main(concat(new String[] {"--render-batch", input.toString(), output.toString(),
+                                          "--threads", "2"}, size));
+            assertTrue(Arrays.equals(getPixels(solved), getPixels(read(output.resolve("000001.png")))));
+            final BufferedImage turned = read(output.resolve("000002.png"));
+            assertFalse(Arrays.equals(getPixels(solved), getPixels(turned)));
+            assertFalse(Files.exists(output.resolve("000003.png")));
+            assertFalse(Arrays.equals(getPixels(turned), getPixels(read(output.resolve("000004.png")))));
+        } finally {
+            deleteTree(directory);
+        }
+    }
+
+}
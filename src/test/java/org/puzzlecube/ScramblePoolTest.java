@@ -0,0 +1,111 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ScramblePoolTest {
+
+    // Public methods
+
+    @Test
+    public void makesSolvableStates() {
+        final SplittableRandom random = new SplittableRandom(10);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(ScramblePool.randomState(random).isSolvable());
+        }
+    }
+
+    @Test
+    public void scramblesReachTheirState() {
+        final TwoPhaseSolver solver = new TwoPhaseSolver();
+        for (long seed = 0; seed < 20; seed++) {
+            final CubeState expected = ScramblePool.randomState(new SplittableRandom(seed));
+            final List<MoveType> scramble = ScramblePool.generate(new SplittableRandom(seed), solver);
+            assertTrue(scramble.size() <= TwoPhaseSolver.DEFAULT_MAX_LENGTH);
+            final CubeState state = new CubeState();
+            state.apply(scramble);
+            assertEquals(expected.reoriented(), state.reoriented());
+        }
+    }
+
+    @Test
+    public void handsOutScrambles() throws InterruptedException {
+        final ScramblePool pool = new ScramblePool(4, 2, 11);
+        pool.start();
+        try {
+            for (int i = 0; i < 10; i++) {
+                final CubeState state = new CubeState();
+                state.apply(pool.take());
+                assertTrue(state.isSolvable());
+                assertFalse(state.isSolved());
+            }
+        } finally {
+            pool.stop();
+        }
+    }
+
+    // A consumer waiting when the pool stops gets what is left and then an
+    // exception, rather than waiting forever. Stopping right after the start
+    // races the consumer against the producers.
+    @Test
+    public void stopsWaitingConsumers() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            final ScramblePool pool = new ScramblePool(1, 1, i);
+            final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            final Thread consumer = new Thread(() -> {
+                try {
+                    while (true) {
+                        pool.take();
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            pool.start();
+            consumer.start();
+            pool.stop();
+            consumer.join(10000);
+            if (consumer.isAlive()) {
+                consumer.interrupt();
+                fail("take() kept waiting after the pool stopped");
+            }
+            assertTrue(failure.get() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsTakesBeforeStart() throws InterruptedException {
+        new ScramblePool(1, 1, 13).take();
+    }
+
+}
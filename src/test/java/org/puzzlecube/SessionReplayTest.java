@@ -0,0 +1,154 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SessionReplayTest {
+
+    // Private fields
+
+    private static final int SNAPSHOT_INTERVAL = 3;
+
+    private Path path;
+
+    // Private methods
+
+    private static List<Turn> randomTurns(SplittableRandom random, int size, int count) {
+        final List<Turn> turns = new ArrayList<Turn>();
+        for (int i = 0; i < count; i++) {
+            final Axis axis = Axis.values()[random.nextInt(3)];
+            final int firstLayer = random.nextInt(size);
+            final int lastLayer = firstLayer + random.nextInt(size - firstLayer);
+            final int[] directions = {1, -1, 2};
+            turns.add(new Turn(size, axis, firstLayer, lastLayer, directions[random.nextInt(3)]));
+        }
+        return turns;
+    }
+
+    private void record(int size, List<Turn> turns) throws IOException {
+        final PuzzleCubeGame game = new PuzzleCubeGame(size);
+        try (SessionRecorder recorder = new SessionRecorder(path, size, SNAPSHOT_INTERVAL)) {
+            game.setRecorder(recorder);
+            game.apply(turns);
+            game.setRecorder(null);
+        }
+    }
+
+    // Seeks to every move, which lands on, just before and just after each
+    // snapshot
+    private void checkSeeks(int size, List<Turn> turns) throws IOException {
+        final SessionReplay replay = new SessionReplay(path);
+        assertEquals(size, replay.getSize());
+        assertEquals(turns.size(), replay.getMoveCount());
+        // A snapshot is taken before the move that falls due, none after the last
+        assertEquals(1 + (turns.size() - 1) / SNAPSHOT_INTERVAL, replay.getSnapshotCount());
+        for (int index = 0; index <= turns.size(); index++) {
+            final PuzzleCubeGame expected = new PuzzleCubeGame(size);
+            expected.apply(turns.subList(0, index));
+            final PuzzleCubeGame game = new PuzzleCubeGame(size);
+            replay.seekToMove(index, game);
+            assertEquals("Seeking to move " + index, expected.getTargetStickers(), game.getTargetStickers());
+            assertEquals(index, replay.getMoveIndex());
+        }
+    }
+
+    // Public methods
+
+    @Before
+    public void createFile() throws IOException {
+        path = Files.createTempFile("session", ".log");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    public void seeksToEveryMove() throws IOException {
+        final List<Turn> turns = randomTurns(new SplittableRandom(5), 3, 4 * SNAPSHOT_INTERVAL + 1);
+        record(3, turns);
+        checkSeeks(3, turns);
+    }
+
+    @Test
+    public void seeksOnBigCubes() throws IOException {
+        final List<Turn> turns = randomTurns(new SplittableRandom(6), 6, 3 * SNAPSHOT_INTERVAL);
+        record(6, turns);
+        checkSeeks(6, turns);
+    }
+
+    @Test
+    public void seeksBackward() throws IOException {
+        final List<Turn> turns = randomTurns(new SplittableRandom(7), 3, 3 * SNAPSHOT_INTERVAL);
+        record(3, turns);
+        final SessionReplay replay = new SessionReplay(path);
+        for (int index = turns.size(); index >= 0; index--) {
+            final PuzzleCubeGame expected = new PuzzleCubeGame(3);
+            expected.apply(turns.subList(0, index));
+            final PuzzleCubeGame game = new PuzzleCubeGame(3);
+            replay.seekToMove(index, game);
+            assertEquals("Seeking to move " + index, expected.getTargetStickers(), game.getTargetStickers());
+        }
+    }
+
+    @Test
+    public void seeksToEnd() throws IOException {
+        final List<Turn> turns = randomTurns(new SplittableRandom(8), 3, 2 * SNAPSHOT_INTERVAL + 2);
+        record(3, turns);
+        final SessionReplay replay = new SessionReplay(path);
+        final PuzzleCubeGame expected = new PuzzleCubeGame(3);
+        expected.apply(turns);
+        final PuzzleCubeGame game = new PuzzleCubeGame(3);
+        replay.seekToTime(Long.MAX_VALUE, game);
+        assertEquals(expected.getTargetStickers(), game.getTargetStickers());
+        assertFalse(replay.hasNext());
+    }
+
+    @Test
+    public void replaysEmptySessions() throws IOException {
+        record(3, new ArrayList<Turn>());
+        final SessionReplay replay = new SessionReplay(path);
+        assertEquals(0, replay.getMoveCount());
+        assertEquals(1, replay.getSnapshotCount());
+        final PuzzleCubeGame game = new PuzzleCubeGame(3);
+        game.apply(Turn.parseSequence("R U", 3));
+        replay.seekToMove(0, game);
+        assertTrue(game.isSolved());
+    }
+
+}
@@ -0,0 +1,150 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class SolutionCacheTest {
+
+    // Private fields
+
+    private static final TwoPhaseSolver solver = new TwoPhaseSolver();
+
+    // Private methods
+
+    private static List<MoveType> randomMoves(SplittableRandom random, int count) {
+        final MoveType[] faceTurns = MoveType.getFaceTurns();
+        final List<MoveType> moves = new ArrayList<MoveType>();
+        for (int i = 0; i < count; i++) {
+            moves.add(faceTurns[random.nextInt(faceTurns.length)]);
+        }
+        return moves;
+    }
+
+    private static StickerCube cube(List<MoveType> moves) {
+        final StickerCube cube = new StickerCube(3);
+        for (MoveType move : moves) {
+            cube.apply(Turn.of(move, 3));
+        }
+        return cube;
+    }
+
+    private static boolean isSolvedBy(StickerCube cube, List<MoveType> solution) {
+        final StickerCube solved = cube.copy();
+        for (MoveType move : solution) {
+            solved.apply(Turn.of(move, 3));
+        }
+        return solved.isSolved();
+    }
+
+    // Public methods
+
+    // The image of a scramble under a symmetry makes the conjugate state,
+    // which must share the key, and the cached solution of one must solve
+    // every other
+    @Test
+    public void answersConjugates() {
+        final SplittableRandom random = new SplittableRandom(24);
+        for (boolean isOffHeap : new boolean[] {false, true}) {
+            for (int trial = 0; trial < 10; trial++) {
+                final List<MoveType> scramble = randomMoves(random, 20);
+                final StickerCube cube = cube(scramble);
+                final SolutionCache cache = new SolutionCache(16, isOffHeap);
+                final SolutionCache.Key key = SolutionCache.getKey(cube);
+                cache.put(key, solver.solve(CubeState.fromStickers(cube)));
+                for (int symmetry = 0; symmetry < CubeSymmetry.SYMMETRY_COUNT; symmetry++) {
+                    final StickerCube image = cube(CubeSymmetry.transform(scramble, symmetry));
+                    final SolutionCache.Key imageKey = SolutionCache.getKey(image);
+                    assertEquals(key, imageKey);
+                    final List<MoveType> solution = cache.get(imageKey);
+                    assertNotNull(solution);
+                    assertTrue("Symmetry " + symmetry, isSolvedBy(image, solution));
+                }
+                assertEquals(1, cache.getSize());
+                assertEquals(CubeSymmetry.SYMMETRY_COUNT, cache.getHits());
+            }
+        }
+    }
+
+    @Test
+    public void answersRotatedAndRecoloredCubes() {
+        final SplittableRandom random = new SplittableRandom(25);
+        final SolutionCache cache = new SolutionCache(16, false);
+        final StickerCube cube = cube(randomMoves(random, 20));
+        cache.solve(cube, solver);
+
+        final StickerCube rotated = cube.copy();
+        rotated.apply(Turn.of(MoveType.X_ROTATION_C, 3));
+        rotated.apply(Turn.of(MoveType.Z_ROTATION_CC, 3));
+        assertEquals(SolutionCache.getKey(cube), SolutionCache.getKey(rotated));
+        assertTrue(isSolvedBy(rotated, cache.get(SolutionCache.getKey(rotated))));
+
+        final byte[] colors = {3, 5, 0, 4, 1, 2};
+        final byte[] stickers = cube.toBytes();
+        for (int i = 0; i < stickers.length; i++) {
+            stickers[i] = colors[stickers[i]];
+        }
+        final StickerCube recolored = StickerCube.fromBytes(3, stickers, 0);
+        assertEquals(SolutionCache.getKey(cube), SolutionCache.getKey(recolored));
+        assertTrue(isSolvedBy(recolored, cache.get(SolutionCache.getKey(recolored))));
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() {
+        final SplittableRandom random = new SplittableRandom(26);
+        final SolutionCache cache = new SolutionCache(2, true);
+        final StickerCube[] cubes = new StickerCube[3];
+        for (int i = 0; i < cubes.length; i++) {
+            cubes[i] = cube(randomMoves(random, 20));
+        }
+        cache.solve(cubes[0], solver);
+        cache.solve(cubes[1], solver);
+        assertNotNull(cache.get(SolutionCache.getKey(cubes[0])));
+        cache.solve(cubes[2], solver);
+        assertEquals(2, cache.getSize());
+        assertNull(cache.get(SolutionCache.getKey(cubes[1])));
+        assertTrue(isSolvedBy(cubes[0], cache.get(SolutionCache.getKey(cubes[0]))));
+        assertTrue(isSolvedBy(cubes[2], cache.get(SolutionCache.getKey(cubes[2]))));
+    }
+
+    @Test
+    public void mapsMovesBackWithInverses() {
+        for (int symmetry = 0; symmetry < CubeSymmetry.SYMMETRY_COUNT; symmetry++) {
+            final int inverse = CubeSymmetry.getInverse(symmetry);
+            for (MoveType move : MoveType.getFaceTurns()) {
+                assertEquals(move, CubeSymmetry.transform(CubeSymmetry.transform(move, symmetry), inverse));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,177 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class SolverServerTest {
+
+    // Private methods
+
+    private static List<MoveType> randomMoves(SplittableRandom random) {
+        final MoveType[] faceTurns = MoveType.getFaceTurns();
+        final List<MoveType> moves = new ArrayList<MoveType>();
+        for (int i = 0; i < 20; i++) {
+            moves.add(faceTurns[random.nextInt(faceTurns.length)]);
+        }
+        return moves;
+    }
+
+    private static void assertSolves(String scramble, String solution) {
+        final CubeState state = new CubeState();
+        state.apply(MoveType.parseSequence(scramble));
+        state.apply(MoveType.parseSequence(solution));
+        assertTrue(scramble + " -> " + solution, state.isSolved());
+    }
+
+    private static void deleteTree(Path directory) throws IOException {
+        for (Path path : Files.list(directory).toArray(Path[]::new)) {
+            Files.delete(path);
+        }
+        Files.delete(directory);
+    }
+
+    // Public methods
+
+    // A batch as big as the requests in flight fills at once, however long
+    // the window; two of the four are one state under a symmetry and share
+    // a solve, and asking again is answered from the cache
+    @Test
+    public void batchesConcurrentRequests() throws Exception {
+        final SplittableRandom random = new SplittableRandom(20);
+        final List<MoveType> first = randomMoves(random);
+        final String[] scrambles = {
+            MoveType.toNotation(first),
+            MoveType.toNotation(CubeSymmetry.transform(first, 7)),
+            MoveType.toNotation(randomMoves(random)),
+            MoveType.toNotation(randomMoves(random)),
+        };
+        final SolverServer server = new SolverServer(SolverServer.getLocalAddress(0), 2, scrambles.length,
+                                                     10000000, new SolutionCache(1024, false));
+        final ExecutorService clients = Executors.newFixedThreadPool(scrambles.length);
+        try {
+            server.start();
+            final SocketAddress address = server.getAddress();
+            final List<Future<String>> solutions = new ArrayList<Future<String>>();
+            for (String scramble : scrambles) {
+                solutions.add(clients.submit(() -> {
+                    try (SolverClient client = new SolverClient(address)) {
+                        return client.solve(scramble);
+                    }
+                }));
+            }
+            for (int i = 0; i < scrambles.length; i++) {
+                assertSolves(scrambles[i], solutions.get(i).get());
+            }
+            assertEquals(1, server.getBatchCount());
+            assertEquals(scrambles.length, server.getMeanBatchSize(), 0);
+            assertEquals(scrambles.length - 1, server.getSolveCount());
+            assertEquals(0, server.getCacheHits());
+
+            try (SolverClient client = new SolverClient(address)) {
+                assertSolves(scrambles[1], client.solve(scrambles[1]));
+            }
+            assertEquals(scrambles.length + 1, server.getRequestCount());
+            assertEquals(1, server.getCacheHits());
+            assertEquals(1, server.getBatchCount());
+            assertEquals(0, server.getErrorCount());
+        } finally {
+            clients.shutdownNow();
+            server.close();
+        }
+    }
+
+    @Test
+    public void solvesOverUnixSockets() throws Exception {
+        final Path directory = Files.createTempDirectory("solver-server");
+        final Path path = directory.resolve("solver.sock");
+        final SolverServer server = new SolverServer(UnixDomainSocketAddress.of(path), 1, 8, 1000,
+                                                     new SolutionCache(1024, false));
+        try {
+            server.start();
+            try (SolverClient client = new SolverClient(UnixDomainSocketAddress.of(path))) {
+                final String scramble = MoveType.toNotation(randomMoves(new SplittableRandom(21)));
+                assertSolves(scramble, client.solve(scramble));
+
+                final StickerCube cube = new StickerCube(3);
+                for (Turn turn : Turn.parseSequence(scramble, 3)) {
+                    cube.apply(turn);
+                }
+                assertSolves(scramble, client.solve(cube));
+                try {
+                    client.solve("R Q");
+                    fail("Expected the scramble to be rejected");
+                } catch (IllegalArgumentException e) {
+                    // Expected
+                }
+                assertTrue(client.getStats().contains("batches"));
+            }
+            assertEquals(3, server.getRequestCount());
+            assertEquals(1, server.getCacheHits());
+            assertEquals(1, server.getErrorCount());
+        } finally {
+            server.close();
+        }
+        assertFalse(Files.exists(path));
+        deleteTree(directory);
+    }
+
+    @Test
+    public void refusesToReplaceOtherFiles() throws Exception {
+        final Path directory = Files.createTempDirectory("solver-server");
+        final Path path = directory.resolve("solver.sock");
+        final byte[] contents = "Not a socket".getBytes(StandardCharsets.UTF_8);
+        Files.write(path, contents);
+        final SolverServer server = new SolverServer(UnixDomainSocketAddress.of(path), 1, 8, 1000,
+                                                     new SolutionCache(1024, false));
+        try {
+            server.start();
+            server.close();
+            fail("Expected the server to refuse the path");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+        assertArrayEquals(contents, Files.readAllBytes(path));
+        deleteTree(directory);
+    }
+
+}
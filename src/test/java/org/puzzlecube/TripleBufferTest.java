@@ -0,0 +1,104 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class TripleBufferTest {
+
+    // Public methods
+
+    @Test
+    public void handsOverTheNewestValue() {
+        final StringBuilder a = new StringBuilder();
+        final StringBuilder b = new StringBuilder();
+        final StringBuilder c = new StringBuilder();
+        final TripleBuffer<StringBuilder> buffer = new TripleBuffer<StringBuilder>(a, b, c);
+        assertFalse(buffer.update());
+        assertSame(c, buffer.getFrontBuffer());
+
+        buffer.getBackBuffer().append("first");
+        buffer.publish();
+        buffer.getBackBuffer().setLength(0);
+        buffer.getBackBuffer().append("second");
+        buffer.publish();
+        assertTrue(buffer.update());
+        assertEquals("second", buffer.getFrontBuffer().toString());
+        assertFalse(buffer.update());
+        assertEquals("second", buffer.getFrontBuffer().toString());
+    }
+
+    // The writer fills whole buffers with one number, counting up; the
+    // reader must never see a torn buffer or an older number than before
+    @Test
+    public void neverTearsValues() throws InterruptedException {
+        final TripleBuffer<long[]> buffer = new TripleBuffer<long[]>(new long[64], new long[64], new long[64]);
+        final AtomicBoolean isDone = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<String>();
+        final Thread reader = new Thread(() -> {
+            long last = 0;
+            boolean isLast = false;
+            while (!isLast) {
+                // Once the writer is done, one more update sees its last value
+                isLast = isDone.get();
+                buffer.update();
+                final long[] values = buffer.getFrontBuffer();
+                final long first = values[0];
+                for (long value : values) {
+                    if (value != first) {
+                        failure.set("Torn buffer: " + Arrays.toString(values));
+                        return;
+                    }
+                }
+                if (first < last) {
+                    failure.set("Went back from " + last + " to " + first);
+                    return;
+                }
+                last = first;
+            }
+            if (last != 1000000) {
+                failure.set("Last value read was " + last);
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        for (long i = 1; i <= 1000000; i++) {
+            Arrays.fill(buffer.getBackBuffer(), i);
+            buffer.publish();
+        }
+        isDone.set(true);
+        reader.join(30000);
+        assertFalse(reader.isAlive());
+        assertEquals(null, failure.get());
+    }
+
+}
@@ -0,0 +1,99 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class TurnTest {
+
+    // Public methods
+
+    @Test
+    public void notationRoundTrips() {
+        final int[] directions = {1, -1, 2};
+        for (int size = 2; size <= 7; size++) {
+            for (Axis axis : Axis.values()) {
+                for (int firstLayer = 0; firstLayer < size; firstLayer++) {
+                    for (int lastLayer = firstLayer; lastLayer < size; lastLayer++) {
+                        for (int direction : directions) {
+                            final Turn turn = new Turn(size, axis, firstLayer, lastLayer, direction);
+                            assertEquals(turn.getNotation(), turn,
+                                         Turn.fromNotation(turn.getNotation(), size));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sequencesRoundTrip() {
+        final SplittableRandom random = new SplittableRandom(9);
+        final int[] directions = {1, -1, 2};
+        for (int size = 2; size <= 7; size++) {
+            final List<Turn> turns = new ArrayList<Turn>();
+            for (int i = 0; i < 50; i++) {
+                final Axis axis = Axis.values()[random.nextInt(3)];
+                final int firstLayer = random.nextInt(size);
+                final int lastLayer = firstLayer + random.nextInt(size - firstLayer);
+                turns.add(new Turn(size, axis, firstLayer, lastLayer, directions[random.nextInt(3)]));
+            }
+            assertEquals(turns, Turn.parseSequence(Turn.toNotation(turns), size));
+        }
+    }
+
+    @Test
+    public void parsesNotation() {
+        assertEquals(new Turn(5, Axis.X, 4, 4, -1), Turn.fromNotation("R", 5));
+        assertEquals(Turn.fromNotation("R'", 5).getInverse(), Turn.fromNotation("R", 5));
+        assertEquals(new Turn(5, Axis.X, 3, 4, 2), Turn.fromNotation("Rw2", 5));
+        assertEquals(new Turn(5, Axis.X, 0, 4, -1), Turn.fromNotation("x", 5));
+        assertEquals(Turn.of(MoveType.fromNotation("M"), 5), Turn.fromNotation("M", 5));
+    }
+
+    @Test
+    public void moveTypeNotationRoundTrips() {
+        final List<MoveType> moves = new ArrayList<MoveType>();
+        for (MoveType move : MoveType.values()) {
+            if (move == MoveType.NO_MOVE) {
+                continue;
+            }
+            assertEquals(move, MoveType.fromNotation(move.getNotation()));
+            assertEquals(move, Turn.of(move, 3).toMoveType());
+            moves.add(move);
+        }
+        assertEquals(moves, MoveType.parseSequence(MoveType.toNotation(moves)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingLayers() {
+        Turn.fromNotation("4R", 3);
+    }
+
+}
@@ -0,0 +1,113 @@
+
+/* Copyright (c) 2023 Caleb Butler
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package org.puzzlecube;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class TwoPhaseSolverTest {
+
+    // Private fields
+
+    // Generous, so a slow test machine doesn't fail a search that would
+    // succeed
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private static final TwoPhaseSolver solver = new TwoPhaseSolver();
+
+    // Public methods
+
+    @Test
+    public void solvesRandomStates() {
+        final SplittableRandom random = new SplittableRandom(4);
+        for (int i = 0; i < 200; i++) {
+            final CubeState state = ScramblePool.randomState(random);
+            final List<MoveType> solution = solver.solve(state.copy(), TwoPhaseSolver.DEFAULT_MAX_LENGTH,
+                                                         TIMEOUT_MILLIS);
+            assertTrue(solution.size() <= TwoPhaseSolver.DEFAULT_MAX_LENGTH);
+            state.apply(solution);
+            assertTrue("Not solved by " + MoveType.toNotation(solution), state.isSolved());
+        }
+    }
+
+    // Past its timeout the search returns the first solution it finds
+    // rather than giving up
+    @Test
+    public void solvesWithoutTime() {
+        final SplittableRandom random = new SplittableRandom(5);
+        for (int i = 0; i < 20; i++) {
+            final CubeState state = ScramblePool.randomState(random);
+            state.apply(solver.solve(state.copy(), TwoPhaseSolver.DEFAULT_MAX_LENGTH, 0));
+            assertTrue(state.isSolved());
+        }
+    }
+
+    @Test
+    public void warmsUp() {
+        TwoPhaseSolver.warmUp();
+        final CubeState state = new CubeState();
+        state.apply(MoveType.parseSequence("F R U' B2 L D"));
+        state.apply(solver.solve(state.copy()));
+        assertTrue(state.isSolved());
+    }
+
+    @Test
+    public void solvesSolvedState() {
+        assertEquals(0, solver.solve(new CubeState(), TwoPhaseSolver.DEFAULT_MAX_LENGTH,
+                                     TIMEOUT_MILLIS).size());
+    }
+
+    @Test
+    public void solvesScrambles() {
+        final CubeState state = new CubeState();
+        state.apply(MoveType.parseSequence("R U R' U' F2 D L' B2"));
+        state.apply(solver.solve(state.copy(), TwoPhaseSolver.DEFAULT_MAX_LENGTH, TIMEOUT_MILLIS));
+        assertTrue(state.isSolved());
+    }
+
+    @Test
+    public void rejectsUnsolvableStates() {
+        // Two edges swapped on their own
+        final int[] edges = CubeCoordinates.identity(CubeState.EDGE_COUNT);
+        edges[0] = 1;
+        edges[1] = 0;
+        final CubeState state = CubeState.fromPieces(CubeCoordinates.identity(CubeState.CORNER_COUNT),
+                                                     new int[CubeState.CORNER_COUNT], edges,
+                                                     new int[CubeState.EDGE_COUNT]);
+        assertFalse(state.isSolvable());
+        try {
+            solver.solve(state, TwoPhaseSolver.DEFAULT_MAX_LENGTH, TIMEOUT_MILLIS);
+            fail("Solved a state with two edges swapped");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+}